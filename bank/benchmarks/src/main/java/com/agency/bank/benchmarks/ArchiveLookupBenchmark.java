@@ -0,0 +1,83 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.archive.TransactionArchive;
+import com.agency.bank.archive.TransactionArchiver;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+//pretraga placanja koje je prebaceno u arhivu: binarna pretraga po .idx pa dekompresija jednog bloka.
+//tabela se puni redovima starim 6 meseci i ceo sadrzaj se arhivira u setup-u
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArchiveLookupBenchmark {
+
+    private static final long FIRST_PAYMENT_ID = 1_000_000_000L;
+
+    @Param("1000000")
+    private long rows;
+
+    private ConfigurableApplicationContext context;
+    private TransactionRepository transactionRepository;
+    private TransactionArchive transactionArchive;
+    private Path directory;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("archive-lookup");
+        context = BankContext.start(BankContext.inMemory("archive"), "create-drop", "bank.archive.directory=" + directory);
+        transactionRepository = context.getBean(TransactionRepository.class);
+        transactionArchive = context.getBean(TransactionArchive.class);
+
+        context.getBean(JdbcTemplate.class).update("insert into transaction (id, payment_id, merchant_order_id, merchant_timestamp, " +
+                "acquirer_order_id, issuer_order_id, transaction_status, amount, description) " +
+                "select x, ? + x, mod(x, 100000), dateadd(second, x, cast(? as timestamp)), ? + x, 0, 0, 1000, 'benchmark' from system_range(1, ?) r(x)",
+                FIRST_PAYMENT_ID, YearMonth.now().minusMonths(6).atDay(1).atStartOfDay(), FIRST_PAYMENT_ID, rows);
+        long start = System.nanoTime();
+        long archived = context.getBean(TransactionArchiver.class).archive();
+        long bytes;
+        try (Stream<Path> files = Files.list(directory)) {
+            bytes = files.mapToLong(file -> file.toFile().length()).sum();
+        }
+        System.out.printf("%nArchived %d transactions into %d segments, %d bytes (%.1f bytes/row) in %d ms%n", archived,
+                transactionArchive.segmentCount(), bytes, (double) bytes / archived,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> file.toFile().delete());
+        }
+        Files.delete(directory);
+    }
+
+    //samo segmenti, bez upita nad tabelom koji prethodi citanju arhive
+    @Benchmark
+    public Transaction findInSegments() {
+        long paymentId = FIRST_PAYMENT_ID + 1 + ThreadLocalRandom.current().nextLong(rows);
+        return transactionArchive.findFirst(paymentId);
+    }
+
+    @Benchmark
+    public Transaction findArchivedByPaymentId() {
+        long paymentId = FIRST_PAYMENT_ID + 1 + ThreadLocalRandom.current().nextLong(rows);
+        return transactionRepository.findFirstByPaymentIdIncludingArchive(paymentId);
+    }
+}
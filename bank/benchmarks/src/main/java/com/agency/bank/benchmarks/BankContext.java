@@ -0,0 +1,98 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.BankApplication;
+import com.agency.bank.model.Account;
+import com.agency.bank.model.Card;
+import com.agency.bank.model.Client;
+import com.agency.bank.money.Money;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.ClientRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//pokrece banku nad H2 bazom, bez PSP/PCC poziva i bez zakazanog obracuna
+public final class BankContext {
+
+    public static final String MERCHANT_PAN = "1112 5825 9632 2369"; //bank.panAcquirer
+    public static final String CUSTOMER_PAN = "1112 5800 0000 0001";
+    public static final String FOREIGN_PAN = "4242 4242 4242 4242";
+    public static final String MERCHANT_ID = "bench-merchant";
+    public static final String MERCHANT_PASSWORD = "bench-password";
+    public static final String SECURITY_CODE = "123";
+    public static final String DATE_EXPIRATION = "12/30";
+    private static final long UNLIMITED = Money.ofMajor(10_000_000_000_000L);
+
+    private BankContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String jdbcUrl, String ddlAuto, String... overrides) {
+        return new SpringApplicationBuilder(BankApplication.class).run(arguments(jdbcUrl, ddlAuto, overrides).toArray(new String[0]));
+    }
+
+    //argumenti komandne linije banke; overrides su "kljuc=vrednost" i zamenjuju podrazumevana podesavanja ispod
+    public static List<String> arguments(String jdbcUrl, String ddlAuto, String... overrides) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", jdbcUrl);
+        properties.put("spring.datasource.driverClassName", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", ddlAuto);
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.jpa.show-sql", "false");
+        properties.put("spring.flyway.enabled", "false");
+        properties.put("server.port", "0");
+        properties.put("greeting.cron", "-");
+        properties.put("settlement.mode", "cron");
+        properties.put("bank.outbox.poll-interval", "1h");
+        properties.put("bank.archive.directory", "target/archive");
+        properties.put("bank.archive.cron", "-");
+        properties.put("bank.journal.directory", "target/journal");
+        properties.put("logging.level.root", "WARN");
+        for (String override : overrides) {
+            int separator = override.indexOf('=');
+            properties.put(override.substring(0, separator), override.substring(separator + 1));
+        }
+
+        List<String> args = new ArrayList<>(properties.size());
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        return args;
+    }
+
+    public static String inMemory(String name) {
+        return "jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+    }
+
+    //prodavac (acquirer) i kupac iste banke sa prakticno neogranicenim stanjem
+    public static Client seedClients(ConfigurableApplicationContext context) {
+        AccountRepository accounts = context.getBean(AccountRepository.class);
+        ClientRepository clients = context.getBean(ClientRepository.class);
+
+        Account merchantAccount = accounts.save(new Account(0, "MERCHANT-001", 0, 0, 0));
+        clients.save(client("Web", "Shop", MERCHANT_ID, MERCHANT_PASSWORD, merchantAccount, MERCHANT_PAN));
+
+        Account customerAccount = accounts.save(new Account(0, "CUSTOMER-001", UNLIMITED, 0, 0));
+        return clients.save(client("Pera", "Peric", null, null, customerAccount, CUSTOMER_PAN));
+    }
+
+    //kupac sa karticom zadatog PAN-a; kartice drugih banaka moraju postojati jer pay() proverava karticu pre rutiranja
+    public static Client seedCustomer(ConfigurableApplicationContext context, String accountNumber, String pan) {
+        Account account = context.getBean(AccountRepository.class).save(new Account(0, accountNumber, UNLIMITED, 0, 0));
+        return context.getBean(ClientRepository.class).save(client("Kupac", accountNumber, null, null, account, pan));
+    }
+
+    private static Client client(String name, String surname, String merchantId, String merchantPassword, Account account, String pan) {
+        Client client = new Client();
+        client.setName(name);
+        client.setSurname(surname);
+        client.setMerchantId(merchantId);
+        client.setMerchantPassword(merchantPassword);
+        client.setAccount(account);
+        client.setCard(new Card(0, pan, SECURITY_CODE, name + " " + surname, DATE_EXPIRATION));
+        return client;
+    }
+}
@@ -0,0 +1,100 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.enums.CardRoute;
+import com.agency.bank.enums.CardScheme;
+import com.agency.bank.routing.BinRoute;
+import com.agency.bank.routing.BinTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+//odredjivanje banke izdavaoca: stari substring(0, 7) sa jednim BIN-om, isti pristup prosiren na mapu
+//6 i 8 cifrenih BIN-ova i digit trie (BinTable) sa istim opsezima. Alokacije se vide sa -prof gc
+//
+//  java -jar target/benchmarks.jar BinRoutingBenchmark -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinRoutingBenchmark {
+
+    private static final int PANS = 1024;
+    private static final BinRoute[] ROUTES = {
+            new BinRoute("BANK", CardRoute.LOCAL, CardScheme.DINACARD),
+            new BinRoute("BANK2", CardRoute.PCC, CardScheme.VISA),
+            new BinRoute("BANK3", CardRoute.PCC, CardScheme.MASTERCARD)
+    };
+
+    @Param("100000")
+    private int ranges;
+
+    private String[] lows;
+    private String[] highs;
+    private BinTable table;
+    private Map<String, BinRoute> bins;
+    private String[] pans;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        lows = new String[ranges];
+        highs = new String[ranges];
+        bins = new HashMap<>(ranges * 2);
+        BinTable.Builder builder = BinTable.builder();
+        for (int i = 0; i < ranges; i++) {
+            String bin = i % 2 == 0 ? String.format("%06d", random.nextInt(1_000_000)) : String.format("%08d", random.nextInt(100_000_000));
+            lows[i] = bin;
+            highs[i] = bin;
+            BinRoute route = ROUTES[i % ROUTES.length];
+            builder.add(bin, bin, route);
+            bins.put(bin, route);
+        }
+        table = builder.build();
+
+        pans = new String[PANS];
+        for (int i = 0; i < PANS; i++) {
+            String digits = (i % 4 == 0 ? String.format("%06d", random.nextInt(1_000_000)) : lows[random.nextInt(ranges)])
+                    + String.format("%010d", random.nextLong(10_000_000_000L));
+            digits = digits.substring(0, 16);
+            pans[i] = digits.substring(0, 4) + " " + digits.substring(4, 8) + " " + digits.substring(8, 12) + " " + digits.substring(12);
+        }
+    }
+
+    //TransactionService.sameBankForAcquirerAndIssuer pre BIN tabele
+    @Benchmark
+    public boolean legacySubstring() {
+        String pan = pans[next++ & (PANS - 1)];
+        return pan.substring(0, 7).equals(BankContext.MERCHANT_PAN.substring(0, 7));
+    }
+
+    //isti pristup sa vise BIN-ova: normalizacija pan-a i substring za svaku duzinu BIN-a
+    @Benchmark
+    public BinRoute substringMap() {
+        String pan = pans[next++ & (PANS - 1)].replace(" ", "");
+        BinRoute route = bins.get(pan.substring(0, 8));
+        if (route == null)
+            route = bins.get(pan.substring(0, 6));
+        return route == null ? BinRoute.UNKNOWN : route;
+    }
+
+    @Benchmark
+    public BinRoute trie() {
+        return table.resolve(pans[next++ & (PANS - 1)], BinRoute.UNKNOWN);
+    }
+
+    //cena ponovnog ucitavanja (bez citanja iz baze ili fajla)
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public BinTable build() {
+        BinTable.Builder builder = BinTable.builder();
+        for (int i = 0; i < ranges; i++)
+            builder.add(lows[i], highs[i], ROUTES[i % ROUTES.length]);
+        return builder.build();
+    }
+}
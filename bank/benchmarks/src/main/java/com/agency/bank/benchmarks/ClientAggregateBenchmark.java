@@ -0,0 +1,95 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.dto.PaymentResponseDTO;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.service.TransactionService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+///payment i /payment/withCard kada prodavac i kupac imaju hiljade otvorenih rezervacija.
+//po zavrsetku se ispisuje koliko je entiteta i kolekcija Hibernate ucitao i koliko upita poslao po operaciji
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientAggregateBenchmark {
+
+    @Param({"1000", "5000"})
+    private int openReservations;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private Statistics statistics;
+    private PaymentForBankRequestDto paymentRequest;
+    private long operations;
+
+    @Setup
+    public void setup() {
+        context = BankContext.start(BankContext.inMemory("aggregate-" + openReservations), "create-drop");
+        transactionService = context.getBean(TransactionService.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        Client customer = BankContext.seedClients(context);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Long merchantId = jdbcTemplate.queryForObject("select id from client where merchant_id = ?", Long.class, BankContext.MERCHANT_ID);
+        //prodavac je i sam kupovao, pa i on ima otvorene rezervacije
+        for (long clientId : new long[]{customer.getId(), merchantId}) {
+            jdbcTemplate.update("insert into reservation (id, description, amount, acquirer_account_number, client_id) " +
+                    "select ? + x, 'open', 100, 'MERCHANT-001', ? from system_range(1, ?) r(x)",
+                    clientId * 1_000_000L, clientId, openReservations);
+        }
+
+        paymentRequest = new PaymentForBankRequestDto(BankContext.MERCHANT_ID, BankContext.MERCHANT_PASSWORD, 1000,
+                "Knjiga", 1, LocalDateTime.now(), "http://localhost:4200/success",
+                "http://localhost:4200/failed", "http://localhost:4200/error");
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatistics() {
+        statistics.clear();
+        operations = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStatistics() {
+        if (operations == 0)
+            return;
+        System.out.printf("%n  per op: %.1f entities, %.1f collections, %.1f statements%n",
+                (double) statistics.getEntityLoadCount() / operations,
+                (double) statistics.getCollectionLoadCount() / operations,
+                (double) statistics.getPrepareStatementCount() / operations);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PaymentResponseDTO requestPayment() {
+        operations++;
+        return transactionService.requestPayment(paymentRequest);
+    }
+
+    @Benchmark
+    public Transaction requestPaymentAndPay() {
+        operations++;
+        PaymentResponseDTO payment = transactionService.requestPayment(paymentRequest);
+        return transactionService.pay(new CardDto(Long.toString(payment.getPaymentId()), BankContext.CUSTOMER_PAN,
+                BankContext.SECURITY_CODE, "Pera Peric", BankContext.DATE_EXPIRATION, "Knjiga",
+                payment.getAmount(), payment.getSuccessUrl(), payment.getFailedUrl(),
+                payment.getErrorUrl()));
+    }
+}
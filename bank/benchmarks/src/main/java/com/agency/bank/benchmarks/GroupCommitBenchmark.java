@@ -0,0 +1,67 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.dto.PaymentResponseDTO;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+///payment + /payment/withCard iz vise thread-ova nad H2 bazom na disku: svaki upis u svojoj transakciji
+//(direct) ili group commit sa zadatim prozorom. Throughput daje placanja u sekundi, SampleTime raspodelu cekanja
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(16)
+@Fork(1)
+public class GroupCommitBenchmark {
+
+    //direct - bank.group-commit.enabled=false, inace prozor group commit-a
+    @Param({"direct", "0ms", "1ms", "5ms"})
+    private String window;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private PaymentForBankRequestDto paymentRequest;
+    private Path directory;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("group-commit");
+        String jdbcUrl = "jdbc:h2:file:" + directory.resolve("bank") + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+        context = "direct".equals(window)
+                ? BankContext.start(jdbcUrl, "create", "bank.group-commit.enabled=false")
+                : BankContext.start(jdbcUrl, "create", "bank.group-commit.window=" + window);
+        transactionService = context.getBean(TransactionService.class);
+        BankContext.seedClients(context);
+        paymentRequest = new PaymentForBankRequestDto(BankContext.MERCHANT_ID, BankContext.MERCHANT_PASSWORD, 1000,
+                "Knjiga", 1, LocalDateTime.now(), "http://localhost:4200/success",
+                "http://localhost:4200/failed", "http://localhost:4200/error");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        try (var files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public Transaction requestPaymentAndPay() {
+        PaymentResponseDTO payment = transactionService.requestPayment(paymentRequest);
+        return transactionService.pay(new CardDto(Long.toString(payment.getPaymentId()), BankContext.CUSTOMER_PAN,
+                BankContext.SECURITY_CODE, "Pera Peric", BankContext.DATE_EXPIRATION, "Knjiga",
+                payment.getAmount(), payment.getSuccessUrl(), payment.getFailedUrl(),
+                payment.getErrorUrl()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.dto.CardPaymentRequestDto;
+import com.agency.bank.dto.PSPResponseDto;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.money.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+//Jackson (de)serijalizacija DTO-a koji prolaze kroz /payment/withCard i ka PSP-u/PCC-u
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private ObjectMapper objectMapper;
+    private CardDto cardDto;
+    private PSPResponseDto pspResponseDto;
+    private CardPaymentRequestDto cardPaymentRequestDto;
+    private String cardDtoJson;
+    private String pspResponseJson;
+    private String cardPaymentRequestJson;
+    private final char[] amount = "1250.50".toCharArray();
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        cardDto = new CardDto("1000000001", BankContext.CUSTOMER_PAN, BankContext.SECURITY_CODE, "Pera Peric",
+                BankContext.DATE_EXPIRATION, "Knjiga", 125050, "http://localhost:4200/success",
+                "http://localhost:4200/failed", "http://localhost:4200/error");
+        pspResponseDto = PSPResponseDto.builder()
+                .merchantOrderId(42)
+                .acquirerOrderId(1000000002L)
+                .acquirerTimestamp(LocalDateTime.now())
+                .paymentId(1000000001L)
+                .amount(125050)
+                .description("Knjiga")
+                .transactionStatus(TransactionStatus.IN_PROGRESS)
+                .build();
+        cardPaymentRequestDto = CardPaymentRequestDto.builder()
+                .paymentId(1000000001L)
+                .pan(BankContext.FOREIGN_PAN)
+                .securityCode(BankContext.SECURITY_CODE)
+                .cardHolderName("Pera Peric")
+                .dateExpiration(BankContext.DATE_EXPIRATION)
+                .description("Knjiga")
+                .panAcquirer(BankContext.MERCHANT_PAN)
+                .amount(125050)
+                .acquirerOrderId(1000000002L)
+                .acquirerTimestamp(LocalDateTime.now())
+                .build();
+        cardDtoJson = objectMapper.writeValueAsString(cardDto);
+        pspResponseJson = objectMapper.writeValueAsString(pspResponseDto);
+        cardPaymentRequestJson = objectMapper.writeValueAsString(cardPaymentRequestDto);
+    }
+
+    //iznos kakav stize u CardDto, nekad kroz String i Double.parseDouble
+    @Benchmark
+    public double parseAmountAsDouble() {
+        return Double.parseDouble(new String(amount));
+    }
+
+    @Benchmark
+    public long parseAmountAsMinorUnits() {
+        return Money.parse(amount, 0, amount.length);
+    }
+
+    @Benchmark
+    public CardDto readCardDto() throws Exception {
+        return objectMapper.readValue(cardDtoJson, CardDto.class);
+    }
+
+    @Benchmark
+    public String writeCardDto() throws Exception {
+        return objectMapper.writeValueAsString(cardDto);
+    }
+
+    @Benchmark
+    public PSPResponseDto readPspResponse() throws Exception {
+        return objectMapper.readValue(pspResponseJson, PSPResponseDto.class);
+    }
+
+    @Benchmark
+    public String writePspResponse() throws Exception {
+        return objectMapper.writeValueAsString(pspResponseDto);
+    }
+
+    @Benchmark
+    public CardPaymentRequestDto readCardPaymentRequest() throws Exception {
+        return objectMapper.readValue(cardPaymentRequestJson, CardPaymentRequestDto.class);
+    }
+
+    @Benchmark
+    public String writeCardPaymentRequest() throws Exception {
+        return objectMapper.writeValueAsString(cardPaymentRequestDto);
+    }
+}
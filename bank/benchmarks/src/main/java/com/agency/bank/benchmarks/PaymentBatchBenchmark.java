@@ -0,0 +1,67 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//orders porudzbina jednog prodavca nad H2 bazom na disku: poziv /payment po porudzbini (provera prodavca i commit
+//svaki put) prema jednom /payment/batch pozivu (jedna provera, id-jevi odjednom, commit po grupi)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class PaymentBatchBenchmark {
+
+    @Param("1000")
+    private int orders;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private List<PaymentForBankRequestDto> requests;
+    private Path directory;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("payment-batch");
+        String jdbcUrl = "jdbc:h2:file:" + directory.resolve("bank") + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+        context = BankContext.start(jdbcUrl, "create");
+        transactionService = context.getBean(TransactionService.class);
+        BankContext.seedClients(context);
+        requests = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++)
+            requests.add(new PaymentForBankRequestDto(BankContext.MERCHANT_ID, BankContext.MERCHANT_PASSWORD, 1000,
+                    "Knjiga", i, LocalDateTime.now(), "http://localhost:4200/success",
+                    "http://localhost:4200/failed", "http://localhost:4200/error"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        try (var files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void onePerOrder(Blackhole blackhole) {
+        for (PaymentForBankRequestDto request : requests)
+            blackhole.consume(transactionService.requestPayment(request));
+    }
+
+    @Benchmark
+    public void batch(Blackhole blackhole) {
+        transactionService.requestPayments(requests.iterator(), blackhole::consume);
+    }
+}
@@ -0,0 +1,119 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.dto.PaymentResponseDTO;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Reservation;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.service.BalanceLedgerService;
+import com.agency.bank.service.ClientService;
+import com.agency.bank.service.PaymentIdGenerator;
+import com.agency.bank.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//koraci placanja iste banke: provera banke izdavaoca, dodela paymentId-a, rezervacija sredstava
+//i ceo tok /payment + /payment/withCard kroz servis (bez HTTP sloja)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentHotPathBenchmark {
+
+    //broj otvorenih rezervacija kupca za poredjenje sa starim sabiranjem pri svakom placanju
+    @Param("1000")
+    private int openReservations;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private BalanceLedgerService balanceLedgerService;
+    private ClientService clientService;
+    private PaymentIdGenerator paymentIdGenerator;
+    private long customerAccountId;
+    private long customerBalance;
+    private List<Reservation> reservations;
+    private PaymentForBankRequestDto paymentRequest;
+
+    @Setup
+    public void setup() {
+        context = BankContext.start(BankContext.inMemory("hotpath"), "create-drop");
+        transactionService = context.getBean(TransactionService.class);
+        balanceLedgerService = context.getBean(BalanceLedgerService.class);
+        clientService = context.getBean(ClientService.class);
+        paymentIdGenerator = context.getBean(PaymentIdGenerator.class);
+
+        Client customer = BankContext.seedClients(context);
+        customerAccountId = customer.getAccount().getId();
+        customerBalance = customer.getAccount().getAmount();
+        reservations = new ArrayList<>(openReservations);
+        for (int i = 0; i < openReservations; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setAmount(10);
+            reservations.add(reservation);
+        }
+
+        paymentRequest = new PaymentForBankRequestDto(BankContext.MERCHANT_ID, BankContext.MERCHANT_PASSWORD, 1000,
+                "Knjiga", 1, LocalDateTime.now(), "http://localhost:4200/success",
+                "http://localhost:4200/failed", "http://localhost:4200/error");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean sameBankForAcquirerAndIssuer() {
+        return transactionService.sameBankForAcquirerAndIssuer(BankContext.CUSTOMER_PAN);
+    }
+
+    //provera prodavca posle prve: HMAC lozinke iz kesa, bez baze i bez PBKDF2
+    @Benchmark
+    public Long verifyMerchant() {
+        return clientService.findMerchantId(BankContext.MERCHANT_ID, BankContext.MERCHANT_PASSWORD);
+    }
+
+    @Benchmark
+    public long nextPaymentId() {
+        return paymentIdGenerator.nextId();
+    }
+
+    @Benchmark
+    public boolean ledgerReserveAndRelease() {
+        boolean reserved = balanceLedgerService.tryReserve(customerAccountId, 10);
+        if (reserved)
+            balanceLedgerService.release(customerAccountId, 10);
+        return reserved;
+    }
+
+    //provera sredstava pre ledger-a: zbir svih rezervacija kupca pri svakom placanju
+    @Benchmark
+    public boolean legacySumReservations() {
+        long reserved = 0;
+        for (Reservation reservation : reservations)
+            reserved += reservation.getAmount();
+        return customerBalance - reserved - 10 >= 0;
+    }
+
+    @Benchmark
+    public PaymentResponseDTO requestPayment() {
+        return transactionService.requestPayment(paymentRequest);
+    }
+
+    @Benchmark
+    public Transaction requestPaymentAndPay() {
+        PaymentResponseDTO payment = transactionService.requestPayment(paymentRequest);
+        return transactionService.pay(new CardDto(Long.toString(payment.getPaymentId()), BankContext.CUSTOMER_PAN,
+                BankContext.SECURITY_CODE, "Pera Peric", BankContext.DATE_EXPIRATION, "Knjiga",
+                payment.getAmount(), payment.getSuccessUrl(), payment.getFailedUrl(),
+                payment.getErrorUrl()));
+    }
+}
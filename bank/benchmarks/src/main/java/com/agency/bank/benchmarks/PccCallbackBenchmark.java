@@ -0,0 +1,59 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.enums.PccCallbackOutcome;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.service.PccCallbackDeduplicator;
+import com.agency.bank.service.TransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+//ponovljen povratni poziv PCC-a (odgovor iz kesa, bez baze) i provera kljuca koji nikad nije vidjen (bloom filter)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PccCallbackBenchmark {
+
+    private static final long PAYMENT_ID = 1_000_000_000L;
+
+    private ConfigurableApplicationContext context;
+    private TransactionService transactionService;
+    private PccCallbackDeduplicator pccCallbackDeduplicator;
+    private TransactionPCCResponseDto duplicate;
+    private int unseenIssuerOrderId;
+
+    @Setup
+    public void setup() {
+        context = BankContext.start(BankContext.inMemory("pcc-callback"), "create-drop");
+        transactionService = context.getBean(TransactionService.class);
+        pccCallbackDeduplicator = context.getBean(PccCallbackDeduplicator.class);
+        context.getBean(JdbcTemplate.class).update("insert into transaction (id, payment_id, merchant_order_id, acquirer_order_id, " +
+                "issuer_order_id, transaction_status, amount) values (1, ?, 1, 0, 0, ?, 1000)", PAYMENT_ID, TransactionStatus.PAYMENT_REQUESTED.ordinal());
+        duplicate = new TransactionPCCResponseDto(TransactionStatus.SUCCESS, 1, PAYMENT_ID + 1, LocalDateTime.now(), 7,
+                LocalDateTime.now(), PAYMENT_ID, 1000, "Knjiga", null, null);
+        if (transactionService.transferMoneyToBank(duplicate) != PccCallbackOutcome.APPLIED)
+            throw new IllegalStateException("First callback was not applied");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PccCallbackOutcome duplicateCallback() {
+        return transactionService.transferMoneyToBank(duplicate);
+    }
+
+    @Benchmark
+    public boolean unseenKey() {
+        return pccCallbackDeduplicator.isDuplicate(PAYMENT_ID, ++unseenIssuerOrderId);
+    }
+}
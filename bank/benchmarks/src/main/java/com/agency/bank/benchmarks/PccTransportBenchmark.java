@@ -0,0 +1,147 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.benchmarks.pcc.PccSimulator;
+import com.agency.bank.dto.CardPaymentRequestDto;
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.OutboundStatus;
+import com.agency.bank.model.OutboundMessage;
+import com.agency.bank.pcc.PccLink;
+import com.agency.bank.service.OutboundDispatcher;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//slanje zahteva PCC-u iz outbox-a: HTTP POST po zahtevu na lokalni stub koji odmah vraca 200, ili binarna veza do
+//PccSimulator-a koji odmah potvrdjuje. Meri se samo zahtev i potvrda, rezultat placanja (ADVICE, /payment/transaction)
+//nije deo merenja.
+//  sendRequest - 16 thread-ova, svaki ceka potvrdu svog zahteva (OutboundDispatcher.attempt)
+//  relayBatch  - paket od BATCH poruka kao u OutboxRelay: RELAY_SENDERS thread-ova poziva attemptAsync, pa preko
+//                binarne veze thread ne ceka potvrdu i ceo paket je u letu
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Threads(16)
+@Fork(1)
+public class PccTransportBenchmark {
+
+    private static final int BATCH = 100;
+    private static final int RELAY_SENDERS = 16; //bank.outbox.concurrency
+
+    @Param({"http", "binary"})
+    private String transport;
+
+    private final AtomicLong acquirerOrderId = new AtomicLong(1_000_000_000L);
+    private ConfigurableApplicationContext context;
+    private OutboundDispatcher outboundDispatcher;
+    private HttpServer httpPcc;
+    private ExecutorService httpExecutor;
+    private PccSimulator binaryPcc;
+    private ExecutorService relaySenders;
+
+    @Setup
+    public void setup() throws IOException, InterruptedException {
+        if ("http".equals(transport)) {
+            httpPcc = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+            httpExecutor = Executors.newFixedThreadPool(16);
+            httpPcc.createContext("/requests", exchange -> {
+                try (InputStream in = exchange.getRequestBody()) {
+                    in.readAllBytes();
+                }
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            });
+            httpPcc.setExecutor(httpExecutor);
+            httpPcc.start();
+            context = BankContext.start(BankContext.inMemory("pcc-transport-http"), "create-drop",
+                    "bank.pccUrl=http://localhost:" + httpPcc.getAddress().getPort() + "/requests");
+        } else {
+            binaryPcc = new PccSimulator(0, false);
+            context = BankContext.start(BankContext.inMemory("pcc-transport-binary"), "create-drop",
+                    "bank.pcc.transport=binary", "bank.pcc.address=" + binaryPcc.address());
+            PccLink pccLink = context.getBean(PccLink.class);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!pccLink.isConnected()) {
+                if (System.currentTimeMillis() > deadline)
+                    throw new IllegalStateException("PCC link did not connect to " + binaryPcc.address());
+                Thread.sleep(10);
+            }
+        }
+        outboundDispatcher = context.getBean(OutboundDispatcher.class);
+        relaySenders = Executors.newFixedThreadPool(RELAY_SENDERS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        relaySenders.shutdownNow();
+        context.close();
+        if (httpPcc != null) {
+            httpPcc.stop(0);
+            httpExecutor.shutdownNow();
+        }
+        if (binaryPcc != null)
+            binaryPcc.close();
+    }
+
+    @Benchmark
+    public OutboundStatus sendRequest() {
+        OutboundMessage message = message();
+        outboundDispatcher.attempt(message);
+        return sent(message);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OperationsPerInvocation(BATCH)
+    @Threads(1)
+    public int relayBatch() {
+        List<OutboundMessage> messages = new ArrayList<>(BATCH);
+        CompletableFuture<?>[] attempts = new CompletableFuture<?>[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            OutboundMessage message = message();
+            messages.add(message);
+            attempts[i] = CompletableFuture.supplyAsync(() -> outboundDispatcher.attemptAsync(message), relaySenders)
+                    .thenCompose(attempt -> attempt);
+        }
+        CompletableFuture.allOf(attempts).join();
+        messages.forEach(this::sent);
+        return messages.size();
+    }
+
+    private OutboundMessage message() {
+        long id = acquirerOrderId.incrementAndGet();
+        return outboundDispatcher.message(OutboundDestination.PCC, OutboundDispatcher.pccKey(id), id,
+                CardPaymentRequestDto.builder()
+                        .paymentId(id)
+                        .acquirerOrderId(id)
+                        .acquirerTimestamp(LocalDateTime.now())
+                        .pan(BankContext.FOREIGN_PAN)
+                        .securityCode(BankContext.SECURITY_CODE)
+                        .cardHolderName("Pera Peric")
+                        .dateExpiration(BankContext.DATE_EXPIRATION)
+                        .description("Knjiga")
+                        .panAcquirer(BankContext.MERCHANT_PAN)
+                        .amount(1000)
+                        .build());
+    }
+
+    private OutboundStatus sent(OutboundMessage message) {
+        if (message.getStatus() != OutboundStatus.SENT)
+            throw new IllegalStateException("PCC request " + message.getPaymentId() + " was not sent over " + transport);
+        return message.getStatus();
+    }
+}
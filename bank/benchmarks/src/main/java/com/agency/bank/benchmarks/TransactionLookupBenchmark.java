@@ -0,0 +1,56 @@
+package com.agency.bank.benchmarks;
+
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//pretraga transakcije po paymentId-u nad velikom tabelom (indeks transaction_payment_id_idx).
+//baza je fajl u target/ i puni se samo jednom, za 10M redova: -p rows=10000000
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionLookupBenchmark {
+
+    private static final long FIRST_PAYMENT_ID = 1_000_000_000L;
+
+    @Param("1000000")
+    private long rows;
+
+    private ConfigurableApplicationContext context;
+    private TransactionRepository transactionRepository;
+
+    @Setup
+    public void setup() {
+        context = BankContext.start("jdbc:h2:file:./target/lookup-" + rows
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH", "update");
+        transactionRepository = context.getBean(TransactionRepository.class);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Long existing = jdbcTemplate.queryForObject("select count(*) from transaction", Long.class);
+        if (existing == null || existing < rows) {
+            jdbcTemplate.update("insert into transaction (id, payment_id, merchant_order_id, acquirer_order_id, " +
+                    "issuer_order_id, transaction_status, amount, description) " +
+                    "select x, ? + x, mod(x, 100000), ? + x, 0, 2, 1000, 'benchmark' from system_range(?, ?) r(x)",
+                    FIRST_PAYMENT_ID, FIRST_PAYMENT_ID, (existing == null ? 0 : existing) + 1, rows);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction findByPaymentId() {
+        long paymentId = FIRST_PAYMENT_ID + 1 + ThreadLocalRandom.current().nextLong(rows);
+        return transactionRepository.findFirstByPaymentIdOrderById(paymentId);
+    }
+}
@@ -0,0 +1,57 @@
+package com.agency.bank.benchmarks.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//latencija u mikrosekundama i broj uspesnih/neuspesnih poziva jednog endpoint-a
+final class EndpointStats {
+
+    private final String name;
+    private final Histogram latency = new ConcurrentHistogram(3);
+    private final LongAdder errors = new LongAdder();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void record(long startNanos, long endNanos, boolean success) {
+        latency.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos)));
+        if (!success)
+            errors.increment();
+    }
+
+    long count() {
+        return latency.getTotalCount();
+    }
+
+    static String header() {
+        return String.format("%-28s %9s %7s %9s %9s %9s %9s %9s",
+                "endpoint", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+    }
+
+    String summary(double seconds) {
+        long count = count();
+        return String.format("%-28s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f", name, count, errors.sum(), count / seconds,
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()));
+    }
+
+    //format koji razume HdrHistogram plotter
+    void writeDistribution(Path directory) throws IOException {
+        Path file = directory.resolve(name.replaceAll("[^A-Za-z0-9]+", "-").replaceAll("^-|-$", "") + ".hgrm");
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            latency.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,250 @@
+package com.agency.bank.benchmarks.load;
+
+import com.agency.bank.benchmarks.BankContext;
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.dto.CardPaymentRequestDto;
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.dto.PaymentResponseDTO;
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.money.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+//opterecenje celog toka placanja nad lokalnom bankom (H2) i lokalnim PSP/PCC stub-ovima, bez mreze.
+//placanja se zapocinju po rasporedu (open loop): /payment pa /payment/withCard, a za kartice drugih
+//banaka PCC stub vraca odgovor na /payment/transaction. Latencija toka se meri od planiranog pocetka,
+//pa spor odgovor ne sakriva placanja koja je trebalo zapoceti u medjuvremenu (coordinated omission).
+//
+//  java -cp target/benchmarks.jar com.agency.bank.benchmarks.load.LoadHarness --rate=200 --duration=120
+public class LoadHarness {
+
+    //BIN (prvih 6 cifara) odlucuje o banci izdavaocu (bank.panAcquirer je 1112 58...)
+    private static final String SAME_BANK_PREFIX = "1112 5811 ";
+    private static final String FOREIGN_PREFIX = "4242 4211 ";
+
+    private final LoadOptions options;
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final EndpointStats payment = new EndpointStats("/payment");
+    private final EndpointStats withCard = new EndpointStats("/payment/withCard");
+    private final EndpointStats transaction = new EndpointStats("/payment/transaction");
+    private final EndpointStats flow = new EndpointStats("flow (CO corrected)");
+    private final Map<Long, Integer> merchantOrders = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong crossBankPayments = new AtomicLong();
+    private final AtomicInteger merchantOrderIds = new AtomicInteger();
+    private String[] sameBankPans;
+    private String[] foreignPans;
+    private String bankUrl;
+    private volatile boolean measuring;
+
+    private LoadHarness(LoadOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadHarness(LoadOptions.parse(args)).run();
+    }
+
+    private void run() throws Exception {
+        try (StubServer psp = new StubServer("/bank-transaction", body -> { });
+             StubServer pcc = new StubServer("/requests", this::answerFromIssuer)) {
+            String[] properties = new String[options.bankProperties.size() + 3];
+            properties[0] = "bank.pspUrl=" + psp.url();
+            properties[1] = "bank.pccUrl=" + pcc.url();
+            properties[2] = "bank.outbox.poll-interval=20ms";
+            for (int i = 0; i < options.bankProperties.size(); i++)
+                properties[i + 3] = options.bankProperties.get(i);
+
+            try (ConfigurableApplicationContext context = BankContext.start(BankContext.inMemory("load"), "create-drop", properties)) {
+                bankUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                seed(context);
+                System.out.printf("Bank on %s, %.0f payments/s, %d%% same bank, warmup %ds, measuring %ds%n", bankUrl,
+                        options.rate, Math.round(options.sameBankRatio * 100), options.warmup.getSeconds(), options.duration.getSeconds());
+
+                long measuredCrossBank = drive();
+                awaitCallbacks(pcc, measuredCrossBank);
+                report();
+            }
+        }
+    }
+
+    private void seed(ConfigurableApplicationContext context) {
+        BankContext.seedClients(context);
+        sameBankPans = new String[options.customers];
+        foreignPans = new String[options.customers];
+        for (int i = 0; i < options.customers; i++) {
+            sameBankPans[i] = String.format(SAME_BANK_PREFIX + "%04d %04d", i / 10_000 % 10_000, i % 10_000);
+            foreignPans[i] = String.format(FOREIGN_PREFIX + "%04d %04d", i / 10_000 % 10_000, i % 10_000);
+            BankContext.seedCustomer(context, "LOAD-" + i, sameBankPans[i]);
+            BankContext.seedCustomer(context, "FOREIGN-" + i, foreignPans[i]);
+        }
+    }
+
+    //vraca broj zapocetih placanja karticom druge banke posle zagrevanja
+    private long drive() throws InterruptedException {
+        long interval = (long) (1_000_000_000L / options.rate);
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup.toNanos();
+        long end = measureFrom + options.duration.toNanos();
+        long crossBankBeforeMeasuring = 0;
+        for (long i = 0; ; i++) {
+            long intendedStart = start + i * interval;
+            if (intendedStart >= end)
+                break;
+            long wait;
+            while ((wait = intendedStart - System.nanoTime()) > 0)
+                LockSupport.parkNanos(wait);
+            if (!measuring && intendedStart >= measureFrom) {
+                measuring = true;
+                crossBankBeforeMeasuring = crossBankPayments.get();
+            }
+            startFlow(intendedStart, measuring);
+        }
+
+        long deadline = System.nanoTime() + options.drainTimeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        if (inFlight.get() > 0)
+            System.out.printf("%d payments still in flight after %ds%n", inFlight.get(), options.drainTimeout.getSeconds());
+        return crossBankPayments.get() - crossBankBeforeMeasuring;
+    }
+
+    private void startFlow(long intendedStart, boolean measured) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean sameBank = random.nextDouble() < options.sameBankRatio;
+        String pan = (sameBank ? sameBankPans : foreignPans)[random.nextInt(options.customers)];
+        int merchantOrderId = merchantOrderIds.incrementAndGet();
+        PaymentForBankRequestDto request = new PaymentForBankRequestDto(BankContext.MERCHANT_ID, BankContext.MERCHANT_PASSWORD,
+                Money.ofMajor(1 + random.nextInt(100)), "Load test", merchantOrderId, LocalDateTime.now(),
+                "http://localhost:4200/success", "http://localhost:4200/failed", "http://localhost:4200/error");
+
+        inFlight.incrementAndGet();
+        send(payment, "/payment", request, measured, true)
+                .thenCompose(response -> {
+                    PaymentResponseDTO paymentResponse = read(response.body(), PaymentResponseDTO.class);
+                    if (!sameBank) {
+                        merchantOrders.put(paymentResponse.getPaymentId(), merchantOrderId);
+                        crossBankPayments.incrementAndGet();
+                    }
+                    return send(withCard, "/payment/withCard", new CardDto(Long.toString(paymentResponse.getPaymentId()), pan,
+                            BankContext.SECURITY_CODE, "Kupac", BankContext.DATE_EXPIRATION, paymentResponse.getDescription(),
+                            paymentResponse.getAmount(), paymentResponse.getSuccessUrl(),
+                            paymentResponse.getFailedUrl(), paymentResponse.getErrorUrl()), measured, true);
+                })
+                .whenComplete((response, error) -> {
+                    if (measured)
+                        flow.record(intendedStart, System.nanoTime(), error == null);
+                    inFlight.decrementAndGet();
+                });
+    }
+
+    //PCC stub: banka izdavalac odobrava placanje i PCC to javlja banci prodavca
+    private void answerFromIssuer(byte[] body) {
+        CardPaymentRequestDto request = read(new String(body), CardPaymentRequestDto.class);
+        Integer merchantOrderId = merchantOrders.remove(request.getPaymentId());
+        TransactionPCCResponseDto response = TransactionPCCResponseDto.builder()
+                .transactionStatus(TransactionStatus.SUCCESS)
+                .merchantOrderId(merchantOrderId == null ? 0 : merchantOrderId)
+                .acquirerOrderId(request.getAcquirerOrderId())
+                .acquirerTimestamp(request.getAcquirerTimestamp())
+                .issuerOrderId(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE))
+                .issuerOrderTimestamp(LocalDateTime.now())
+                .paymentId(request.getPaymentId())
+                .amount(request.getAmount())
+                .description(request.getDescription())
+                .payer(request.getCardHolderName())
+                .acquirerPan(request.getPanAcquirer())
+                .build();
+        send(transaction, "/payment/transaction", response, measuring, false);
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(EndpointStats stats, String path, Object body, boolean measured,
+                                                         boolean expectBody) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(bankUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(write(body)))
+                .build();
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    if (measured)
+                        stats.record(start, System.nanoTime(), error == null && succeeded(response, expectBody));
+                })
+                .thenApply(response -> {
+                    if (!succeeded(response, expectBody))
+                        throw new CompletionException(new IllegalStateException(path + " returned " + response.statusCode()));
+                    return response;
+                });
+    }
+
+    //banka vraca 200 bez tela kada prodavac nije pronadjen
+    private static boolean succeeded(HttpResponse<String> response, boolean expectBody) {
+        return response.statusCode() / 100 == 2 && (!expectBody || !response.body().isEmpty());
+    }
+
+    private void awaitCallbacks(StubServer pcc, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + options.drainTimeout.toNanos();
+        while (transactionCallbacks() < expected && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        System.out.printf("PCC stub received %d requests, %d measured callbacks of %d expected%n",
+                pcc.received(), transactionCallbacks(), expected);
+    }
+
+    private long transactionCallbacks() {
+        return transaction.count();
+    }
+
+    private void report() throws IOException {
+        double seconds = options.duration.toMillis() / 1000.0;
+        System.out.println(EndpointStats.header());
+        for (EndpointStats stats : new EndpointStats[]{payment, withCard, transaction, flow})
+            System.out.println(stats.summary(seconds));
+
+        Files.createDirectories(options.output);
+        for (EndpointStats stats : new EndpointStats[]{payment, withCard, transaction, flow})
+            stats.writeDistribution(options.output);
+        System.out.println("Latency distributions written to " + options.output.toAbsolutePath());
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private <T> T read(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.agency.bank.benchmarks.load;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+//argumenti oblika --kljuc=vrednost; bank.*, spring.*, server.* i logging.* se prosledjuju aplikaciji banke
+final class LoadOptions {
+
+    double rate = 50; //zapocetih placanja u sekundi, nezavisno od brzine odgovora
+    Duration warmup = Duration.ofSeconds(10);
+    Duration duration = Duration.ofSeconds(60);
+    double sameBankRatio = 0.8;
+    int customers = 100; //po banci, najvise 100 000 000
+    Duration drainTimeout = Duration.ofSeconds(30);
+    Path output = Paths.get("target", "load");
+    final List<String> bankProperties = new ArrayList<>();
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0)
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (key) {
+                case "rate":
+                    options.rate = Double.parseDouble(value);
+                    break;
+                case "warmup":
+                    options.warmup = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "duration":
+                    options.duration = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "same-bank-ratio":
+                    options.sameBankRatio = Double.parseDouble(value);
+                    break;
+                case "customers":
+                    options.customers = Integer.parseInt(value);
+                    break;
+                case "drain-timeout":
+                    options.drainTimeout = Duration.ofSeconds(Long.parseLong(value));
+                    break;
+                case "output":
+                    options.output = Paths.get(value);
+                    break;
+                default:
+                    if (key.startsWith("bank.") || key.startsWith("spring.") || key.startsWith("server.") || key.startsWith("logging."))
+                        options.bankProperties.add(key + "=" + value);
+                    else
+                        throw new IllegalArgumentException("Unknown option --" + key);
+            }
+        }
+        if (options.rate <= 0 || options.sameBankRatio < 0 || options.sameBankRatio > 1 || options.customers <= 0 || options.customers > 100_000_000)
+            throw new IllegalArgumentException("rate and customers must be positive, same-bank-ratio in [0, 1]");
+        return options;
+    }
+}
@@ -0,0 +1,152 @@
+package com.agency.bank.benchmarks.pcc;
+
+import com.agency.bank.dto.CardPaymentRequestDto;
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.enums.PccCallbackOutcome;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.pcc.PccCodec;
+import com.agency.bank.pcc.PccCodec.Frame;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+//lokalni PCC za binarnu vezu banke (bank.pcc.transport=binary): potvrdjuje svaki zahtev i, ako je advise ukljucen,
+//odmah salje SUCCESS rezultat kao da je banka izdavalac odobrila placanje. Jedan thread po vezi cita sve okvire
+//koji su stigli i odgovara na njih jednim upisom, pa odgovori prate pipelining banke.
+//
+//  java -cp target/benchmarks.jar com.agency.bank.benchmarks.pcc.PccSimulator --port=8086 --advise=true
+public final class PccSimulator implements AutoCloseable {
+
+    private static final int MAX_FRAME = 65536;
+
+    private final ServerSocketChannel server;
+    private final boolean advise;
+    private final AtomicInteger issuerOrderId = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final Map<PccCallbackOutcome, LongAdder> outcomes = new EnumMap<>(PccCallbackOutcome.class);
+
+    public PccSimulator(int port, boolean advise) throws IOException {
+        this.advise = advise;
+        for (PccCallbackOutcome outcome : PccCallbackOutcome.values())
+            outcomes.put(outcome, new LongAdder());
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        Thread acceptor = new Thread(this::accept, "pcc-simulator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 8086;
+        boolean advise = true;
+        for (String arg : args) {
+            if (arg.startsWith("--port="))
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            else if (arg.startsWith("--advise="))
+                advise = Boolean.parseBoolean(arg.substring("--advise=".length()));
+            else
+                throw new IllegalArgumentException("Unknown option " + arg);
+        }
+        try (PccSimulator simulator = new PccSimulator(port, advise)) {
+            System.out.println("PCC simulator listening on " + simulator.address());
+            while (true) {
+                Thread.sleep(10_000);
+                System.out.printf("requests %d, advice outcomes %s%n", simulator.requests(), simulator.outcomes);
+            }
+        }
+    }
+
+    //vrednost za bank.pcc.address
+    public String address() {
+        return "localhost:" + server.socket().getLocalPort();
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long outcomes(PccCallbackOutcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void accept() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel channel = server.accept();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Thread connection = new Thread(() -> serve(channel), "pcc-simulator-" + channel.socket().getPort());
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                return; //zatvoren server
+            }
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        ByteBuffer in = ByteBuffer.allocate(MAX_FRAME * 2);
+        List<ByteBuffer> replies = new ArrayList<>();
+        try (channel) {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                Frame frame;
+                while ((frame = PccCodec.next(in, MAX_FRAME)) != null)
+                    reply(frame, replies);
+                in.compact();
+                ByteBuffer[] batch = replies.toArray(new ByteBuffer[0]);
+                while (batch.length > 0 && batch[batch.length - 1].hasRemaining())
+                    channel.write(batch);
+                replies.clear();
+            }
+        } catch (IOException e) {
+            //banka je zatvorila vezu ili se simulator gasi
+        }
+    }
+
+    private void reply(Frame frame, List<ByteBuffer> replies) {
+        switch (frame.mti) {
+            case PccCodec.REQUEST:
+                requests.increment();
+                CardPaymentRequestDto request = PccCodec.readRequest(frame.acquirerOrderId, frame.body);
+                replies.add(PccCodec.requestAck(frame.acquirerOrderId, true));
+                if (advise)
+                    replies.add(PccCodec.advice(TransactionPCCResponseDto.builder()
+                            .transactionStatus(TransactionStatus.SUCCESS)
+                            .acquirerOrderId(request.getAcquirerOrderId())
+                            .acquirerTimestamp(request.getAcquirerTimestamp())
+                            .issuerOrderId(issuerOrderId.incrementAndGet())
+                            .issuerOrderTimestamp(LocalDateTime.now())
+                            .paymentId(request.getPaymentId())
+                            .amount(request.getAmount())
+                            .description(request.getDescription())
+                            .payer(request.getCardHolderName())
+                            .acquirerPan(request.getPanAcquirer())
+                            .build()));
+                return;
+            case PccCodec.ADVICE_ACK:
+                outcomes.get(PccCodec.readAdviceAck(frame.body)).increment();
+                return;
+            case PccCodec.ECHO:
+                replies.add(PccCodec.echo(PccCodec.ECHO_ACK, frame.acquirerOrderId));
+                return;
+            default:
+                //ECHO_ACK i nepoznati okviri
+        }
+    }
+}
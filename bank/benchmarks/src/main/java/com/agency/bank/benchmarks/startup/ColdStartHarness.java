@@ -0,0 +1,184 @@
+package com.agency.bank.benchmarks.startup;
+
+import com.agency.bank.BankApplication;
+import com.agency.bank.benchmarks.BankContext;
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.money.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//vreme od pokretanja JVM-a banke do prvog uspesnog /payment, svako merenje u novom procesu nad istom H2 bazom:
+//  default            - Flyway i ddl-auto=validate, kao u application.properties
+//  fast-startup       - profil fast-startup (bez provere seme i JDBC metapodataka)
+//  fast-startup + CDS - isto, sa AppCDS arhivom napravljenom u jednom probnom pokretanju (JDK 13+)
+//
+//  java -cp target/benchmarks.jar com.agency.bank.benchmarks.startup.ColdStartHarness --runs=5
+public class ColdStartHarness {
+
+    private static final Duration START_TIMEOUT = Duration.ofMinutes(2);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    private int runs = 5;
+    private int port = 18083;
+    private Path directory = Paths.get("target", "startup");
+    private String jdbcUrl;
+    private int merchantOrderId;
+
+    public static void main(String[] args) throws Exception {
+        ColdStartHarness harness = new ColdStartHarness();
+        harness.parse(args);
+        harness.run();
+    }
+
+    private void parse(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0)
+                throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            switch (key) {
+                case "runs":
+                    runs = Integer.parseInt(value);
+                    break;
+                case "port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "output":
+                    directory = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option --" + key);
+            }
+        }
+        if (runs <= 0)
+            throw new IllegalArgumentException("runs must be positive");
+    }
+
+    private void run() throws Exception {
+        Files.createDirectories(directory);
+        jdbcUrl = "jdbc:h2:file:" + directory.toAbsolutePath().resolve("bank") + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH";
+        seed();
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("default", command(List.of(), "validate"));
+        variants.put("fast-startup", command(List.of(), "none", "spring.profiles.active=fast-startup"));
+        if (Runtime.version().feature() >= 13) {
+            Path archive = directory.toAbsolutePath().resolve("bank-fast-startup.jsa");
+            Files.deleteIfExists(archive);
+            //probno pokretanje: klase ucitane do prvog placanja se upisuju u arhivu kad se proces ugasi
+            measure(command(List.of("-XX:ArchiveClassesAtExit=" + archive), "none", "spring.profiles.active=fast-startup"));
+            variants.put("fast-startup + CDS", command(List.of("-XX:SharedArchiveFile=" + archive), "none", "spring.profiles.active=fast-startup"));
+        } else {
+            System.out.println("AppCDS archive needs JDK 13+ (-XX:ArchiveClassesAtExit), skipping the CDS variant");
+        }
+
+        //jedno pokretanje pre merenja, da fajlovi budu u kesu operativnog sistema za sve varijante
+        measure(variants.get("default"));
+        Map<String, long[]> results = new LinkedHashMap<>();
+        variants.keySet().forEach(name -> results.put(name, new long[runs]));
+        for (int run = 0; run < runs; run++)
+            for (Map.Entry<String, List<String>> variant : variants.entrySet())
+                results.get(variant.getKey())[run] = measure(variant.getValue());
+
+        long baseline = median(results.get("default"));
+        System.out.printf("%-22s %10s %10s %10s %10s%n", "time to first /payment", "min ms", "median ms", "max ms", "vs default");
+        results.forEach((name, millis) -> {
+            long[] sorted = millis.clone();
+            Arrays.sort(sorted);
+            System.out.printf("%-22s %10d %10d %10d %9.0f%%%n", name, sorted[0], median(millis), sorted[sorted.length - 1],
+                    100.0 * median(millis) / baseline);
+        });
+    }
+
+    //sema i prodavac se prave jednom; Flyway postojecu semu oznacava kao verziju 1 pa obe varijante rade nad istom bazom
+    private void seed() {
+        try (ConfigurableApplicationContext context = BankContext.start(jdbcUrl, "create")) {
+            BankContext.seedClients(context);
+        }
+    }
+
+    private List<String> command(List<String> jvmOptions, String ddlAuto, String... overrides) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(BankApplication.class.getName());
+        //migracije kao u pravom pokretanju, BankContext ih inace iskljucuje
+        String[] properties = Arrays.copyOf(overrides, overrides.length + 2);
+        properties[overrides.length] = "server.port=" + port;
+        properties[overrides.length + 1] = "spring.flyway.enabled=true";
+        command.addAll(BankContext.arguments(jdbcUrl, ddlAuto, properties));
+        return command;
+    }
+
+    //milisekunde od pokretanja procesa do prvog odgovora 200 sa telom na /payment
+    private long measure(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(directory.resolve("bank.log").toFile())
+                .start();
+        try {
+            long deadline = start + START_TIMEOUT.toNanos();
+            while (!paymentSucceeds()) {
+                if (!process.isAlive())
+                    throw new IllegalStateException("Bank exited with " + process.exitValue() + ", see " + directory.resolve("bank.log"));
+                if (System.nanoTime() > deadline)
+                    throw new IllegalStateException("No successful /payment within " + START_TIMEOUT.getSeconds() + "s");
+                Thread.sleep(5);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            //SIGTERM: banka se gasi uredno (i upisuje CDS arhivu ako je trazena)
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS))
+                process.destroyForcibly().waitFor();
+        }
+    }
+
+    private boolean paymentSucceeds() throws IOException, InterruptedException {
+        PaymentForBankRequestDto request = new PaymentForBankRequestDto(BankContext.MERCHANT_ID, BankContext.MERCHANT_PASSWORD,
+                Money.ofMajor(1), "Cold start", ++merchantOrderId, LocalDateTime.now(),
+                "http://localhost:4200/success", "http://localhost:4200/failed", "http://localhost:4200/error");
+        try {
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/payment"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(request)))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            //banka vraca 200 bez tela kada prodavac nije pronadjen
+            return response.statusCode() == 200 && !response.body().isEmpty();
+        } catch (IOException e) {
+            return false; //port jos nije otvoren
+        }
+    }
+
+    private static long median(long[] millis) {
+        long[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,2 @@
+-- BankContext pravi semu preko ddl-auto=create(-drop) bez Flyway-a; u produkciji payment_id_seq pravi V7__PaymentIdSequence
+create sequence if not exists payment_id_seq start with 1000000000 increment by 1000;
@@ -2,9 +2,7 @@ package com.agency.bank;
 
 import org.springframework.boot.*;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import org.springframework.context.annotation.Bean;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.web.client.RestTemplate;
 @EnableScheduling
 @SpringBootApplication
 public class BankApplication {
@@ -13,9 +11,4 @@ public class BankApplication {
 		SpringApplication.run(BankApplication.class, args);
 	}
 
-	@Bean
-	RestTemplate restTemplate() {
-		return new RestTemplate();
-	}
-
 }
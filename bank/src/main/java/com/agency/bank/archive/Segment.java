@@ -0,0 +1,252 @@
+package com.agency.bank.archive;
+
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.InflaterInputStream;
+
+import static com.agency.bank.archive.SegmentFormat.*;
+
+//segment otvoren za citanje: .idx je mapiran u memoriju i pretrazuje se binarno,
+//a blok sa trazenim redom se cita i dekompresuje tek kad zatreba
+final class Segment implements Closeable {
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer index;
+    private final int rows;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final int[] blockRows;
+
+    private Segment(Path path, FileChannel channel, MappedByteBuffer index, long[] blockOffsets, int[] blockLengths, int[] blockRows) {
+        this.path = path;
+        this.channel = channel;
+        this.index = index;
+        this.rows = index.getInt(0);
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.blockRows = blockRows;
+    }
+
+    static Segment open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = read(channel, 0, Integer.BYTES + 1);
+            if (header.getInt() != MAGIC || header.get() != VERSION)
+                throw new IOException("Not a transaction archive segment: " + path);
+            long footer = read(channel, channel.size() - Long.BYTES, Long.BYTES).getLong();
+            ByteBuffer blocks = read(channel, footer, (int) (channel.size() - Long.BYTES - footer));
+            int count = blocks.getInt();
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            int[] rows = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = blocks.getLong();
+                lengths[i] = blocks.getInt();
+                rows[i] = blocks.getInt();
+            }
+            MappedByteBuffer index;
+            try (FileChannel indexChannel = FileChannel.open(SegmentWriter.index(path), StandardOpenOption.READ)) {
+                index = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+            }
+            return new Segment(path, channel, index, offsets, lengths, rows);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    long minPaymentId() {
+        return rows == 0 ? Long.MAX_VALUE : paymentIdAt(0);
+    }
+
+    long maxPaymentId() {
+        return rows == 0 ? Long.MIN_VALUE : paymentIdAt(rows - 1);
+    }
+
+    //svi redovi sa datim paymentId (transakcija prodavca i kupca)
+    List<Transaction> find(long paymentId) throws IOException {
+        List<Transaction> found = new ArrayList<>(2);
+        if (rows == 0 || paymentId < minPaymentId() || paymentId > maxPaymentId())
+            return found;
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (paymentIdAt(middle) < paymentId)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        int end = low;
+        while (end < rows && paymentIdAt(end) == paymentId)
+            end++;
+        int[] matches = new int[end - low];
+        for (int entry = low; entry < end; entry++)
+            matches[entry - low] = index.getInt(Integer.BYTES + entry * INDEX_ENTRY_BYTES + Long.BYTES);
+        Arrays.sort(matches);
+        //redovi istog placanja su skoro uvek u istom bloku
+        for (int from = 0; from < matches.length; ) {
+            int block = matches[from] / BLOCK_ROWS;
+            int to = from;
+            while (to < matches.length && matches[to] / BLOCK_ROWS == block)
+                to++;
+            int[] wanted = new int[to - from];
+            for (int i = from; i < to; i++)
+                wanted[i - from] = matches[i] % BLOCK_ROWS;
+            found.addAll(Arrays.asList(readBlock(block, wanted)));
+            from = to;
+        }
+        return found;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long paymentIdAt(int entry) {
+        return index.getLong(Integer.BYTES + entry * INDEX_ENTRY_BYTES);
+    }
+
+    private Transaction[] readBlock(int number, int[] wanted) throws IOException {
+        ByteBuffer compressed = read(channel, blockOffsets[number], blockLengths[number]);
+        byte[] raw;
+        try (InflaterInputStream inflater = new InflaterInputStream(new ByteArrayInputStream(compressed.array(), 0, compressed.limit()))) {
+            raw = inflater.readAllBytes();
+        }
+        return new BlockReader(blockRows[number], wanted, raw).read();
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Truncated archive segment");
+        }
+        return buffer.flip();
+    }
+
+    //kolone se citaju redom do kraja bloka, ali se pamte samo vrednosti trazenih redova (wanted je sortiran)
+    private static final class BlockReader {
+        private final int rows;
+        private final int[] wanted;
+        private final byte[] in;
+        private final Transaction[] transactions;
+        private int position;
+
+        private BlockReader(int rows, int[] wanted, byte[] in) {
+            this.rows = rows;
+            this.wanted = wanted;
+            this.in = in;
+            this.transactions = new Transaction[wanted.length];
+            for (int i = 0; i < wanted.length; i++)
+                transactions[i] = new Transaction();
+        }
+
+        private Transaction[] read() {
+            readDeltas((t, v) -> t.setId(v));
+            readDeltas((t, v) -> t.setPaymentId(v));
+            for (int row = 0, w = 0; row < rows; row++) {
+                byte status = in[position++];
+                if (w < wanted.length && wanted[w] == row)
+                    transactions[w++].setTransactionStatus(status < 0 ? null : STATUSES[status]);
+            }
+            readValues((t, v) -> t.setMerchantOrderId((int) v));
+            readTimestamps(Transaction::setMerchantTimestamp);
+            readValues((t, v) -> t.setAcquirerOrderId(v));
+            readTimestamps(Transaction::setAcquirerTimestamp);
+            readValues((t, v) -> t.setIssuerOrderId((int) v));
+            readTimestamps(Transaction::setIssuerTimestamp);
+            readValues((t, v) -> t.setAmount(v));
+            for (int row = 0, w = 0; row < rows; row++) {
+                int length = (int) varLong() - 1;
+                boolean keep = w < wanted.length && wanted[w] == row;
+                if (length >= 0 && keep)
+                    transactions[w].setDescription(new String(in, position, length, StandardCharsets.UTF_8));
+                if (length > 0)
+                    position += length;
+                if (keep)
+                    w++;
+            }
+            readValues((t, v) -> {
+                if (v != 0) {
+                    Client client = new Client();
+                    client.setId(v);
+                    t.setClient(client);
+                }
+            });
+            return transactions;
+        }
+
+        private long varLong() {
+            long zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                if (b >= 0)
+                    return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+
+        private void readDeltas(ObjLongConsumer<Transaction> setter) {
+            long previous = 0;
+            for (int row = 0, w = 0; row < rows; row++) {
+                previous += varLong();
+                if (w < wanted.length && wanted[w] == row)
+                    setter.accept(transactions[w++], previous);
+            }
+        }
+
+        private void readValues(ObjLongConsumer<Transaction> setter) {
+            for (int row = 0, w = 0; row < rows; row++) {
+                long value = varLong();
+                if (w < wanted.length && wanted[w] == row)
+                    setter.accept(transactions[w++], value);
+            }
+        }
+
+        private void readTimestamps(BiConsumer<Transaction, LocalDateTime> setter) {
+            int present = position;
+            position += (rows + 7) / 8;
+            long previous = 0;
+            for (int row = 0, w = 0; row < rows; row++) {
+                boolean keep = w < wanted.length && wanted[w] == row;
+                if ((in[present + (row >> 3)] & (1 << (row & 7))) != 0) {
+                    previous += varLong();
+                    if (keep)
+                        setter.accept(transactions[w], timestamp(previous));
+                }
+                if (keep)
+                    w++;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.agency.bank.archive;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+//format segmenta arhive:
+//  zaglavlje: MAGIC (int), VERSION (byte)
+//  blokovi: do BLOCK_ROWS redova, kolona po kolona (varint, razlike susednih vrednosti), kompresovano deflate-om
+//  tabela blokova: broj blokova, pa za svaki offset (long), duzina (int) i broj redova (int); poslednjih 8 bajtova je offset tabele
+//uz svaki segment ide .idx: broj redova (int), pa parovi (paymentId long, redni broj reda int) sortirani po paymentId
+final class SegmentFormat {
+
+    static final int MAGIC = 0x42545853; //"BTXS"
+    static final byte VERSION = 1;
+    static final int BLOCK_ROWS = 1024;
+    static final int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = ".idx";
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private SegmentFormat() {
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    //mikrosekunde, kao u Postgres-u
+    static long micros(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000;
+    }
+
+    static LocalDateTime timestamp(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000), (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,192 @@
+package com.agency.bank.archive;
+
+import com.agency.bank.model.Transaction;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.zip.DeflaterOutputStream;
+
+import static com.agency.bank.archive.SegmentFormat.*;
+
+//pise segment u .tmp fajlove; tek publish() ih premesta pod pravo ime, pa se nedovrsen segment nikad ne ucitava
+final class SegmentWriter implements Closeable {
+
+    private final Path segment;
+    private final Path segmentTemp;
+    private final Path indexTemp;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final List<Transaction> block = new ArrayList<>(BLOCK_ROWS);
+    private final List<long[]> blocks = new ArrayList<>(); //offset, duzina, broj redova
+    private long position;
+    private long[] ids = new long[BLOCK_ROWS];
+    private long[] paymentIds = new long[BLOCK_ROWS];
+    private int rows;
+
+    SegmentWriter(Path segment) throws IOException {
+        this.segment = segment;
+        this.segmentTemp = segment.resolveSibling(segment.getFileName() + TEMP_SUFFIX);
+        this.indexTemp = index(segment).resolveSibling(index(segment).getFileName() + TEMP_SUFFIX);
+        this.channel = FileChannel.open(segmentTemp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        position = Integer.BYTES + 1;
+    }
+
+    static Path index(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    void add(Transaction transaction) throws IOException {
+        if (rows == ids.length) {
+            ids = Arrays.copyOf(ids, rows * 2);
+            paymentIds = Arrays.copyOf(paymentIds, rows * 2);
+        }
+        ids[rows] = transaction.getId();
+        paymentIds[rows] = transaction.getPaymentId();
+        rows++;
+        block.add(transaction);
+        if (block.size() == BLOCK_ROWS)
+            writeBlock();
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    long[] ids() {
+        return Arrays.copyOf(ids, rows);
+    }
+
+    //upisuje tabelu blokova i indeks na disk (fsync) i daje im konacna imena
+    Path publish() throws IOException {
+        if (!block.isEmpty())
+            writeBlock();
+        long footer = position;
+        out.writeInt(blocks.size());
+        for (long[] b : blocks) {
+            out.writeLong(b[0]);
+            out.writeInt((int) b[1]);
+            out.writeInt((int) b[2]);
+        }
+        out.writeLong(footer);
+        out.flush();
+        channel.force(true);
+        writeIndex();
+        Files.move(indexTemp, index(segment), StandardCopyOption.ATOMIC_MOVE);
+        Files.move(segmentTemp, segment, StandardCopyOption.ATOMIC_MOVE);
+        return segment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+        Files.deleteIfExists(segmentTemp);
+        Files.deleteIfExists(indexTemp);
+    }
+
+    private void writeIndex() throws IOException {
+        Integer[] order = IntStream.range(0, rows).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingLong(row -> paymentIds[row]));
+        try (FileChannel indexChannel = FileChannel.open(indexTemp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(indexChannel), 64 * 1024));
+            index.writeInt(rows);
+            for (int row : order) {
+                index.writeLong(paymentIds[row]);
+                index.writeInt(row);
+            }
+            index.flush();
+            indexChannel.force(true);
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(block.size() * 48);
+        DataOutputStream columns = new DataOutputStream(raw);
+        writeDeltas(columns, Transaction::getId);
+        writeDeltas(columns, Transaction::getPaymentId);
+        for (Transaction transaction : block)
+            columns.writeByte(transaction.getTransactionStatus() == null ? -1 : transaction.getTransactionStatus().ordinal());
+        writeValues(columns, Transaction::getMerchantOrderId);
+        writeTimestamps(columns, Transaction::getMerchantTimestamp);
+        writeValues(columns, Transaction::getAcquirerOrderId);
+        writeTimestamps(columns, Transaction::getAcquirerTimestamp);
+        writeValues(columns, Transaction::getIssuerOrderId);
+        writeTimestamps(columns, Transaction::getIssuerTimestamp);
+        writeValues(columns, Transaction::getAmount);
+        for (Transaction transaction : block) {
+            String description = transaction.getDescription();
+            if (description == null) {
+                writeVarLong(columns, 0);
+                continue;
+            }
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(columns, bytes.length + 1);
+            columns.write(bytes);
+        }
+        writeValues(columns, transaction -> transaction.getClient() == null ? 0 : transaction.getClient().getId());
+        columns.flush();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 3);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(compressed)) {
+            raw.writeTo(deflater);
+        }
+        compressed.writeTo(out);
+        blocks.add(new long[]{position, compressed.size(), block.size()});
+        position += compressed.size();
+        block.clear();
+    }
+
+    private void writeDeltas(DataOutputStream columns, ToLongFunction<Transaction> column) throws IOException {
+        long previous = 0;
+        for (Transaction transaction : block) {
+            long value = column.applyAsLong(transaction);
+            writeVarLong(columns, value - previous);
+            previous = value;
+        }
+    }
+
+    private void writeValues(DataOutputStream columns, ToLongFunction<Transaction> column) throws IOException {
+        for (Transaction transaction : block)
+            writeVarLong(columns, column.applyAsLong(transaction));
+    }
+
+    //bit po redu za null, pa razlike za postojece vrednosti
+    private void writeTimestamps(DataOutputStream columns, Function<Transaction, LocalDateTime> column) throws IOException {
+        byte[] present = new byte[(block.size() + 7) / 8];
+        for (int i = 0; i < block.size(); i++) {
+            if (column.apply(block.get(i)) != null)
+                present[i >> 3] |= 1 << (i & 7);
+        }
+        columns.write(present);
+        long previous = 0;
+        for (Transaction transaction : block) {
+            LocalDateTime timestamp = column.apply(transaction);
+            if (timestamp == null)
+                continue;
+            long value = micros(timestamp);
+            writeVarLong(columns, value - previous);
+            previous = value;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.agency.bank.archive;
+
+import com.agency.bank.model.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.agency.bank.archive.SegmentFormat.*;
+
+//hladne transakcije: segmenti po mesecu (partition key je merchantTimestamp, odnosno acquirerTimestamp),
+//jedan mesec moze imati vise segmenata. Ime segmenta je transaction-<mesec>-<prvi id>.seg
+@Slf4j
+@Service
+public class TransactionArchive {
+
+    private final Path directory;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    public TransactionArchive(@Value("${bank.archive.directory:archive}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Segment> opened = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX))
+                    Files.delete(file); //segment koji nije zavrsen pre pada, redovi su ostali u bazi
+                else if (name.endsWith(SEGMENT_SUFFIX))
+                    opened.add(Segment.open(file));
+            }
+        }
+        opened.sort(Comparator.comparing(Segment::path));
+        segments.addAll(opened);
+        if (!opened.isEmpty())
+            log.info("Opened {} archive segments with {} transactions from {}", opened.size(), rows(), directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (Segment segment : segments)
+            segment.close();
+        segments.clear();
+    }
+
+    //prva transakcija za placanje (najmanji id), kao TransactionRepository.findFirstByPaymentIdOrderById
+    public Transaction findFirst(long paymentId) {
+        Transaction first = null;
+        try {
+            for (Segment segment : segments) {
+                for (Transaction transaction : segment.find(paymentId)) {
+                    if (first == null || transaction.getId() < first.getId())
+                        first = transaction;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return first;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public long rows() {
+        long rows = 0;
+        for (Segment segment : segments)
+            rows += segment.rows();
+        return rows;
+    }
+
+    SegmentWriter newSegment(YearMonth month, long firstId) throws IOException {
+        return new SegmentWriter(directory.resolve("transaction-" + month + "-" + firstId + SEGMENT_SUFFIX));
+    }
+
+    void add(Path segment) throws IOException {
+        segments.add(Segment.open(segment));
+    }
+}
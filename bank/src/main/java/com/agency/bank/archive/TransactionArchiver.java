@@ -0,0 +1,149 @@
+package com.agency.bank.archive;
+
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+//transakcije su podeljene po mesecima: poslednjih hot-months meseci je u tabeli transaction, starije
+//zavrsene (SUCCESS/FAILED) se prebacuju u segmente arhive. Segment ima najvise segment-rows redova i upisuje
+//se u jednoj transakciji baze sa brisanjem tih redova; posle pada pre commit-a redovi ostaju u bazi,
+//a segment se upise ponovo (duplikati u arhivi ne smetaju, citanje uzima najmanji id)
+@Slf4j
+@Service
+public class TransactionArchiver {
+
+    private static final String PARTITION_KEY = "coalesce(merchant_timestamp, acquirer_timestamp)";
+    private static final String ARCHIVABLE = "transaction_status in (" + TransactionStatus.SUCCESS.ordinal() + ", " + TransactionStatus.FAILED.ordinal() + ")";
+    private static final String SELECT_OLDEST = "select min(" + PARTITION_KEY + ") from transaction where " + ARCHIVABLE + " and " + PARTITION_KEY + " < ?";
+    private static final String SELECT_SEGMENT =
+            "select id, payment_id, transaction_status, merchant_order_id, merchant_timestamp, acquirer_order_id, acquirer_timestamp, " +
+            "issuer_order_id, issuer_timestamp, amount, description, client_id from transaction " +
+            "where " + ARCHIVABLE + " and " + PARTITION_KEY + " >= ? and " + PARTITION_KEY + " < ? order by id limit ? for update";
+    private static final int DELETE_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionArchive transactionArchive;
+    private final int hotMonths;
+    private final int segmentRows;
+    private final Counter archived;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public TransactionArchiver(JdbcTemplate jdbcTemplate,
+                               NamedParameterJdbcTemplate namedParameterJdbcTemplate,
+                               TransactionTemplate transactionTemplate,
+                               TransactionArchive transactionArchive,
+                               MeterRegistry meterRegistry,
+                               @Value("${bank.archive.hot-months:3}") int hotMonths,
+                               @Value("${bank.archive.segment-rows:100000}") int segmentRows) {
+        if (hotMonths < 1)
+            throw new IllegalArgumentException("bank.archive.hot-months must be at least 1");
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.transactionArchive = transactionArchive;
+        this.hotMonths = hotMonths;
+        this.segmentRows = segmentRows;
+        this.archived = Counter.builder("transaction.archive.rows")
+                .description("Transactions moved from the table to archive segments")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${bank.archive.cron:0 30 2 * * *}")
+    public void scheduledArchive() {
+        archive();
+    }
+
+    //tekuci mesec i hot-months - 1 prethodnih ostaju u tabeli
+    public long archive() {
+        if (!running.compareAndSet(false, true))
+            return 0;
+        try {
+            LocalDateTime cutoff = YearMonth.now().minusMonths(hotMonths - 1).atDay(1).atStartOfDay();
+            long total = 0;
+            LocalDateTime oldest;
+            while ((oldest = jdbcTemplate.queryForObject(SELECT_OLDEST, LocalDateTime.class, cutoff)) != null) {
+                YearMonth month = YearMonth.from(oldest);
+                long rows = 0;
+                for (int segment; (segment = archiveSegment(month)) > 0; )
+                    rows += segment;
+                log.info("Archived {} transactions from {}", rows, month);
+                total += rows;
+            }
+            return total;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int archiveSegment(YearMonth month) {
+        Integer rows = transactionTemplate.execute(status -> jdbcTemplate.query(SELECT_SEGMENT, rs -> {
+            if (!rs.next())
+                return 0;
+            try (SegmentWriter writer = transactionArchive.newSegment(month, rs.getLong(1))) {
+                do {
+                    writer.add(transaction(rs));
+                } while (rs.next());
+                delete(writer.ids());
+                transactionArchive.add(writer.publish());
+                archived.increment(writer.rows());
+                return writer.rows();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, month.atDay(1).atStartOfDay(), month.plusMonths(1).atDay(1).atStartOfDay(), segmentRows));
+        return rows == null ? 0 : rows;
+    }
+
+    private void delete(long[] ids) {
+        for (int from = 0; from < ids.length; from += DELETE_CHUNK) {
+            List<Long> chunk = Arrays.stream(ids, from, Math.min(ids.length, from + DELETE_CHUNK)).boxed().collect(Collectors.toList());
+            namedParameterJdbcTemplate.update("delete from transaction where id in (:ids)", new MapSqlParameterSource("ids", chunk));
+        }
+    }
+
+    private static Transaction transaction(ResultSet rs) throws SQLException {
+        Client client = null;
+        long clientId = rs.getLong(12);
+        if (!rs.wasNull()) {
+            client = new Client();
+            client.setId(clientId);
+        }
+        return Transaction.builder()
+                .id(rs.getLong(1))
+                .paymentId(rs.getLong(2))
+                .transactionStatus(TransactionStatus.values()[rs.getInt(3)])
+                .merchantOrderId(rs.getInt(4))
+                .merchantTimestamp(rs.getObject(5, LocalDateTime.class))
+                .acquirerOrderId(rs.getLong(6))
+                .acquirerTimestamp(rs.getObject(7, LocalDateTime.class))
+                .issuerOrderId(rs.getInt(8))
+                .issuerTimestamp(rs.getObject(9, LocalDateTime.class))
+                .amount(rs.getLong(10))
+                .description(rs.getString(11))
+                .client(client)
+                .build();
+    }
+}
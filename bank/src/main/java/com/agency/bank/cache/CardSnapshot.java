@@ -0,0 +1,34 @@
+package com.agency.bank.cache;
+
+import com.agency.bank.model.Card;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.security.MessageDigest;
+
+//podaci kartice potrebni za proveru placanja, sigurnosni kod se cuva samo kao HMAC sa kljucem kesa (SecurityCodeMac)
+@Getter
+public final class CardSnapshot {
+
+    private final long id;
+    private final String dateExpiration;
+    private final byte[] securityCodeMac;
+    @Getter(AccessLevel.NONE)
+    private final SecurityCodeMac mac;
+
+    private CardSnapshot(long id, String dateExpiration, byte[] securityCodeMac, SecurityCodeMac mac) {
+        this.id = id;
+        this.dateExpiration = dateExpiration;
+        this.securityCodeMac = securityCodeMac;
+        this.mac = mac;
+    }
+
+    static CardSnapshot of(Card card, SecurityCodeMac mac) {
+        return new CardSnapshot(card.getId(), card.getDateExpiration(), mac.of(card.getSecurityCode()), mac);
+    }
+
+    public boolean matches(String securityCode, String dateExpiration) {
+        return this.dateExpiration.equals(dateExpiration)
+                && MessageDigest.isEqual(securityCodeMac, mac.of(securityCode));
+    }
+}
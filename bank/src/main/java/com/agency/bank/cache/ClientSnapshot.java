@@ -0,0 +1,13 @@
+package com.agency.bank.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//klijent bez rezervacija i transakcija, samo ono sto treba placanju
+@Getter
+@AllArgsConstructor
+public final class ClientSnapshot {
+    private final long id;
+    private final long accountId;
+    private final String accountNumber;
+}
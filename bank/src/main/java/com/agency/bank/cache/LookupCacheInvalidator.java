@@ -0,0 +1,47 @@
+package com.agency.bank.cache;
+
+import com.agency.bank.model.Client;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+//JPA listener za Card, Client i Account; Hibernate ga pravi preko Spring-a
+public class LookupCacheInvalidator {
+
+    private final ObjectProvider<PaymentLookupCache> paymentLookupCache; //kes zavisi od repozitorijuma pa se uzima tek pri upotrebi
+    private final ObjectProvider<MerchantCredentialCache> merchantCredentialCache;
+
+    public LookupCacheInvalidator(ObjectProvider<PaymentLookupCache> paymentLookupCache,
+                                  ObjectProvider<MerchantCredentialCache> merchantCredentialCache) {
+        this.paymentLookupCache = paymentLookupCache;
+        this.merchantCredentialCache = merchantCredentialCache;
+    }
+
+    //Post* se poziva pri flush-u, pre commit-a: kes bi se tada napunio iz baze starim redom, pa se prazni posle commit-a
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(entity);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(entity);
+            }
+        });
+    }
+
+    private void invalidate(Object entity) {
+        paymentLookupCache.ifAvailable(PaymentLookupCache::invalidateAll);
+        //izmena klijenta moze da promeni i merchantId, ne samo lozinku
+        if (entity instanceof Client)
+            merchantCredentialCache.ifAvailable(MerchantCredentialCache::invalidateAll);
+    }
+}
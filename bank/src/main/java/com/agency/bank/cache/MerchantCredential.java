@@ -0,0 +1,17 @@
+package com.agency.bank.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//hash lozinke prodavca iz baze i HMAC lozinke koja je poslednja uspesno proverena (null dok je nema)
+@Getter
+@AllArgsConstructor
+public final class MerchantCredential {
+    private final long clientId;
+    private final String passwordHash;
+    private final byte[] verified;
+
+    public MerchantCredential(long clientId, String passwordHash) {
+        this(clientId, passwordHash, null);
+    }
+}
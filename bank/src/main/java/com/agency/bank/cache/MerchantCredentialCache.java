@@ -0,0 +1,44 @@
+package com.agency.bank.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+//kredencijali prodavaca po merchantId ispred MerchantCredentialService. ttl ogranicava koliko dugo druga
+//instanca prihvata staru lozinku posle promene, na instanci koja menja lozinku kes se prazni odmah
+@Component
+public class MerchantCredentialCache {
+
+    private final Cache<String, MerchantCredential> credentials;
+
+    public MerchantCredentialCache(MeterRegistry meterRegistry,
+                                   @Value("${bank.merchant-credentials.cache-size:10000}") long maxSize,
+                                   @Value("${bank.merchant-credentials.ttl:10m}") Duration ttl) {
+        this.credentials = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().<String, MerchantCredential>build(),
+                "merchantCredentials");
+    }
+
+    public MerchantCredential get(String merchantId, Function<String, MerchantCredential> loader) {
+        return credentials.get(merchantId, loader);
+    }
+
+    //samo ako u medjuvremenu kredencijal nije izbacen ili zamenjen
+    public void replace(String merchantId, MerchantCredential current, MerchantCredential replacement) {
+        credentials.asMap().replace(merchantId, current, replacement);
+    }
+
+    public void invalidate(String merchantId) {
+        credentials.invalidate(merchantId);
+    }
+
+    public void invalidateAll() {
+        credentials.invalidateAll();
+    }
+}
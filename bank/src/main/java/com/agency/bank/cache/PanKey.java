@@ -0,0 +1,30 @@
+package com.agency.bank.cache;
+
+import java.util.Arrays;
+
+//kljuc u kesu je HMAC pan-a sa kljucem kesa (SecurityCodeMac), sam pan se ne cuva. Obican SHA-256 bi se vratio
+//u pan isprobavanjem, jer pan ima poznat BIN, kontrolnu cifru i malo nepoznatih cifara
+public final class PanKey {
+
+    private final byte[] mac;
+    private final int hash;
+
+    private PanKey(byte[] mac) {
+        this.mac = mac;
+        this.hash = Arrays.hashCode(mac);
+    }
+
+    static PanKey of(String pan, SecurityCodeMac securityCodeMac) {
+        return new PanKey(securityCodeMac.of(pan));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PanKey && Arrays.equals(mac, ((PanKey) o).mac);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,79 @@
+package com.agency.bank.cache;
+
+import com.agency.bank.model.Card;
+import com.agency.bank.repository.CardRepository;
+import com.agency.bank.repository.ClientRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+//kes kartica i klijenata po pan-u ispred CardService i ClientService. Promasaji se citaju u readOnly transakciji
+//(sa replike kad je podesena), pogodak ne otvara transakciju
+@Component
+public class PaymentLookupCache {
+
+    private final CardRepository cardRepository;
+    private final ClientRepository clientRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final SecurityCodeMac securityCodeMac = new SecurityCodeMac();
+    private final Cache<PanKey, CardSnapshot> cards;
+    private final Cache<PanKey, ClientSnapshot> clients;
+    private final String panAcquirer;
+    private volatile ClientSnapshot acquirer; //prodavac je isti za svako placanje i ne izbacuje se iz kesa
+
+    public PaymentLookupCache(CardRepository cardRepository,
+                              ClientRepository clientRepository,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${bank.cache.max-size:10000}") long maxSize,
+                              @Value("${bank.cache.ttl:10m}") Duration ttl,
+                              @Value("${bank.panAcquirer}") String panAcquirer) {
+        this.cardRepository = cardRepository;
+        this.clientRepository = clientRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.panAcquirer = panAcquirer;
+        this.cards = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().<PanKey, CardSnapshot>build(),
+                "cardLookup");
+        this.clients = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().<PanKey, ClientSnapshot>build(),
+                "clientLookup");
+    }
+
+    public CardSnapshot findCard(String pan) {
+        return cards.get(PanKey.of(pan, securityCodeMac), key -> readOnlyTransaction.execute(status -> {
+            Card card = cardRepository.findByPan(pan);
+            return card == null ? null : CardSnapshot.of(card, securityCodeMac);
+        }));
+    }
+
+    public ClientSnapshot findClient(String pan) {
+        if (pan.equals(panAcquirer))
+            return getAcquirer();
+        return clients.get(PanKey.of(pan, securityCodeMac), key -> readOnlyTransaction.execute(status -> clientRepository.findSnapshotByPan(pan)));
+    }
+
+    public ClientSnapshot getAcquirer() {
+        ClientSnapshot snapshot = acquirer;
+        if (snapshot == null) {
+            snapshot = readOnlyTransaction.execute(status -> clientRepository.findSnapshotByPan(panAcquirer));
+            acquirer = snapshot;
+        }
+        return snapshot;
+    }
+
+    //kartice, klijenti i racuni se menjaju retko, a stari pan se posle izmene vise ne zna
+    public void invalidateAll() {
+        cards.invalidateAll();
+        clients.invalidateAll();
+        acquirer = null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.agency.bank.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+//placanja upisana na ovoj instanci u poslednjih replica-max-lag + replica-check-interval: replika ih mozda jos nema,
+//pa se citaju sa primarne baze. Bez replika se nista ne pamti
+@Component
+public class RecentPaymentWrites {
+
+    private final Cache<Long, Boolean> recent;
+
+    public RecentPaymentWrites(@Value("${bank.datasource.replica-urls:}") String replicaUrls,
+                               @Value("${bank.datasource.replica-max-lag:2s}") Duration maxLag,
+                               @Value("${bank.datasource.replica-check-interval:500ms}") Duration checkInterval,
+                               @Value("${bank.datasource.recent-writes-size:100000}") long size) {
+        this.recent = replicaUrls.isBlank() ? null : Caffeine.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(maxLag.plus(checkInterval))
+                .build();
+    }
+
+    public void record(long paymentId) {
+        if (recent != null)
+            recent.put(paymentId, Boolean.TRUE);
+    }
+
+    public boolean contains(long paymentId) {
+        return recent != null && recent.getIfPresent(paymentId) != null;
+    }
+}
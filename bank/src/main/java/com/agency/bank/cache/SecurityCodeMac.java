@@ -0,0 +1,40 @@
+package com.agency.bank.cache;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+
+//HMAC-SHA256 sigurnosnog koda (i pan-a za PanKey) sa kljucem koji postoji samo u memoriji ove instance i nigde se ne
+//upisuje. obican hash koda od tri cifre se vraca u kod isprobavanjem svih 1000 vrednosti, a bez kljuca to nije moguce
+final class SecurityCodeMac {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKey key;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    SecurityCodeMac() {
+        try {
+            this.key = KeyGenerator.getInstance(ALGORITHM).generateKey();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    byte[] of(String value) {
+        return macs.get().doFinal(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.agency.bank.config;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+//keep-alive pool konekcija ka PSP-u i PCC-u, sa posebnim limitom po odredistu i timeout-ima
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${bank.http.max-total:200}")
+    private int maxTotal;
+    @Value("${bank.http.max-per-destination:50}")
+    private int maxPerDestination;
+    @Value("${bank.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+    @Value("${bank.http.read-timeout:5s}")
+    private Duration readTimeout;
+    @Value("${bank.http.idle-timeout:30s}")
+    private Duration idleTimeout;
+    @Value("${bank.pspUrl}")
+    private String pspUrl;
+    @Value("${bank.pccUrl}")
+    private String pccUrl;
+
+    @Bean(destroyMethod = "close")
+    CloseableHttpClient httpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(idleTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerDestination);
+        connectionManager.setMaxPerRoute(route(pspUrl), maxPerDestination);
+        connectionManager.setMaxPerRoute(route(pccUrl), maxPerDestination);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setConnectionRequestTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(idleTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Bean
+    RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    private static HttpRoute route(String url) {
+        URI uri = URI.create(url);
+        int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()));
+    }
+}
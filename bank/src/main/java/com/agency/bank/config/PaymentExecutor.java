@@ -0,0 +1,49 @@
+package com.agency.bank.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+//bank.execution-mode=platform: obrada ostaje na Tomcat thread-u, kao ranije (PlatformTransactionController).
+//bank.execution-mode=virtual: Tomcat thread se odmah vraca u pool (servlet async), a obrada koja ceka na
+//JDBC i PSP/PCC ide na virtuelni thread. Tomcat 9 drzi svoj thread pod synchronized, pa se virtuelni
+//thread-ovi ne postavljaju direktno kao Tomcat executor. Virtual mod trazi Java 21 u runtime-u
+@Component
+public class PaymentExecutor {
+
+    private final ExecutorService executor;
+
+    public PaymentExecutor(@Value("${bank.execution-mode:platform}") String executionMode) {
+        if (!"platform".equals(executionMode) && !"virtual".equals(executionMode))
+            throw new IllegalStateException("bank.execution-mode must be platform or virtual, got " + executionMode);
+        this.executor = "virtual".equals(executionMode) ? newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    //samo za VirtualTransactionController; u platform modu kontroler odgovara direktno, bez CompletableFuture
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        if (executor == null)
+            throw new IllegalStateException("bank.execution-mode=platform runs payments on the Tomcat thread");
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("bank.execution-mode=virtual requires Java 21 or newer, running on " + Runtime.version());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual thread executor", e);
+        }
+    }
+}
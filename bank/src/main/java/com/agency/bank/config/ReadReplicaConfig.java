@@ -0,0 +1,57 @@
+package com.agency.bank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+//samo kad je zadat bank.datasource.replica-urls (jdbc url-ovi replika odvojeni zarezom): upisi i obicne transakcije idu
+//na spring.datasource.url, a @Transactional(readOnly = true) metode na replike. Replike koriste isti korisnik, lozinku
+//i spring.datasource.hikari.* podesavanja kao primarna baza
+@Configuration
+@ConditionalOnProperty(name = "bank.datasource.replica-urls")
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties properties,
+                                                                 Environment environment,
+                                                                 @Value("${bank.datasource.replica-urls}") List<String> replicaUrls,
+                                                                 @Value("${bank.datasource.replica-max-lag:2s}") Duration maxLag) {
+        HikariDataSource primary = pool(properties, properties.determineUrl(), "bank-primary", environment);
+        List<HikariDataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (String url : replicaUrls)
+            replicas.add(pool(properties, url.trim(), "bank-replica-" + replicas.size(), environment));
+        return new ReadWriteRoutingDataSource(primary, replicas, maxLag);
+    }
+
+    @Primary
+    @Bean
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(ReadWriteRoutingDataSource readWriteRoutingDataSource,
+                                               @Value("${bank.datasource.replica-check-interval:500ms}") Duration interval) {
+        return new ReplicaLagMonitor(readWriteRoutingDataSource, interval);
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, String url, String name, Environment environment) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).url(url).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        return pool;
+    }
+}
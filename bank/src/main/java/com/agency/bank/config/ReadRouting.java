@@ -0,0 +1,35 @@
+package com.agency.bank.config;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+//koja baza odgovara na upit: readOnly transakcije idu na repliku, sve ostalo na primarnu.
+//Spring Data sam otvara readOnly transakciju oko findById/findAll/existsById van servisne transakcije, a ti pozivi
+//(npr. stanje racuna za ledger) moraju da vide poslednji upis pa ostaju na primarnoj
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    //u readOnly transakciji, pre prvog upita: do kraja transakcije se cita sa primarne baze (read-your-writes)
+    public static void usePrimary() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || PRIMARY.get() != null)
+            return;
+        PRIMARY.set(Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                PRIMARY.remove();
+            }
+        });
+    }
+
+    static boolean replicaAllowed() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || PRIMARY.get() != null)
+            return false;
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        return name == null || !name.startsWith("org.springframework.data.");
+    }
+}
@@ -0,0 +1,109 @@
+package com.agency.bank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//pool primarne baze i pool-ovi replika. Replika se koristi samo dok joj je poslednje izmereno kasnjenje
+//najvise bank.datasource.replica-max-lag, replike se smenjuju redom, a bez ispravne replike cita se sa primarne.
+//Konekcija se bira tek na prvom upitu (LazyConnectionDataSourceProxy ispred), kad se vec zna da li je transakcija readOnly.
+//Metrike se vezuju tek kad MeterRegistry postoji, jer registry pri pravljenju trazi sve DataSource bean-ove
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder, Closeable {
+
+    private static final String PRIMARY = "primary";
+    static final long UNKNOWN_LAG = Long.MAX_VALUE;
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final long maxLagMillis;
+    private final AtomicLongArray lagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, Duration maxLag) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagMillis = new AtomicLongArray(replicas.size());
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+            lagMillis.set(i, UNKNOWN_LAG); //dok kasnjenje nije izmereno replika se ne koristi
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    //pool primarne baze instrumentuje Spring Boot kao i bez replika
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariDataSource pool = replicas.get(i);
+            if (pool.getMetricsTrackerFactory() == null && pool.getMetricRegistry() == null)
+                pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            int replica = i;
+            Gauge.builder("datasource.replica.lag", lagMillis, lag -> lag.get(replica) == UNKNOWN_LAG ? Double.NaN : lag.get(replica))
+                    .tag("pool", pool.getPoolName())
+                    .baseUnit("milliseconds")
+                    .description("Replication lag measured from the heartbeat written to the primary")
+                    .register(registry);
+        }
+        FunctionCounter.builder("datasource.reads", replicaReads, LongAdder::sum)
+                .tag("target", "replica")
+                .description("Read-only transactions routed to a replica or, without a fresh replica, to the primary")
+                .register(registry);
+        FunctionCounter.builder("datasource.reads", primaryReads, LongAdder::sum)
+                .tag("target", "primary")
+                .description("Read-only transactions routed to a replica or, without a fresh replica, to the primary")
+                .register(registry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!ReadRouting.replicaAllowed())
+            return PRIMARY;
+        int start = next.getAndIncrement();
+        for (int i = 0; i < replicas.size(); i++) {
+            int replica = Math.floorMod(start + i, replicas.size());
+            if (lagMillis.get(replica) <= maxLagMillis) {
+                replicaReads.increment();
+                return replica;
+            }
+        }
+        primaryReads.increment();
+        return PRIMARY;
+    }
+
+    HikariDataSource primary() {
+        return primary;
+    }
+
+    List<HikariDataSource> replicas() {
+        return replicas;
+    }
+
+    void lag(int replica, long millis) {
+        lagMillis.set(replica, millis);
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
@@ -0,0 +1,85 @@
+package com.agency.bank.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//kasnjenje replika: na primarnu se svakih interval upisuje trenutno vreme u replica_heartbeat, a sa svake replike
+//se cita poslednje vreme koje je do nje stiglo. Izmereno kasnjenje je zato najvise za interval vece od stvarnog.
+//Replika koja ne odgovara ili nema red dobija nepoznato kasnjenje i ne koristi se
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final ReadWriteRoutingDataSource routing;
+    private final JdbcTemplate primary;
+    private final List<JdbcTemplate> replicas;
+    private final Duration interval;
+    private volatile boolean running;
+    private Thread monitorThread;
+
+    public ReplicaLagMonitor(ReadWriteRoutingDataSource routing, Duration interval) {
+        this.routing = routing;
+        this.primary = new JdbcTemplate(routing.primary());
+        this.replicas = routing.replicas().stream().map(JdbcTemplate::new).collect(Collectors.toList());
+        this.interval = interval;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        monitorThread = new Thread(this::monitor, "replica-lag-monitor");
+        monitorThread.setDaemon(true);
+        monitorThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (monitorThread != null) {
+            monitorThread.interrupt();
+            monitorThread.join(interval.toMillis() * 10);
+        }
+    }
+
+    private void monitor() {
+        while (running) {
+            try {
+                check();
+                Thread.sleep(interval.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Replica lag check failed", e);
+                try {
+                    Thread.sleep(interval.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public void check() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < replicas.size(); i++) {
+            try {
+                Long beatAt = replicas.get(i).queryForObject("select beat_at from replica_heartbeat where id = 1", Long.class);
+                routing.lag(i, beatAt == null ? ReadWriteRoutingDataSource.UNKNOWN_LAG : Math.max(0, now - beatAt));
+            } catch (DataAccessException e) {
+                HikariDataSource replica = routing.replicas().get(i);
+                log.warn("Replica {} is not used, heartbeat cannot be read: {}", replica.getPoolName(), e.getMessage());
+                routing.lag(i, ReadWriteRoutingDataSource.UNKNOWN_LAG);
+            }
+        }
+        if (primary.update("update replica_heartbeat set beat_at = ? where id = 1", now) == 0)
+            primary.update("insert into replica_heartbeat (id, beat_at) values (1, ?) on conflict do nothing", now);
+    }
+}
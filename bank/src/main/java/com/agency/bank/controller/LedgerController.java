@@ -0,0 +1,24 @@
+package com.agency.bank.controller;
+
+import com.agency.bank.service.BalanceLedgerService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+@RequestMapping("/ledger")
+@AllArgsConstructor
+@Controller
+public class LedgerController {
+
+    private BalanceLedgerService balanceLedgerService;
+
+    //rucno ponovno ucitavanje raspolozivih sredstava iz baze
+    @PostMapping(value = "/rebuild")
+    public ResponseEntity<HttpStatus> rebuild(){
+        balanceLedgerService.rebuild();
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+}
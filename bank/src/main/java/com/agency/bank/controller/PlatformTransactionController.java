@@ -0,0 +1,39 @@
+package com.agency.bank.controller;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.dto.PaymentResponseDTO;
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.service.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+//bank.execution-mode=platform: placanje se obradjuje i odgovara na Tomcat thread-u, bez servlet async obrade
+@ConditionalOnProperty(name = "bank.execution-mode", havingValue = "platform", matchIfMissing = true)
+@Controller
+public class PlatformTransactionController extends TransactionController {
+
+    public PlatformTransactionController(TransactionService transactionService, ObjectMapper objectMapper) {
+        super(transactionService, objectMapper);
+    }
+
+    @PostMapping
+    public ResponseEntity<PaymentResponseDTO> requestPayment(@RequestBody PaymentForBankRequestDto paymentForBankRequestDto){
+        return paymentRequested(paymentForBankRequestDto);
+    }
+
+    @PostMapping(value = "/withCard")
+    public ResponseEntity<String> pay(@RequestBody CardDto cardDto){
+        return cardPayment(cardDto);
+    }
+
+    @PostMapping(value = "/transaction")
+    public ResponseEntity<HttpStatus> transactionFromPCC(@RequestBody TransactionPCCResponseDto transactionPCCResponse){
+        return pccTransaction(transactionPCCResponse);
+    }
+}
@@ -1,87 +1,88 @@
 package com.agency.bank.controller;
 
 import com.agency.bank.dto.*;
+import com.agency.bank.enums.PccCallbackOutcome;
 import com.agency.bank.model.Transaction;
 import com.agency.bank.service.TransactionService;
-import lombok.AllArgsConstructor;
-import lombok.NoArgsConstructor;
-import lombok.NonNull;
-import org.springframework.beans.factory.annotation.Value;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+//bank.execution-mode bira podklasu sa /payment, /payment/withCard i /payment/transaction: PlatformTransactionController
+//odgovara na Tomcat thread-u, VirtualTransactionController obradu predaje virtuelnom thread-u (servlet async)
 @RequestMapping("/payment")
-@AllArgsConstructor
-@Controller
-public class TransactionController {
+public abstract class TransactionController {
 
-    private TransactionService transactionService;
-    private RestTemplate restTemplate;
-    private static String pspUrl; //mozda bude pucalo zbog noArgsCont a kada ne stavim njega ne prolazi mi ovo za citanje iz application.properties
-    private static String pccUrl;
+    private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
 
-    @Value("${bank.pspUrl}")
-    public void setPspUrl(String pspUrl){
-        this.pspUrl = pspUrl;
+    protected TransactionController(TransactionService transactionService, ObjectMapper objectMapper) {
+        this.transactionService = transactionService;
+        this.objectMapper = objectMapper;
     }
 
-    @Value("${bank.pccUrl}")
-    public void setPccUrl(String pccUrl){
-        this.pccUrl = pccUrl;
+    //kada kupac na pspu klike nacin placanja karticom i psp gadja /payment
+    protected ResponseEntity<PaymentResponseDTO> paymentRequested(PaymentForBankRequestDto paymentForBankRequestDto){
+        return new ResponseEntity<>(transactionService.requestPayment(paymentForBankRequestDto), HttpStatus.OK);
     }
 
-    //kada kupac na pspu klike nacin placanja karticom i psp gadja ovaj endpoint
-    @PostMapping
-    public ResponseEntity<PaymentResponseDTO> requestPayment(@RequestBody PaymentForBankRequestDto paymentForBankRequestDto){
-        return new ResponseEntity<>(transactionService.requestPayment(paymentForBankRequestDto), HttpStatus.OK);
+    //prodavac sa puno porudzbina (marketplace) salje sve odjednom, kao JSON niz ili NDJSON.
+    //odgovor je NDJSON, red po stavci, i salje se deo po deo kako se placanja upisuju
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> requestPayments(HttpServletRequest request){
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(out -> {
+            //MappingIterator cita stavku po stavku, i iz JSON niza i iz niza JSON objekata odvojenih novim redom
+            MappingIterator<PaymentForBankRequestDto> requests = objectMapper.readerFor(PaymentForBankRequestDto.class).readValues(request.getInputStream());
+            ObjectWriter writer = objectMapper.writerFor(PaymentBatchResultDto.class);
+            transactionService.requestPayments(requests, results -> {
+                try {
+                    for (PaymentBatchResultDto result : results) {
+                        out.write(writer.writeValueAsBytes(result));
+                        out.write('\n');
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        });
     }
 
-    //front banke nakon popunjenih podataka iz kartice
-    @PostMapping(value = "/withCard")
-    public ResponseEntity<String> pay(@RequestBody CardDto cardDto){
+    //front banke nakon popunjenih podataka iz kartice, /payment/withCard
+    protected ResponseEntity<String> cardPayment(CardDto cardDto){
+        //PSP ili PCC dobijaju poruku preko outbox-a, upisanu zajedno sa transakcijom
         Transaction transaction = transactionService.pay(cardDto);
-
-        if (!transactionService.sameBankForAcquirerAndIssuer(cardDto.getPan()))
-            sendRequestToPCC(cardDto);
-        else
-            sendRequestToPSP(transaction);
+        if (transaction == null)
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 
         //obavestiti web shop da je nesto kupljeno, npr da mu se ne prikazuje kao artikal ??
 
         return new ResponseEntity<>(transactionService.getPaymentURL(transaction, cardDto), HttpStatus.OK);
     }
 
-    private void sendRequestToPCC(CardDto cardDto) {
-        //napraviti dto sa podacima koji su potrebni pcc-u
-        //posalti zahtev pcc preko restTemplate
-      HttpStatus status =  restTemplate.postForObject("http://localhost:8085/requests", transactionService.paymentPCCRequest(cardDto), HttpStatus.class);
-    }
-
-    private void sendRequestToPSP(Transaction transaction) {
-        PSPResponseDto pspResponseDto = PSPResponseDto.builder()
-                .paymentId(transaction.getPaymentId())
-                .acquirerOrderId(transaction.getAcquirerOrderId())
-                .acquirerTimestamp(transaction.getAcquirerTimestamp())
-                .merchantOrderId(transaction.getMerchantOrderId())
-                .amount(transaction.getAmount())
-                .description(transaction.getDescription())
-                .transactionStatus(transaction.getTransactionStatus())
-                .build();
-
-        HttpStatus response = restTemplate.postForObject(pspUrl, pspResponseDto, HttpStatus.class);
-        System.out.println(response);
+    //stanje placanja, i za placanja koja su vec prebacena u arhivu
+    @GetMapping(value = "/{paymentId}")
+    public ResponseEntity<TransactionDto> findPayment(@PathVariable long paymentId){
+        TransactionDto transaction = transactionService.findPayment(paymentId);
+        return transaction == null ? new ResponseEntity<>(HttpStatus.NOT_FOUND) : new ResponseEntity<>(transaction, HttpStatus.OK);
     }
 
-    //Pcc salje transakciju sa banke 2 za placanje
-    @PostMapping(value = "/transaction")
-    public ResponseEntity<HttpStatus> transactionFromPCC(@RequestBody TransactionPCCResponseDto transactionPCCResponse){
-       Transaction transaction = transactionService.transferMoneyToBank(transactionPCCResponse);
-       sendRequestToPSP(transaction);
-       return new ResponseEntity<>(HttpStatus.OK);
+    //Pcc salje transakciju sa banke 2 za placanje, /payment/transaction
+    protected ResponseEntity<HttpStatus> pccTransaction(TransactionPCCResponseDto transactionPCCResponse){
+        //ponovljen ili zakasneo poziv je uspesan odgovor, da PCC ne bi ponavljao
+        PccCallbackOutcome outcome = transactionService.transferMoneyToBank(transactionPCCResponse);
+        return new ResponseEntity<>(outcome == PccCallbackOutcome.UNKNOWN_PAYMENT ? HttpStatus.NOT_FOUND : HttpStatus.OK);
     }
 }
@@ -0,0 +1,45 @@
+package com.agency.bank.controller;
+
+import com.agency.bank.config.PaymentExecutor;
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.dto.PaymentResponseDTO;
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.service.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.concurrent.CompletableFuture;
+
+//bank.execution-mode=virtual: Tomcat thread se vraca u pool, a placanje se obradjuje na thread-u PaymentExecutor-a
+@ConditionalOnProperty(name = "bank.execution-mode", havingValue = "virtual")
+@Controller
+public class VirtualTransactionController extends TransactionController {
+
+    private final PaymentExecutor paymentExecutor;
+
+    public VirtualTransactionController(TransactionService transactionService, ObjectMapper objectMapper, PaymentExecutor paymentExecutor) {
+        super(transactionService, objectMapper);
+        this.paymentExecutor = paymentExecutor;
+    }
+
+    @PostMapping
+    public CompletableFuture<ResponseEntity<PaymentResponseDTO>> requestPayment(@RequestBody PaymentForBankRequestDto paymentForBankRequestDto){
+        return paymentExecutor.submit(() -> paymentRequested(paymentForBankRequestDto));
+    }
+
+    @PostMapping(value = "/withCard")
+    public CompletableFuture<ResponseEntity<String>> pay(@RequestBody CardDto cardDto){
+        return paymentExecutor.submit(() -> cardPayment(cardDto));
+    }
+
+    @PostMapping(value = "/transaction")
+    public CompletableFuture<ResponseEntity<HttpStatus>> transactionFromPCC(@RequestBody TransactionPCCResponseDto transactionPCCResponse){
+        return paymentExecutor.submit(() -> pccTransaction(transactionPCCResponse));
+    }
+}
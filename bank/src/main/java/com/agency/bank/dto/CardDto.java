@@ -1,5 +1,6 @@
 package com.agency.bank.dto;
 
+import com.agency.bank.money.MoneyAmount;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -16,7 +17,8 @@ public class CardDto {
     private String cardHolderName;
     private String dateExpiration;
     private String description;
-    private String amount;
+    @MoneyAmount
+    private long amount;
     private String successUrl;
     private String failedUrl;
     private String errorUrl;
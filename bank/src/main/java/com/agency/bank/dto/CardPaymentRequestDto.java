@@ -1,5 +1,6 @@
 package com.agency.bank.dto;
 
+import com.agency.bank.money.MoneyAmount;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -10,14 +11,15 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @Builder
 public class CardPaymentRequestDto {
-    private int paymentId;
+    private long paymentId;
     private String pan;
     private String securityCode;
     private String cardHolderName;
     private String dateExpiration;
     private String description; //sta se kupuje
     private String panAcquirer; //to smo mi, web shop
-    private double amount;
-    public int acquirerOrderId; //id transakcije, tip number 10
+    @MoneyAmount
+    private long amount;
+    public long acquirerOrderId; //id transakcije, tip number 10
     public LocalDateTime acquirerTimestamp;
 }
@@ -1,6 +1,7 @@
 package com.agency.bank.dto;
 
 import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.money.MoneyAmount;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -12,10 +13,11 @@ import java.time.LocalDateTime;
 @Builder
 public class PSPResponseDto {
     private int merchantOrderId;
-    private int acquirerOrderId;
+    private long acquirerOrderId;
     private LocalDateTime acquirerTimestamp;
-    private int paymentId;
-    private double amount;
+    private long paymentId;
+    @MoneyAmount
+    private long amount;
     private String description;
     private TransactionStatus transactionStatus;
 }
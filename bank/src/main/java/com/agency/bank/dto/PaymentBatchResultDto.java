@@ -0,0 +1,16 @@
+package com.agency.bank.dto;
+
+import lombok.*;
+
+//jedan red odgovora na /payment/batch: placanje ili razlog zasto stavka nije prihvacena
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentBatchResultDto {
+    private int index; //redni broj stavke u zahtevu, od 0
+    private int merchantOrderId;
+    private PaymentResponseDTO payment;
+    private String error;
+}
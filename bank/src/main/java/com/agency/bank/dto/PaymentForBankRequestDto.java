@@ -1,5 +1,6 @@
 package com.agency.bank.dto;
 
+import com.agency.bank.money.MoneyAmount;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -14,7 +15,8 @@ import java.time.LocalDateTime;
 public class PaymentForBankRequestDto {
     private String merchantId;
     private String merchantPassword;
-    private double amount;
+    @MoneyAmount
+    private long amount;
     private String description;
     private int merchantOrderId;
     private LocalDateTime merchantTimestamp;
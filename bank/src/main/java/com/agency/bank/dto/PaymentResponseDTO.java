@@ -1,5 +1,6 @@
 package com.agency.bank.dto;
 
+import com.agency.bank.money.MoneyAmount;
 import lombok.*;
 
 @Getter
@@ -9,8 +10,9 @@ import lombok.*;
 @Builder
 public class PaymentResponseDTO {
     private String paymentURL;
-    private int paymentId;
-    private double amount;
+    private long paymentId;
+    @MoneyAmount
+    private long amount;
     private String description;
     private String successUrl;
     private String failedUrl;
@@ -1,6 +1,7 @@
 package com.agency.bank.dto;
 
 import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.money.MoneyAmount;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -13,9 +14,10 @@ import java.time.LocalDateTime;
 public class TransactionDto {
     private TransactionStatus transactionStatus;
     private int merchantOrderId;
-    private int acquirerOrderId;
+    private long acquirerOrderId;
     private LocalDateTime acquirerTimestamp;
-    private int paymentId;
-    private double amount;
+    private long paymentId;
+    @MoneyAmount
+    private long amount;
     private String description;
 }
@@ -1,6 +1,7 @@
 package com.agency.bank.dto;
 
 import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.money.MoneyAmount;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -13,12 +14,13 @@ import java.time.LocalDateTime;
 public class TransactionPCCResponseDto {
     private TransactionStatus transactionStatus;
     private int merchantOrderId;
-    private int acquirerOrderId;
+    private long acquirerOrderId;
     private LocalDateTime acquirerTimestamp;
     private int issuerOrderId;
     private LocalDateTime issuerOrderTimestamp;
-    private int paymentId;
-    private double amount;
+    private long paymentId;
+    @MoneyAmount
+    private long amount;
     private String description;
     private String payer;
     private String acquirerPan;
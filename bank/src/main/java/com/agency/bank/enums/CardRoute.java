@@ -0,0 +1,7 @@
+package com.agency.bank.enums;
+
+//LOCAL - kartica ove banke, placanje ide sa racuna kupca; PCC - kartica druge banke
+public enum CardRoute {
+    LOCAL,
+    PCC
+}
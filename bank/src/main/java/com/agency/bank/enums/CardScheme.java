@@ -0,0 +1,10 @@
+package com.agency.bank.enums;
+
+public enum CardScheme {
+    UNKNOWN,
+    VISA,
+    MASTERCARD,
+    MAESTRO,
+    AMEX,
+    DINACARD
+}
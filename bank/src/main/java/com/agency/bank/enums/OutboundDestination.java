@@ -0,0 +1,6 @@
+package com.agency.bank.enums;
+
+public enum OutboundDestination {
+    PSP,
+    PCC
+}
@@ -0,0 +1,9 @@
+package com.agency.bank.enums;
+
+public enum OutboundStatus {
+    PENDING,
+    SENDING, //relay ju je uzeo i salje, do isteka zakupa (nextAttemptAt)
+    SENT,
+    COALESCED, //zamenjena novijom porukom za isti paymentId
+    FAILED
+}
@@ -0,0 +1,8 @@
+package com.agency.bank.enums;
+
+public enum PccCallbackOutcome {
+    APPLIED,
+    DUPLICATE, //isti paymentId i issuerOrderId je vec obradjen
+    STALE, //zakasneo poziv, placanje je vec u kasnijem statusu
+    UNKNOWN_PAYMENT
+}
@@ -1,8 +1,20 @@
 package com.agency.bank.enums;
 
+//status se cuva kao ordinal, novi statusi idu na kraj
 public enum TransactionStatus {
-    SUCCESS,
-    FAILED,
-    PAYMENT_REQUESTED,
-    IN_PROGRESS
+    SUCCESS(2),
+    FAILED(2),
+    PAYMENT_REQUESTED(0),
+    IN_PROGRESS(1);
+
+    private final int stage;
+
+    TransactionStatus(int stage) {
+        this.stage = stage;
+    }
+
+    //placanje ide samo unapred: PAYMENT_REQUESTED -> IN_PROGRESS -> SUCCESS/FAILED
+    public boolean canBeFollowedBy(TransactionStatus next) {
+        return next != null && next.stage > stage;
+    }
 }
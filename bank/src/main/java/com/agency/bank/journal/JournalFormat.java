@@ -0,0 +1,93 @@
+package com.agency.bank.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+//format segmenta dnevnika:
+//  zaglavlje: MAGIC (int), VERSION (int)
+//  zapisi: duzina (int), CRC32C sadrzaja (int), pa sadrzaj: redni broj (long), vreme u ms (long), tip (byte),
+//  paymentId (long), id racuna (long), iznos (long), status (byte, -1 bez statusa)
+//fajl je unapred popunjen nulama pa duzina 0 znaci kraj, a zapis sa pogresnim CRC-om je nedovrsen upis pre pada.
+//Ime segmenta je redni broj prvog zapisa u njemu
+final class JournalFormat {
+
+    static final int MAGIC = 0x424A524E; //"BJRN"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+    static final int PAYLOAD_BYTES = 5 * Long.BYTES + 2 * Byte.BYTES;
+    static final int RECORD_BYTES = 2 * Integer.BYTES + PAYLOAD_BYTES;
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    private JournalFormat() {
+    }
+
+    static Path segment(Path directory, long firstSequence) {
+        return directory.resolve(String.format("%020d%s", firstSequence, SEGMENT_SUFFIX));
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    //sortirano po rednom broju prvog zapisa
+    static List<Path> segments(Path directory) {
+        if (!Files.isDirectory(directory))
+            return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void write(ByteBuffer buffer, long sequence, long timestamp, JournalRecord record) {
+        int start = buffer.position();
+        buffer.position(start + 2 * Integer.BYTES);
+        buffer.putLong(sequence);
+        buffer.putLong(timestamp);
+        buffer.put((byte) record.getType().ordinal());
+        buffer.putLong(record.getPaymentId());
+        buffer.putLong(record.getAccountId());
+        buffer.putLong(record.getAmount());
+        buffer.put(record.getStatus() == null ? -1 : (byte) record.getStatus().ordinal());
+        //duzina se upisuje poslednja, da citalac ne bi video zapis pre sadrzaja
+        buffer.putInt(start + Integer.BYTES, crc(buffer, start + 2 * Integer.BYTES));
+        buffer.putInt(start, PAYLOAD_BYTES);
+    }
+
+    //null na kraju upisanog dela segmenta
+    static JournalRecord read(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < RECORD_BYTES || buffer.getInt(start) != PAYLOAD_BYTES)
+            return null;
+        if (buffer.getInt(start + Integer.BYTES) != crc(buffer, start + 2 * Integer.BYTES))
+            return null;
+        buffer.position(start + 2 * Integer.BYTES);
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        JournalRecord.Type type = JournalRecord.Type.values()[buffer.get()];
+        long paymentId = buffer.getLong();
+        long accountId = buffer.getLong();
+        long amount = buffer.getLong();
+        byte status = buffer.get();
+        return new JournalRecord(sequence, timestamp, type, paymentId, accountId, amount, status);
+    }
+
+    private static int crc(ByteBuffer buffer, int payloadStart) {
+        CRC32C crc = new CRC32C();
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(payloadStart + PAYLOAD_BYTES).position(payloadStart);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
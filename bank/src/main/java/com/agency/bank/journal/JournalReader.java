@@ -0,0 +1,80 @@
+package com.agency.bank.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+//citanje dnevnika redom, od zadatog rednog broja, npr. za reviziju ili ponavljanje saobracaja na test instanci.
+//Moze da cita i dok se dnevnik pise: vidi zapise upisane do trenutka kad stigne do njih. Nedovrsen zapis na kraju
+//segmenta (pad usred upisa) zavrsava citanje tog segmenta
+public final class JournalReader implements Iterator<JournalRecord> {
+
+    private final List<Path> segments;
+    private final long fromSequence;
+    private int nextSegment;
+    private MappedByteBuffer buffer;
+    private JournalRecord next;
+
+    private JournalReader(List<Path> segments, long fromSequence) {
+        this.segments = segments;
+        this.fromSequence = fromSequence;
+    }
+
+    public static JournalReader open(Path directory) {
+        return open(directory, 0);
+    }
+
+    public static JournalReader open(Path directory, long fromSequence) {
+        List<Path> segments = JournalFormat.segments(directory);
+        int first = 0;
+        while (first + 1 < segments.size() && JournalFormat.firstSequence(segments.get(first + 1)) <= fromSequence)
+            first++;
+        return new JournalReader(segments.subList(first, segments.size()), fromSequence);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (buffer != null)
+                next = JournalFormat.read(buffer);
+            if (next != null) {
+                if (next.getSequence() < fromSequence)
+                    next = null;
+                continue;
+            }
+            if (nextSegment == segments.size())
+                return false;
+            buffer = map(segments.get(nextSegment++));
+        }
+        return true;
+    }
+
+    @Override
+    public JournalRecord next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        JournalRecord record = next;
+        next = null;
+        return record;
+    }
+
+    static MappedByteBuffer map(Path segment) {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < JournalFormat.HEADER_BYTES || buffer.getInt() != JournalFormat.MAGIC)
+                throw new IllegalStateException("Not a journal segment: " + segment);
+            int version = buffer.getInt();
+            if (version != JournalFormat.VERSION)
+                throw new IllegalStateException("Unsupported journal version " + version + " in " + segment);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.agency.bank.journal;
+
+import com.agency.bank.enums.TransactionStatus;
+import lombok.Getter;
+
+//jedan dogadjaj dnevnika placanja. redni broj i vreme dodeljuje PaymentJournal pri upisu
+@Getter
+public final class JournalRecord {
+
+    //cuva se kao ordinal, novi tipovi idu na kraj
+    public enum Type {
+        CHECKPOINT, //pocetak stanja svih racuna, posle njega slede BALANCE i RESERVED zapisi
+        BALANCE, //stanje racuna iz checkpoint-a
+        RESERVED, //rezervacija je upisana; u checkpoint-u ukupno rezervisano na racunu
+        SETTLED, //rezervacija je naplacena sa racuna kupca
+        CREDITED, //odobrenje racuna prodavca
+        STATUS, //novi status placanja
+        SHUTDOWN //uredno gasenje, stanje iz dnevnika je potpuno
+    }
+
+    private final long sequence;
+    private final long timestamp;
+    private final Type type;
+    private final long paymentId;
+    private final long accountId;
+    private final long amount;
+    private final TransactionStatus status;
+
+    JournalRecord(long sequence, long timestamp, Type type, long paymentId, long accountId, long amount, byte status) {
+        this(sequence, timestamp, type, paymentId, accountId, amount, status < 0 ? null : TransactionStatus.values()[status]);
+    }
+
+    private JournalRecord(long sequence, long timestamp, Type type, long paymentId, long accountId, long amount, TransactionStatus status) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.paymentId = paymentId;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.status = status;
+    }
+
+    private static JournalRecord of(Type type, long paymentId, long accountId, long amount, TransactionStatus status) {
+        return new JournalRecord(0, 0, type, paymentId, accountId, amount, status);
+    }
+
+    public static JournalRecord reserved(long paymentId, long accountId, long amount) {
+        return of(Type.RESERVED, paymentId, accountId, amount, null);
+    }
+
+    public static JournalRecord settled(long accountId, long amount) {
+        return of(Type.SETTLED, 0, accountId, amount, null);
+    }
+
+    public static JournalRecord credited(long accountId, long amount) {
+        return of(Type.CREDITED, 0, accountId, amount, null);
+    }
+
+    public static JournalRecord status(long paymentId, TransactionStatus status) {
+        return of(Type.STATUS, paymentId, 0, 0, status);
+    }
+
+    static JournalRecord checkpoint(int accounts) {
+        return of(Type.CHECKPOINT, 0, 0, accounts, null);
+    }
+
+    static JournalRecord balance(long accountId, long amount) {
+        return of(Type.BALANCE, 0, accountId, amount, null);
+    }
+
+    static JournalRecord shutdown() {
+        return of(Type.SHUTDOWN, 0, 0, 0, null);
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " payment=" + paymentId + " account=" + accountId + " amount=" + amount + (status == null ? "" : " " + status);
+    }
+}
@@ -0,0 +1,295 @@
+package com.agency.bank.journal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+//dnevnik placanja: dogadjaji koji su vec upisani u bazu (rezervacija, status, naplata, odobrenje) se dopisuju u
+//segmente mapirane u memoriju (mmap), a fsync jednog pozivaoca pokriva i sve sto su drugi upisali pre njega.
+//Baza ostaje izvor istine, dnevnik sluzi za reviziju, ponavljanje saobracaja (JournalReader) i brzo pokretanje:
+//uz stanje racuna iz poslednjeg checkpoint-a i dogadjaje posle njega ledger se puni bez upita nad tabelama.
+//To vazi samo posle urednog gasenja (poslednji zapis SHUTDOWN) i samo kad je ovo jedina instanca koja menja racune
+//(bank.journal.warm-start), inace ledger se puni iz baze. Checkpoint uvek pocinje nov segment; kompakcija
+//pravi checkpoint i brise segmente pre njega starije od retention
+@Slf4j
+@Component
+public class PaymentJournal {
+
+    private final boolean enabled;
+    private final boolean warmStart;
+    private final Path directory;
+    private final int segmentSize;
+    private final Duration retention;
+    private final Timer syncTimer;
+    private final Counter records;
+    private final Map<Long, long[]> accounts = new HashMap<>(); //id racuna -> {stanje, rezervisano}, samo racuni iz checkpoint-a
+    private final Object syncLock = new Object();
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private MappedByteBuffer segment;
+    private long nextSequence = 1;
+    private long forcedSequence;
+    private boolean cleanShutdown;
+    private volatile boolean broken; //upis nije uspeo, dnevnik vise nije potpun
+
+    public PaymentJournal(MeterRegistry meterRegistry,
+                          @Value("${bank.journal.enabled:false}") boolean enabled,
+                          @Value("${bank.journal.warm-start:false}") boolean warmStart,
+                          @Value("${bank.journal.directory:journal}") String directory,
+                          @Value("${bank.journal.segment-size:64MB}") DataSize segmentSize,
+                          @Value("${bank.journal.retention:30d}") Duration retention) {
+        this.enabled = enabled;
+        this.warmStart = warmStart;
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) Math.max(JournalFormat.HEADER_BYTES + JournalFormat.RECORD_BYTES, segmentSize.toBytes());
+        this.retention = retention;
+        this.syncTimer = Timer.builder("journal.sync")
+                .description("Duration of one journal fsync, shared by all appends written before it")
+                .register(meterRegistry);
+        this.records = Counter.builder("journal.records")
+                .description("Records appended to the payment journal")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled)
+            return;
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve("journal.lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        lock = lockChannel.tryLock();
+        if (lock == null)
+            throw new IllegalStateException("Payment journal " + directory.toAbsolutePath() + " is used by another process");
+        List<Path> segments = JournalFormat.segments(directory);
+        if (segments.isEmpty())
+            return;
+        JournalRecord last = null;
+        for (JournalReader reader = JournalReader.open(directory, JournalFormat.firstSequence(segments.get(segments.size() - 1))); reader.hasNext(); )
+            last = reader.next();
+        nextSequence = Math.max(JournalFormat.firstSequence(segments.get(segments.size() - 1)), last == null ? 0 : last.getSequence() + 1);
+        forcedSequence = nextSequence - 1;
+        cleanShutdown = last != null && last.getType() == JournalRecord.Type.SHUTDOWN;
+    }
+
+    //stanje racuna iz dnevnika ako je prethodno gasenje bilo uredno; false ako ledger treba puniti iz baze
+    public boolean warmStart(Consumer<Map<Long, long[]>> loader) {
+        if (!enabled || !warmStart || !cleanShutdown)
+            return false;
+        long start = System.nanoTime();
+        List<Path> segments = JournalFormat.segments(directory);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            JournalReader reader = JournalReader.open(directory, JournalFormat.firstSequence(segments.get(i)));
+            if (!reader.hasNext() || reader.next().getType() != JournalRecord.Type.CHECKPOINT)
+                continue;
+            long replayed = 0;
+            synchronized (this) {
+                accounts.clear();
+                while (reader.hasNext()) {
+                    apply(reader.next());
+                    replayed++;
+                }
+                loader.accept(copy(accounts));
+            }
+            log.info("Loaded {} accounts from the payment journal ({} records) in {} ms",
+                    accounts.size(), replayed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        }
+        return false;
+    }
+
+    //stanje svih racuna na pocetku novog segmenta; dogadjaji posle njega se primenjuju na ovo stanje
+    public void checkpoint(Map<Long, long[]> balances) {
+        if (!enabled)
+            return;
+        long last;
+        synchronized (this) {
+            try {
+                roll();
+                write(JournalRecord.checkpoint(balances.size()));
+                accounts.clear();
+                balances.forEach((accountId, balance) -> {
+                    write(JournalRecord.balance(accountId, balance[0]));
+                    if (balance[1] != 0)
+                        write(JournalRecord.reserved(0, accountId, balance[1]));
+                });
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            last = nextSequence - 1;
+        }
+        sync(last);
+    }
+
+    public void append(JournalRecord record) {
+        append(List.of(record));
+    }
+
+    //vraca se posle fsync-a; greska upisa ili fsync-a se samo belezi, upis u bazu je vec prosao
+    public void append(List<JournalRecord> batch) {
+        if (!enabled || batch.isEmpty())
+            return;
+        long last;
+        synchronized (this) {
+            try {
+                for (JournalRecord record : batch)
+                    write(record);
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            last = nextSequence - 1;
+        }
+        sync(last);
+    }
+
+    //kompakcija: nov checkpoint, pa brisanje segmenata pre njega starijih od retention
+    @Scheduled(cron = "${bank.journal.compact-cron:0 0 4 * * *}")
+    public void compact() {
+        if (!enabled)
+            return;
+        Map<Long, long[]> balances;
+        synchronized (this) {
+            balances = copy(accounts);
+        }
+        checkpoint(balances);
+        List<Path> segments = JournalFormat.segments(directory);
+        Instant cutoff = Instant.now().minus(retention);
+        int deleted = 0;
+        try {
+            //poslednji segment je upravo napravljen checkpoint
+            for (Path segment : segments.subList(0, segments.size() - 1)) {
+                if (Files.getLastModifiedTime(segment).toInstant().isBefore(cutoff)) {
+                    Files.delete(segment);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Compacted payment journal: checkpoint of {} accounts, {} segments older than {} deleted", balances.size(), deleted, retention);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled)
+            return;
+        //posle neuspelog upisa dnevnik nije potpun, pa se sledeci put ledger puni iz baze
+        if (!broken)
+            append(JournalRecord.shutdown());
+        if (lock != null) {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private void write(JournalRecord record) {
+        if (segment == null || segment.remaining() < JournalFormat.RECORD_BYTES)
+            roll();
+        JournalFormat.write(segment, nextSequence++, System.currentTimeMillis(), record);
+        apply(record);
+        records.increment();
+    }
+
+    private void apply(JournalRecord record) {
+        switch (record.getType()) {
+            case CHECKPOINT:
+                accounts.clear();
+                break;
+            case BALANCE:
+                accounts.computeIfAbsent(record.getAccountId(), id -> new long[2])[0] = record.getAmount();
+                break;
+            case RESERVED:
+                update(record.getAccountId(), 0, record.getAmount());
+                break;
+            case SETTLED:
+                update(record.getAccountId(), -record.getAmount(), -record.getAmount());
+                break;
+            case CREDITED:
+                update(record.getAccountId(), record.getAmount(), 0);
+                break;
+            default:
+                break;
+        }
+    }
+
+    //racun koji nije bio u checkpoint-u ledger ucitava iz baze kad zatreba
+    private void update(long accountId, long balance, long reserved) {
+        long[] account = accounts.get(accountId);
+        if (account != null) {
+            account[0] += balance;
+            account[1] += reserved;
+        }
+    }
+
+    private void roll() {
+        if (segment != null)
+            segment.force();
+        Path path = JournalFormat.segment(directory, nextSequence);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segment.putInt(JournalFormat.MAGIC);
+        segment.putInt(JournalFormat.VERSION);
+    }
+
+    //grupni fsync: ko ceka dok drugi radi force cesto zatekne i svoje zapise vec upisane na disk
+    private void sync(long sequence) {
+        synchronized (syncLock) {
+            if (forcedSequence >= sequence)
+                return;
+            MappedByteBuffer current;
+            long last;
+            synchronized (this) {
+                current = segment;
+                last = nextSequence - 1;
+            }
+            long start = System.nanoTime();
+            try {
+                current.force();
+            } catch (RuntimeException e) {
+                fail(e); //zapisi ostaju u segmentu, sledeci uspesan force ih upisuje
+                return;
+            }
+            syncTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            forcedSequence = last;
+        }
+    }
+
+    private void fail(RuntimeException e) {
+        broken = true;
+        log.error("Payment journal append failed, the journal is incomplete from now on", e);
+    }
+
+    private static Map<Long, long[]> copy(Map<Long, long[]> balances) {
+        Map<Long, long[]> copy = new HashMap<>(balances.size());
+        balances.forEach((accountId, balance) -> copy.put(accountId, balance.clone()));
+        return copy;
+    }
+}
@@ -0,0 +1,32 @@
+package com.agency.bank.migration;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.OptionalInt;
+
+//tip postojece kolone iz JDBC metapodataka, da bi Java migracije radile isto na Postgres-u i H2 bazi testova
+final class Columns {
+
+    private Columns() {
+    }
+
+    //java.sql.Types kolone, prazno ako kolona (ili tabela) ne postoji
+    static OptionalInt type(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet columns = metaData.getColumns(connection.getCatalog(), connection.getSchema(), table, column)) {
+            return columns.next() ? OptionalInt.of(columns.getInt("DATA_TYPE")) : OptionalInt.empty();
+        }
+    }
+
+    static boolean exists(Connection connection, String table, String column) throws SQLException {
+        return type(connection, table, column).isPresent();
+    }
+
+    static boolean isFloatingPoint(Connection connection, String table, String column) throws SQLException {
+        OptionalInt type = type(connection, table, column);
+        return type.isPresent() && (type.getAsInt() == Types.DOUBLE || type.getAsInt() == Types.FLOAT || type.getAsInt() == Types.REAL);
+    }
+}
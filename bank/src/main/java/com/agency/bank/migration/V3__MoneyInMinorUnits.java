@@ -0,0 +1,31 @@
+package com.agency.bank.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+//iznosi su long u parama (vidi Money), a prva verzija ih je cuvala kao double u dinarima. ddl-auto=update ne menja
+//tip kolone, pa bi se stari iznosi citali kao pare (100 puta manji). Prevode se samo kolone koje su jos double,
+//pa migracija ne dira bazu u kojoj su iznosi vec u parama
+public class V3__MoneyInMinorUnits extends BaseJavaMigration {
+
+    private static final List<String> TABLES = List.of("account", "reservation", "transaction", "settlement_credit");
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String table : TABLES) {
+                if (!Columns.isFloatingPoint(connection, table, "amount"))
+                    continue;
+                //prvo zaokruzivanje na cele pare pa promena tipa, isto na Postgres-u i H2
+                statement.executeUpdate("update " + table + " set amount = round(amount * 100)");
+                statement.executeUpdate("alter table " + table + " alter column amount set data type bigint");
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.agency.bank.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//optimisticko zakljucavanje racuna: rezervisano stanje i verzija. ddl-auto=update ne moze da doda NOT NULL
+//kolonu u tabelu sa redovima, a reserved mora da bude zbir otvorenih rezervacija racuna. Zbir se racuna samo
+//kad se kolona dodaje; kad vec postoji, odrzava ga PaymentWriter
+public class V4__AccountReservations extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            if (!Columns.exists(connection, "account", "reserved")) {
+                statement.executeUpdate("alter table account add column reserved bigint default 0 not null");
+                statement.executeUpdate("update account set reserved = (select coalesce(sum(r.amount), 0) from reservation r " +
+                        "join client c on c.id = r.client_id where c.account_id = account.id)");
+            }
+            statement.executeUpdate("alter table account add column if not exists version bigint default 0 not null");
+            statement.executeUpdate("alter table reservation add column if not exists version bigint default 0 not null");
+        }
+    }
+}
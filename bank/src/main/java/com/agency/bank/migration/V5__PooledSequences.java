@@ -0,0 +1,42 @@
+package com.agency.bank.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+//transaction, reservation i outbound_message imaju svoje sekvence sa korakom 50: pooled optimizer za vrednost S
+//koristi id-jeve S-49..S. Postojeci redovi su dobili id iz hibernate_sequence, pa sekvenca mora da pocne od
+//max(id) + 50. Sekvenca koju je vec napravio ddl-auto=update (od 1) se pomera ako bi dala postojeci id
+public class V5__PooledSequences extends BaseJavaMigration {
+
+    private static final int ALLOCATION_SIZE = 50;
+    private static final List<String> TABLES = List.of("transaction", "reservation", "outbound_message");
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String table : TABLES) {
+                String sequence = table + "_id_seq";
+                long start = queryLong(statement, "select coalesce(max(id), 0) from " + table) + ALLOCATION_SIZE;
+                statement.execute("create sequence if not exists " + sequence + " start with " + start + " increment by " + ALLOCATION_SIZE);
+                //blok next-49..next mora biti iznad max(id); nova sekvenca ovde samo potrosi prvi blok
+                long next = queryLong(statement, "select nextval('" + sequence + "')");
+                if (next < start)
+                    statement.execute("alter sequence " + sequence + " restart with " + start);
+            }
+        }
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.agency.bank.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//payment_id_seq za PaymentIdGenerator (nextval rezervise blok od BLOCK_SIZE id-jeva). Placanja ranijih verzija imaju
+//nasumicne paymentId-jeve (do 10 cifara), pa sekvenca pocinje iznad max(payment_id), a najranije od FIRST_ID.
+//Sekvenca koju je banka ranije sama pravila (od FIRST_ID) se pomera ako bi dala postojeci paymentId
+public class V7__PaymentIdSequence extends BaseJavaMigration {
+
+    private static final long FIRST_ID = 1_000_000_000L;
+    private static final int BLOCK_SIZE = 1000; //isto kao PaymentIdGenerator.BLOCK_SIZE
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            long start = Math.max(FIRST_ID, queryLong(statement, "select coalesce(max(payment_id), 0) from transaction") + 1);
+            statement.execute("create sequence if not exists payment_id_seq start with " + start + " increment by " + BLOCK_SIZE);
+            //blok next..next+BLOCK_SIZE-1 mora biti iznad max(payment_id); nova sekvenca ovde samo potrosi prvi blok
+            long next = queryLong(statement, "select nextval('payment_id_seq')");
+            if (next < start)
+                statement.execute("alter sequence payment_id_seq restart with " + start);
+        }
+    }
+
+    private static long queryLong(Statement statement, String sql) throws SQLException {
+        try (ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+}
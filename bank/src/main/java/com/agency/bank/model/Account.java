@@ -1,5 +1,6 @@
 package com.agency.bank.model;
 
+import com.agency.bank.cache.LookupCacheInvalidator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -8,6 +9,7 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
+@EntityListeners(LookupCacheInvalidator.class)
 @Setter
 @Getter
 @NoArgsConstructor
@@ -20,5 +22,10 @@ public class Account {
     @Column
     private String accountNumber;
     @Column
-    private double amount;
+    private long amount; //u parama, vidi Money
+    @Column
+    private long reserved; //zbir otvorenih rezervacija, u parama; raspolozivo = amount - reserved
+    @Version
+    @Column
+    private long version;
 }
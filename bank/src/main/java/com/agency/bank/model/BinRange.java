@@ -0,0 +1,29 @@
+package com.agency.bank.model;
+
+import com.agency.bank.enums.CardScheme;
+import lombok.*;
+
+import javax.persistence.*;
+
+//opseg BIN-ova banke izdavaoca: lowPrefix i highPrefix su cifre pocetka pan-a (mogu biti razlicite duzine,
+//low se dopunjuje nulama, high devetkama). Uzi opseg ima prednost nad sirim koji ga sadrzi
+@Entity
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BinRange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @Column
+    private long id;
+    @Column(nullable = false)
+    private String lowPrefix;
+    @Column(nullable = false)
+    private String highPrefix;
+    @Column(nullable = false)
+    private String issuer;
+    @Column
+    private CardScheme scheme;
+}
@@ -1,5 +1,6 @@
 package com.agency.bank.model;
 
+import com.agency.bank.cache.LookupCacheInvalidator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -8,6 +9,7 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
+@EntityListeners(LookupCacheInvalidator.class)
 @Setter
 @Getter
 @NoArgsConstructor
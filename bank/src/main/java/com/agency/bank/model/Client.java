@@ -1,5 +1,6 @@
 package com.agency.bank.model;
 
+import com.agency.bank.cache.LookupCacheInvalidator;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -9,6 +10,7 @@ import javax.persistence.*;
 import java.util.List;
 
 @Entity
+@EntityListeners(LookupCacheInvalidator.class)
 @Setter
 @Getter
 @NoArgsConstructor
@@ -26,11 +28,12 @@ public class Client {
     private String merchantId;
     @Column
     private String merchantPassword;
-    @OneToOne(fetch = FetchType.EAGER)
+    //citanja za placanje idu preko projekcija (ClientSnapshot), entitet se ucitava samo kad zatreba
+    @OneToOne(fetch = FetchType.LAZY)
     private Account account;
-    @OneToOne(fetch = FetchType.EAGER,cascade =  CascadeType.ALL)
+    @OneToOne(fetch = FetchType.LAZY,cascade =  CascadeType.ALL)
     private Card card;
-    @OneToMany(mappedBy = "client", fetch = FetchType.EAGER,cascade =  CascadeType.PERSIST)
+    @OneToMany(mappedBy = "client", fetch = FetchType.LAZY,cascade =  CascadeType.PERSIST)
     private List<Reservation> reservations;
     @OneToMany(mappedBy = "client", fetch = FetchType.LAZY,cascade =  CascadeType.PERSIST)
     private List<Transaction> transactions;
@@ -0,0 +1,42 @@
+package com.agency.bank.model;
+
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.OutboundStatus;
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+//poruka za PSP ili PCC koja ceka slanje, cuva se da bi prezivela restart
+@Entity
+@Table(indexes = {@Index(columnList = "status, nextAttemptAt"), @Index(columnList = "paymentId, id")})
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboundMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbound_message_id_seq")
+    @SequenceGenerator(name = "outbound_message_id_seq", sequenceName = "outbound_message_id_seq", allocationSize = 50)
+    @Column
+    private long id;
+    @Column
+    @Enumerated(EnumType.STRING)
+    private OutboundDestination destination;
+    @Column(unique = true)
+    private String idempotencyKey;
+    @Column
+    private long paymentId;
+    @Column(columnDefinition = "text")
+    private String payload;
+    @Column
+    @Enumerated(EnumType.STRING)
+    private OutboundStatus status;
+    @Column
+    private int attempts;
+    @Column
+    private LocalDateTime nextAttemptAt;
+    @Column
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,39 @@
+package com.agency.bank.model;
+
+import com.agency.bank.enums.TransactionStatus;
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+//obradjen povratni poziv PCC-a; primarni kljuc (paymentId, issuerOrderId) odbija ponovljen poziv
+@Entity
+@IdClass(PccCallback.Key.class)
+@Table(indexes = @Index(name = "pcc_callback_received_at_idx", columnList = "receivedAt"))
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PccCallback {
+    @Id
+    @Column
+    private long paymentId;
+    @Id
+    @Column
+    private int issuerOrderId;
+    @Column
+    private TransactionStatus transactionStatus;
+    @Column
+    private LocalDateTime receivedAt;
+
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Getter
+    public static class Key implements Serializable {
+        private long paymentId;
+        private int issuerOrderId;
+    }
+}
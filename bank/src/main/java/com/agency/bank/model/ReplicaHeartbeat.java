@@ -0,0 +1,19 @@
+package com.agency.bank.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+//jedan red koji ReplicaLagMonitor menja na primarnoj bazi, vreme u milisekundama
+@Entity
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplicaHeartbeat {
+    @Id
+    @Column
+    private long id;
+    @Column
+    private long beatAt;
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
 
 @Entity
 @Setter
@@ -13,16 +14,19 @@ import javax.persistence.*;
 @Builder
 public class Reservation {
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservation_id_seq")
+    @SequenceGenerator(name = "reservation_id_seq", sequenceName = "reservation_id_seq", allocationSize = 50)
     @Column
     private long id;
     @Column
     private String description;
     @Column
-    private double amount;
+    private long amount; //u parama, vidi Money
     @Column
     private String acquirerAccountNumber;
-    @ManyToOne(fetch = FetchType.LAZY,cascade =  CascadeType.ALL)
+    @Column
+    private LocalDateTime createdAt; //za kasnjenje kontinuiranog obracuna
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnore
     Client client;
 }
@@ -0,0 +1,25 @@
+package com.agency.bank.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+//odobrenje prodavcu iz jedne particije, sabira se na kraju obracuna
+@Entity
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SettlementCredit {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY) //upisuje se JDBC batch-om, id dodeljuje baza
+    @Column
+    private long id;
+    @Column
+    private long runId;
+    @Column
+    private String accountNumber;
+    @Column
+    private long amount; //u parama, vidi Money
+}
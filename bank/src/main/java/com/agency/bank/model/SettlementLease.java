@@ -0,0 +1,26 @@
+package com.agency.bank.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+//zakup dela obracuna (rezervacije racuna sa mod(account_id, settlement.shards) = shard). node je null dok je deo slobodan,
+//token se povecava pri svakom preuzimanju pa cvor koji je izgubio deo ne moze da ga obracunava sa starim tokenom
+@Entity
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SettlementLease {
+    @Id
+    @Column
+    private int shard;
+    @Column
+    private String node;
+    @Column
+    private LocalDateTime expiresAt;
+    @Column(nullable = false)
+    private long token;
+}
@@ -0,0 +1,21 @@
+package com.agency.bank.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+//cvor koji ucestvuje u obracunu; ziv je dok se javlja pre expiresAt
+@Entity
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SettlementNode {
+    @Id
+    @Column
+    private String nodeId;
+    @Column
+    private LocalDateTime expiresAt;
+}
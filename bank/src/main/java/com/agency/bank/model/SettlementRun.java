@@ -0,0 +1,29 @@
+package com.agency.bank.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SettlementRun {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @Column
+    private long id;
+    @Column
+    private long highWaterMark; //najveci id rezervacije koji ulazi u ovaj obracun
+    @Column
+    private long settledCount;
+    @Column
+    private LocalDateTime startedAt;
+    @Column
+    private LocalDateTime finishedAt;
+    @Column
+    private String node; //cvor koji obracunava; nezavrsen obracun cvora koji vise nije ziv zavrsava drugi cvor
+}
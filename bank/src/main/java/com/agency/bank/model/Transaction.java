@@ -8,6 +8,11 @@ import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "transaction_payment_id_idx", columnList = "paymentId"),
+        @Index(name = "transaction_merchant_order_id_idx", columnList = "merchantOrderId"),
+        @Index(name = "transaction_acquirer_order_id_idx", columnList = "acquirerOrderId")
+}, uniqueConstraints = @UniqueConstraint(name = "transaction_payment_id_client_uk", columnNames = {"paymentId", "client_id"})) //transakcija prodavca i kupca dele paymentId
 @Setter
 @Getter
 @NoArgsConstructor
@@ -15,11 +20,12 @@ import java.time.LocalDateTime;
 @Builder
 public class Transaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_id_seq")
+    @SequenceGenerator(name = "transaction_id_seq", sequenceName = "transaction_id_seq", allocationSize = 50) //jedan nextval na 50 redova, za batch insert
     @Column
     private long id;
     @Column
-    private int paymentId;
+    private long paymentId;
     @Column
     private TransactionStatus transactionStatus;
     @Column
@@ -27,7 +33,7 @@ public class Transaction {
     @Column
     private LocalDateTime merchantTimestamp;
     @Column
-    private int acquirerOrderId;
+    private long acquirerOrderId;
     @Column
     private LocalDateTime acquirerTimestamp;
     @Column
@@ -35,10 +41,10 @@ public class Transaction {
     @Column
     private LocalDateTime issuerTimestamp;
     @Column
-    private double amount;
+    private long amount; //u parama, vidi Money
     @Column
     private String description;
-    @ManyToOne(fetch = FetchType.LAZY,cascade =  CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnore
     Client client;
 }
@@ -0,0 +1,101 @@
+package com.agency.bank.money;
+
+//iznosi su long u najmanjoj jedinici valute (para), dve decimale: 1250.50 -> 125050.
+//sabiranje i oduzimanje bacaju ArithmeticException na prekoracenje umesto da tiho izgube iznos
+public final class Money {
+
+    public static final int SCALE = 2;
+    private static final long MINOR_PER_MAJOR = 100;
+    //najduzi zapis: znak, 17 cifara, tacka, 2 decimale
+    static final int MAX_FORMATTED_LENGTH = 21;
+
+    private Money() {
+    }
+
+    public static long ofMajor(long major) {
+        return Math.multiplyExact(major, MINOR_PER_MAJOR);
+    }
+
+    public static long add(long amount, long other) {
+        return Math.addExact(amount, other);
+    }
+
+    public static long subtract(long amount, long other) {
+        return Math.subtractExact(amount, other);
+    }
+
+    public static long parse(String text) {
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    //decimalni zapis u glavnoj jedinici ("1250", "1250.5", "-3.05") bez medjukoraka preko String-a ili double-a
+    public static long parse(char[] chars, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        while (i < end && chars[i] == ' ')
+            i++;
+        while (end > i && chars[end - 1] == ' ')
+            end--;
+        boolean negative = i < end && chars[i] == '-';
+        if (negative || i < end && chars[i] == '+')
+            i++;
+
+        long major = 0;
+        int digits = 0;
+        for (; i < end && chars[i] != '.'; i++, digits++)
+            major = Math.addExact(Math.multiplyExact(major, 10), digit(chars, i));
+
+        long minor = 0;
+        int decimals = 0;
+        if (i < end) {
+            for (i++; i < end; i++, decimals++) {
+                int digit = digit(chars, i);
+                if (decimals < SCALE)
+                    minor = minor * 10 + digit;
+                else if (digit != 0)
+                    throw new ArithmeticException("More than " + SCALE + " decimals in " + new String(chars, offset, length));
+            }
+        }
+        if (digits + decimals == 0)
+            throw new NumberFormatException("No digits in \"" + new String(chars, offset, length) + "\"");
+        for (; decimals < SCALE; decimals++)
+            minor *= 10;
+
+        long amount = Math.addExact(Math.multiplyExact(major, MINOR_PER_MAJOR), minor);
+        return negative ? -amount : amount;
+    }
+
+    //upisuje iznos na kraj buffer-a i vraca indeks prvog znaka
+    public static int format(long amount, char[] buffer) {
+        if (amount == Long.MIN_VALUE)
+            throw new ArithmeticException("Amount out of range");
+        boolean negative = amount < 0;
+        long value = Math.abs(amount);
+        int i = buffer.length;
+        for (int d = 0; d < SCALE; d++) {
+            buffer[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        buffer[--i] = '.';
+        do {
+            buffer[--i] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        if (negative)
+            buffer[--i] = '-';
+        return i;
+    }
+
+    public static String toString(long amount) {
+        char[] buffer = new char[MAX_FORMATTED_LENGTH];
+        int start = format(amount, buffer);
+        return new String(buffer, start, buffer.length - start);
+    }
+
+    private static int digit(char[] chars, int i) {
+        char c = chars[i];
+        if (c < '0' || c > '9')
+            throw new NumberFormatException("Unexpected '" + c + "' in amount");
+        return c - '0';
+    }
+}
@@ -0,0 +1,24 @@
+package com.agency.bank.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+//125050 -> 1250.50, pise se direktno iz buffer-a thread-a
+public class MoneyJsonSerializer extends StdSerializer<Long> {
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[Money.MAX_FORMATTED_LENGTH]);
+
+    public MoneyJsonSerializer() {
+        super(Long.class);
+    }
+
+    @Override
+    public void serialize(Long amount, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        char[] buffer = BUFFER.get();
+        int start = Money.format(amount, buffer);
+        generator.writeNumber(buffer, start, buffer.length - start);
+    }
+}
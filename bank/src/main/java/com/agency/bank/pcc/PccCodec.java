@@ -0,0 +1,195 @@
+package com.agency.bank.pcc;
+
+import com.agency.bank.dto.CardPaymentRequestDto;
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.enums.PccCallbackOutcome;
+import com.agency.bank.enums.TransactionStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+//binarni okviri veze sa PCC-om, po uzoru na ISO 8583: [duzina int][MTI short][acquirerOrderId long][polja].
+//duzina ne ukljucuje sebe. Polja su fiksnim redom: long i int big-endian, tekst kao duzina (unsigned short,
+//0xFFFF je null) pa UTF-8, vreme kao epoch milisekunde u UTC-u (Long.MIN_VALUE je null), iznos u parama.
+//acquirerOrderId povezuje zahtev, potvrdu i rezultat, pa na jednoj vezi moze biti mnogo zahteva u letu
+public final class PccCodec {
+
+    public static final short REQUEST = 0x0100; //banka -> PCC, CardPaymentRequestDto
+    public static final short REQUEST_ACK = 0x0110; //PCC -> banka, zahtev je primljen (ili odbijen)
+    public static final short ADVICE = 0x0120; //PCC -> banka, TransactionPCCResponseDto
+    public static final short ADVICE_ACK = 0x0130; //banka -> PCC, ishod obrade rezultata
+    public static final short ECHO = 0x0800; //heartbeat, acquirerOrderId je proizvoljan
+    public static final short ECHO_ACK = 0x0810;
+
+    private static final int HEADER = Integer.BYTES;
+    private static final int PREFIX = Short.BYTES + Long.BYTES;
+    private static final int NULL_TEXT = 0xFFFF;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+    private static final PccCallbackOutcome[] OUTCOMES = PccCallbackOutcome.values();
+
+    private PccCodec() {
+    }
+
+    public static ByteBuffer request(CardPaymentRequestDto request) {
+        byte[][] texts = texts(request.getPan(), request.getSecurityCode(), request.getCardHolderName(),
+                request.getDateExpiration(), request.getDescription(), request.getPanAcquirer());
+        ByteBuffer frame = frame(REQUEST, request.getAcquirerOrderId(), 3 * Long.BYTES + size(texts));
+        frame.putLong(request.getPaymentId());
+        frame.putLong(request.getAmount());
+        putTime(frame, request.getAcquirerTimestamp());
+        for (byte[] text : texts)
+            putText(frame, text);
+        return frame.flip();
+    }
+
+    public static CardPaymentRequestDto readRequest(long acquirerOrderId, ByteBuffer body) {
+        return CardPaymentRequestDto.builder()
+                .acquirerOrderId(acquirerOrderId)
+                .paymentId(body.getLong())
+                .amount(body.getLong())
+                .acquirerTimestamp(getTime(body))
+                .pan(getText(body))
+                .securityCode(getText(body))
+                .cardHolderName(getText(body))
+                .dateExpiration(getText(body))
+                .description(getText(body))
+                .panAcquirer(getText(body))
+                .build();
+    }
+
+    public static ByteBuffer requestAck(long acquirerOrderId, boolean accepted) {
+        return frame(REQUEST_ACK, acquirerOrderId, 1).put((byte) (accepted ? 0 : 1)).flip();
+    }
+
+    public static boolean readRequestAck(ByteBuffer body) {
+        return body.get() == 0;
+    }
+
+    public static ByteBuffer advice(TransactionPCCResponseDto advice) {
+        byte[][] texts = texts(advice.getDescription(), advice.getPayer(), advice.getAcquirerPan());
+        ByteBuffer frame = frame(ADVICE, advice.getAcquirerOrderId(), 1 + 2 * Integer.BYTES + 4 * Long.BYTES + size(texts));
+        frame.put((byte) (advice.getTransactionStatus() == null ? -1 : advice.getTransactionStatus().ordinal()));
+        frame.putInt(advice.getMerchantOrderId());
+        frame.putInt(advice.getIssuerOrderId());
+        frame.putLong(advice.getPaymentId());
+        frame.putLong(advice.getAmount());
+        putTime(frame, advice.getAcquirerTimestamp());
+        putTime(frame, advice.getIssuerOrderTimestamp());
+        for (byte[] text : texts)
+            putText(frame, text);
+        return frame.flip();
+    }
+
+    public static TransactionPCCResponseDto readAdvice(long acquirerOrderId, ByteBuffer body) {
+        byte status = body.get();
+        return TransactionPCCResponseDto.builder()
+                .acquirerOrderId(acquirerOrderId)
+                .transactionStatus(status < 0 ? null : STATUSES[status])
+                .merchantOrderId(body.getInt())
+                .issuerOrderId(body.getInt())
+                .paymentId(body.getLong())
+                .amount(body.getLong())
+                .acquirerTimestamp(getTime(body))
+                .issuerOrderTimestamp(getTime(body))
+                .description(getText(body))
+                .payer(getText(body))
+                .acquirerPan(getText(body))
+                .build();
+    }
+
+    public static ByteBuffer adviceAck(long acquirerOrderId, int issuerOrderId, PccCallbackOutcome outcome) {
+        return frame(ADVICE_ACK, acquirerOrderId, Integer.BYTES + 1).putInt(issuerOrderId).put((byte) outcome.ordinal()).flip();
+    }
+
+    public static PccCallbackOutcome readAdviceAck(ByteBuffer body) {
+        body.getInt();
+        return OUTCOMES[body.get()];
+    }
+
+    public static ByteBuffer echo(short mti, long id) {
+        return frame(mti, id, 0).flip();
+    }
+
+    //sledeci ceo okvir iz ulaza, ili null dok okvir ne stigne ceo. Telo deli memoriju sa ulazom,
+    //pa se cita pre nego sto se ulaz kompaktuje
+    public static Frame next(ByteBuffer in, int maxFrame) {
+        if (in.remaining() < HEADER)
+            return null;
+        int length = in.getInt(in.position());
+        if (length < PREFIX || length > maxFrame)
+            throw new IllegalArgumentException("Invalid PCC frame length " + length);
+        if (in.remaining() < HEADER + length)
+            return null;
+        in.position(in.position() + HEADER);
+        ByteBuffer body = in.slice();
+        body.limit(length);
+        in.position(in.position() + length);
+        short mti = body.getShort();
+        long acquirerOrderId = body.getLong();
+        return new Frame(mti, acquirerOrderId, body);
+    }
+
+    public static final class Frame {
+        public final short mti;
+        public final long acquirerOrderId;
+        public final ByteBuffer body;
+
+        Frame(short mti, long acquirerOrderId, ByteBuffer body) {
+            this.mti = mti;
+            this.acquirerOrderId = acquirerOrderId;
+            this.body = body;
+        }
+    }
+
+    private static ByteBuffer frame(short mti, long acquirerOrderId, int fields) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER + PREFIX + fields);
+        return frame.putInt(PREFIX + fields).putShort(mti).putLong(acquirerOrderId);
+    }
+
+    private static byte[][] texts(String... values) {
+        byte[][] texts = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            texts[i] = values[i] == null ? null : values[i].getBytes(StandardCharsets.UTF_8);
+            if (texts[i] != null && texts[i].length >= NULL_TEXT)
+                throw new IllegalArgumentException("PCC text field longer than " + (NULL_TEXT - 1) + " bytes");
+        }
+        return texts;
+    }
+
+    private static int size(byte[][] texts) {
+        int size = 0;
+        for (byte[] text : texts)
+            size += Short.BYTES + (text == null ? 0 : text.length);
+        return size;
+    }
+
+    private static void putText(ByteBuffer frame, byte[] text) {
+        if (text == null) {
+            frame.putShort((short) NULL_TEXT);
+            return;
+        }
+        frame.putShort((short) text.length).put(text);
+    }
+
+    private static String getText(ByteBuffer body) {
+        int length = Short.toUnsignedInt(body.getShort());
+        if (length == NULL_TEXT)
+            return null;
+        byte[] text = new byte[length];
+        body.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    private static void putTime(ByteBuffer frame, LocalDateTime time) {
+        frame.putLong(time == null ? NULL_TIME : time.toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+
+    private static LocalDateTime getTime(ByteBuffer body) {
+        long millis = body.getLong();
+        return millis == NULL_TIME ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,265 @@
+package com.agency.bank.pcc;
+
+import com.agency.bank.dto.CardPaymentRequestDto;
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.enums.PccCallbackOutcome;
+import com.agency.bank.pcc.PccCodec.Frame;
+import com.agency.bank.service.TransactionService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//bank.pcc.transport=binary: jedna trajna TCP veza sa PCC-om umesto HTTP POST-a po zahtevu (okviri su u PccCodec).
+//thread pcc-link drzi vezu: salje sve okvire koji su se nakupili jednim upisom (pipelining), cita potvrde i
+//rezultate i salje heartbeat kad veza miruje. Potvrda zavrsava future zahteva po acquirerOrderId-u, pa ih je mnogo
+//u letu istovremeno. Rezultat placanja ide u TransactionService.transferMoneyToBank kao i poziv na /payment/transaction,
+//a PCC dobija ishod u ADVICE_ACK. Veza koja pukne ili cuti 3 heartbeat intervala se otvara ponovo, a zahtevi
+//bez potvrde padaju i outbox ih salje ponovo
+@Slf4j
+@Component
+public class PccLink {
+
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final ObjectProvider<TransactionService> transactionService; //servis salje preko veze pa se uzima tek pri upotrebi
+    private final boolean enabled;
+    private final InetSocketAddress address;
+    private final Duration heartbeatInterval;
+    private final Duration requestTimeout;
+    private final int maxFrame;
+    private final ExecutorService adviceWorkers;
+    private final Map<Long, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Selector selector;
+    private Thread linkThread;
+
+    public PccLink(ObjectProvider<TransactionService> transactionService,
+                   MeterRegistry meterRegistry,
+                   @Value("${bank.pcc.transport:http}") String transport,
+                   @Value("${bank.pcc.address:localhost:8086}") String address,
+                   @Value("${bank.pcc.heartbeat-interval:5s}") Duration heartbeatInterval,
+                   @Value("${bank.pcc.request-timeout:5s}") Duration requestTimeout,
+                   @Value("${bank.pcc.max-frame:65536}") int maxFrame,
+                   @Value("${bank.pcc.advice-concurrency:8}") int adviceConcurrency) {
+        this.transactionService = transactionService;
+        this.enabled = "binary".equals(transport);
+        int separator = address.lastIndexOf(':');
+        this.address = InetSocketAddress.createUnresolved(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1)));
+        this.heartbeatInterval = heartbeatInterval;
+        this.requestTimeout = requestTimeout;
+        this.maxFrame = maxFrame;
+        AtomicInteger counter = new AtomicInteger();
+        this.adviceWorkers = Executors.newFixedThreadPool(adviceConcurrency, r -> {
+            Thread thread = new Thread(r, "pcc-advice-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("pcc.link.in-flight", inFlight, Map::size)
+                .description("PCC requests sent over the binary link and not yet acknowledged")
+                .register(meterRegistry);
+        Gauge.builder("pcc.link.connected", this, link -> link.connected ? 1 : 0)
+                .description("1 while the binary PCC link is connected")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+        running = true;
+        linkThread = new Thread(this::run, "pcc-link");
+        linkThread.setDaemon(true);
+        linkThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (linkThread != null) {
+            Selector current = selector;
+            if (current != null)
+                current.wakeup();
+            linkThread.join(heartbeatInterval.toMillis() * 2);
+        }
+        adviceWorkers.shutdown();
+    }
+
+    //ne ceka potvrdu: future zavrsava thread pcc-link kad stigne potvrda ili odbijanje, pucanje veze ili istek
+    //request-timeout, pa je u letu onoliko zahteva koliko ih pozivaoci poslu, a ne koliko ima thread-ova koji cekaju
+    public CompletableFuture<Void> send(CardPaymentRequestDto request) {
+        if (!connected)
+            return CompletableFuture.failedFuture(new PccLinkException("PCC link to " + address + " is not connected"));
+        long acquirerOrderId = request.getAcquirerOrderId();
+        CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(acquirerOrderId, acknowledged) != null)
+            return CompletableFuture.failedFuture(new PccLinkException("PCC request " + acquirerOrderId + " is already in flight"));
+        acknowledged.orTimeout(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        write(PccCodec.request(request));
+        return acknowledged.handle((ignored, e) -> {
+            inFlight.remove(acquirerOrderId, acknowledged);
+            if (e == null)
+                return null;
+            if (e instanceof PccLinkException)
+                throw (PccLinkException) e;
+            if (e instanceof TimeoutException)
+                throw new PccLinkException("PCC did not acknowledge request " + acquirerOrderId + " within " + requestTimeout.toMillis() + " ms");
+            throw new PccLinkException("PCC request " + acquirerOrderId + " failed", e);
+        });
+    }
+
+    private void write(ByteBuffer frame) {
+        outbound.add(frame);
+        Selector current = selector;
+        if (current != null)
+            current.wakeup();
+    }
+
+    private void run() {
+        while (running) {
+            try (Selector opened = Selector.open(); SocketChannel channel = SocketChannel.open()) {
+                channel.socket().connect(new InetSocketAddress(address.getHostString(), address.getPort()), (int) heartbeatInterval.toMillis());
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.configureBlocking(false);
+                selector = opened;
+                connected = true;
+                log.info("PCC link connected to {}", address);
+                serve(channel, channel.register(opened, SelectionKey.OP_READ));
+            } catch (IOException | IllegalArgumentException e) {
+                if (running)
+                    log.warn("PCC link to {} failed: {}", address, e.getMessage());
+            } finally {
+                connected = false;
+                selector = null;
+                outbound.clear();
+                PccLinkException closed = new PccLinkException("PCC link to " + address + " closed");
+                inFlight.values().forEach(acknowledged -> acknowledged.completeExceptionally(closed));
+            }
+            if (running)
+                sleep(heartbeatInterval.toMillis());
+        }
+    }
+
+    private void serve(SocketChannel channel, SelectionKey key) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(Math.max(READ_BUFFER, maxFrame + Integer.BYTES));
+        Queue<ByteBuffer> pending = new ArrayDeque<>();
+        long interval = heartbeatInterval.toNanos();
+        long lastRead = System.nanoTime();
+        long lastWrite = lastRead;
+        while (running) {
+            //ready set kljuca vazi samo ako ga je ovaj select osvezio
+            boolean ready = key.selector().select(Math.max(1, heartbeatInterval.toMillis() / 2)) > 0;
+            long now = System.nanoTime();
+
+            if (ready && key.isReadable()) {
+                int read = channel.read(in);
+                if (read < 0)
+                    throw new EOFException("closed by PCC");
+                in.flip();
+                Frame frame;
+                while ((frame = PccCodec.next(in, maxFrame)) != null)
+                    dispatch(frame);
+                in.compact();
+                if (read > 0)
+                    lastRead = now;
+            }
+
+            if (now - lastWrite > interval)
+                outbound.add(PccCodec.echo(PccCodec.ECHO, now));
+            if (now - lastRead > 3 * interval)
+                throw new IOException("no frame from PCC for " + TimeUnit.NANOSECONDS.toMillis(now - lastRead) + " ms");
+
+            //svi okviri koji su se nakupili idu jednim upisom, ostatak ceka da kanal ponovo bude spreman
+            ByteBuffer frame;
+            while ((frame = outbound.poll()) != null)
+                pending.add(frame);
+            if (!pending.isEmpty()) {
+                channel.write(pending.toArray(new ByteBuffer[0]));
+                while (!pending.isEmpty() && !pending.peek().hasRemaining())
+                    pending.poll();
+                lastWrite = now;
+            }
+            key.interestOps(pending.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            key.selector().selectedKeys().clear();
+        }
+    }
+
+    private void dispatch(Frame frame) {
+        switch (frame.mti) {
+            case PccCodec.REQUEST_ACK:
+                CompletableFuture<Void> acknowledged = inFlight.get(frame.acquirerOrderId);
+                if (acknowledged == null)
+                    return; //potvrda posle isteka roka, outbox vec ponavlja zahtev
+                if (PccCodec.readRequestAck(frame.body))
+                    acknowledged.complete(null);
+                else
+                    acknowledged.completeExceptionally(new PccLinkException("PCC rejected request " + frame.acquirerOrderId));
+                return;
+            case PccCodec.ADVICE:
+                TransactionPCCResponseDto advice = PccCodec.readAdvice(frame.acquirerOrderId, frame.body);
+                adviceWorkers.execute(() -> handle(advice));
+                return;
+            case PccCodec.ECHO:
+                write(PccCodec.echo(PccCodec.ECHO_ACK, frame.acquirerOrderId));
+                return;
+            case PccCodec.ECHO_ACK:
+                return;
+            default:
+                log.warn("Ignoring PCC frame with MTI {}", Integer.toHexString(frame.mti));
+        }
+    }
+
+    //bez ADVICE_ACK (greska u obradi) PCC salje rezultat ponovo, kao kad /payment/transaction ne odgovori 200
+    private void handle(TransactionPCCResponseDto advice) {
+        try {
+            PccCallbackOutcome outcome = transactionService.getObject().transferMoneyToBank(advice);
+            write(PccCodec.adviceAck(advice.getAcquirerOrderId(), advice.getIssuerOrderId(), outcome));
+        } catch (RuntimeException e) {
+            log.error("PCC advice for payment {} failed", advice.getPaymentId(), e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.agency.bank.pcc;
+
+//zahtev nije potvrdjen preko binarne veze (nema veze, istekao rok, PCC odbio); outbox ga salje ponovo
+public class PccLinkException extends RuntimeException {
+
+    public PccLinkException(String message) {
+        super(message);
+    }
+
+    public PccLinkException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -2,8 +2,22 @@ package com.agency.bank.repository;
 
 import com.agency.bank.model.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface AccountRepository extends JpaRepository<Account,Long> {
+    @Query("select a.id, a.amount from Account a")
+    List<Object[]> findAllBalances();
+    //id, stanje, rezervisano i verzija, za rezervacije u PaymentWriter-u
+    @Query("select a.id, a.amount, a.reserved, a.version from Account a where a.id in ?1")
+    List<Object[]> findReservationState(Collection<Long> ids);
+    //0 ako je racun u medjuvremenu promenjen (optimisticko zakljucavanje preko version)
+    @Modifying
+    @Query("update Account a set a.reserved = ?2, a.version = a.version + 1 where a.id = ?1 and a.version = ?3")
+    int updateReserved(long id, long reserved, long version);
 }
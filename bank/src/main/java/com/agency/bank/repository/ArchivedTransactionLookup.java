@@ -0,0 +1,9 @@
+package com.agency.bank.repository;
+
+import com.agency.bank.model.Transaction;
+
+//deo TransactionRepository-ja koji cita i arhivu (vidi TransactionArchive)
+public interface ArchivedTransactionLookup {
+    //iz tabele, a ako je placanje arhivirano iz segmenta; arhivirana transakcija nije vezana za sesiju
+    Transaction findFirstByPaymentIdIncludingArchive(long paymentId);
+}
@@ -0,0 +1,24 @@
+package com.agency.bank.repository;
+
+import com.agency.bank.archive.TransactionArchive;
+import com.agency.bank.model.Transaction;
+import lombok.AllArgsConstructor;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+@AllArgsConstructor
+class ArchivedTransactionLookupImpl implements ArchivedTransactionLookup {
+
+    private final EntityManager entityManager;
+    private final TransactionArchive transactionArchive;
+
+    @Override
+    public Transaction findFirstByPaymentIdIncludingArchive(long paymentId) {
+        List<Transaction> hot = entityManager.createQuery("select t from Transaction t where t.paymentId = :paymentId order by t.id", Transaction.class)
+                .setParameter("paymentId", paymentId)
+                .setMaxResults(1)
+                .getResultList();
+        return hot.isEmpty() ? transactionArchive.findFirst(paymentId) : hot.get(0);
+    }
+}
@@ -0,0 +1,9 @@
+package com.agency.bank.repository;
+
+import com.agency.bank.model.BinRange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BinRangeRepository extends JpaRepository<BinRange, Long> {
+}
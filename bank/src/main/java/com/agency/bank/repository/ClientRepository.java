@@ -1,16 +1,29 @@
 package com.agency.bank.repository;
 
+import com.agency.bank.cache.ClientSnapshot;
+import com.agency.bank.cache.MerchantCredential;
 import com.agency.bank.model.Client;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
+
 @Repository
 public interface ClientRepository extends JpaRepository<Client,Long> {
-    @Query("select c from Client c left join fetch c.card card where card.pan = ?1")
-    Client findClientByPan(String pan);
-    @Query("select c from Client c where c.merchantId = ?1 and c.merchantPassword = ?2")
-    Client findByMerchantIdAndMerchantPassword(String merchantId, String merchantPassword);
+    @Query("select new com.agency.bank.cache.ClientSnapshot(c.id, a.id, a.accountNumber) from Client c join c.card card join c.account a where card.pan = ?1")
+    ClientSnapshot findSnapshotByPan(String pan);
+    @Query("select new com.agency.bank.cache.MerchantCredential(c.id, c.merchantPassword) from Client c where c.merchantId = ?1")
+    MerchantCredential findCredentialByMerchantId(String merchantId);
+    @Query("select new com.agency.bank.cache.MerchantCredential(c.id, c.merchantPassword) from Client c where c.merchantPassword is not null and c.merchantPassword not like 'pbkdf2-sha256$%'")
+    List<MerchantCredential> findPlaintextCredentials();
+    //0 ako je lozinka u medjuvremenu promenjena
+    @Modifying
+    @Query("update Client c set c.merchantPassword = ?3 where c.id = ?1 and c.merchantPassword = ?2")
+    int replaceMerchantPassword(long id, String currentHash, String newHash);
+    @Modifying
+    @Query("update Client c set c.merchantPassword = ?2 where c.merchantId = ?1")
+    int updateMerchantPassword(String merchantId, String passwordHash);
 }
@@ -0,0 +1,23 @@
+package com.agency.bank.repository;
+
+import com.agency.bank.model.OutboundMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboundMessageRepository extends JpaRepository<OutboundMessage,Long> {
+    boolean existsByIdempotencyKey(String idempotencyKey);
+    //vise relay-a (i vise instanci) moze da radi paralelno, svaki dobija svoje redove. Poruka u slanju (SENDING)
+    //ima next_attempt_at do kad traje zakup, posle toga je relay koji ju je uzeo ocigledno pao
+    @Query(value = "select * from outbound_message where status in ('PENDING', 'SENDING') and next_attempt_at <= ?1 order by id limit ?2 for update skip locked", nativeQuery = true)
+    List<OutboundMessage> lockDue(LocalDateTime now, int limit);
+    //starije neposlate poruke PSP-u za isto placanje; red koji drzi drugi relay se preskace, pa se broj poredi sa countOlderUnsent
+    @Query(value = "select * from outbound_message where destination = 'PSP' and payment_id = ?1 and id < ?2 and status in ('PENDING', 'SENDING') order by id for update skip locked", nativeQuery = true)
+    List<OutboundMessage> lockOlderUnsent(long paymentId, long id);
+    @Query(value = "select count(*) from outbound_message where destination = 'PSP' and payment_id = ?1 and id < ?2 and status in ('PENDING', 'SENDING')", nativeQuery = true)
+    long countOlderUnsent(long paymentId, long id);
+}
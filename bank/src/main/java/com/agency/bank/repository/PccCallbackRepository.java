@@ -0,0 +1,20 @@
+package com.agency.bank.repository;
+
+import com.agency.bank.model.PccCallback;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface PccCallbackRepository extends JpaRepository<PccCallback, PccCallback.Key> {
+    //0 ako je isti poziv vec upisan, i kad ga paralelno upisuje druga instanca
+    @Modifying
+    @Query(value = "insert into pcc_callback (payment_id, issuer_order_id, transaction_status, received_at) values (?1, ?2, ?3, ?4) on conflict do nothing", nativeQuery = true)
+    int insertIfAbsent(long paymentId, int issuerOrderId, int transactionStatus, LocalDateTime receivedAt);
+    @Modifying
+    @Query("delete from PccCallback c where c.receivedAt < ?1")
+    int deleteReceivedBefore(LocalDateTime receivedAt);
+}
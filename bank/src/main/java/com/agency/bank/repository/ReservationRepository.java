@@ -11,4 +11,10 @@ import java.util.List;
 public interface ReservationRepository extends JpaRepository<Reservation,Long> {
     @Query("select r from Reservation r left join fetch r.client c where r.client.id = c.id")
     List<Reservation> getAllWithClients();
+    @Query("select r.client.account.id, sum(r.amount) from Reservation r group by r.client.account.id")
+    List<Object[]> sumAmountsByAccount();
+    @Query("select coalesce(sum(r.amount), 0) from Reservation r where r.client.account.id = ?1")
+    long sumAmountByAccount(long accountId);
+    @Query("select coalesce(max(r.id), 0) from Reservation r")
+    long findMaxId();
 }
@@ -2,10 +2,10 @@ package com.agency.bank.repository;
 
 import com.agency.bank.model.Transaction;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction,Long> {
-    Transaction findByPaymentId(int paymentId);
+public interface TransactionRepository extends JpaRepository<Transaction,Long>, ArchivedTransactionLookup {
+    //prva upisana transakcija za placanje je transakcija prodavca, kupcu se pravi kasnije sa istim paymentId
+    Transaction findFirstByPaymentIdOrderById(long paymentId);
 }
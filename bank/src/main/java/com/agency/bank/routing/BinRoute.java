@@ -0,0 +1,19 @@
+package com.agency.bank.routing;
+
+import com.agency.bank.enums.CardRoute;
+import com.agency.bank.enums.CardScheme;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+//rezultat pretrage BIN tabele; isti objekat se vraca za svaki pan iz opsega
+@Getter
+@AllArgsConstructor
+public final class BinRoute {
+
+    //pan bez poznatog BIN-a ide preko PCC-a, kao i pre uvodjenja tabele
+    public static final BinRoute UNKNOWN = new BinRoute(null, CardRoute.PCC, CardScheme.UNKNOWN);
+
+    private final String issuer;
+    private final CardRoute route;
+    private final CardScheme scheme;
+}
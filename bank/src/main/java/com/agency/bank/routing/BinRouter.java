@@ -0,0 +1,134 @@
+package com.agency.bank.routing;
+
+import com.agency.bank.enums.CardRoute;
+import com.agency.bank.enums.CardScheme;
+import com.agency.bank.model.BinRange;
+import com.agency.bank.repository.BinRangeRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+//banka izdavalac, ruta i sema kartice po BIN-u. Opsezi se citaju iz tabele bin_range ili iz bank.bin.file
+//(csv: low,high,issuer,scheme) i ponovo ucitavaju po bank.bin.reload-cron. Nova tabela se gradi sa strane
+//i zamenjuje staru upisom u volatile polje, pa pretraga ne ceka ni na zakljucavanje ni na ucitavanje.
+//BIN racuna prodavca (prvih 6 cifara bank.panAcquirer) je uvek LOCAL, osim ako ga tabela ne deli na uze opsege
+@Slf4j
+@Component
+public class BinRouter {
+
+    private static final int BIN_DIGITS = 6;
+
+    private final BinRangeRepository binRangeRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final String issuer;
+    private final String acquirerBin;
+    private final Path file;
+    private volatile BinTable table;
+    private long fileModified = -1;
+
+    public BinRouter(BinRangeRepository binRangeRepository,
+                     PlatformTransactionManager transactionManager,
+                     MeterRegistry meterRegistry,
+                     @Value("${bank.bin.issuer:BANK}") String issuer,
+                     @Value("${bank.panAcquirer}") String panAcquirer,
+                     @Value("${bank.bin.file:}") String file) {
+        this.binRangeRepository = binRangeRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.issuer = issuer;
+        this.acquirerBin = bin(panAcquirer);
+        this.file = file.isEmpty() ? null : Paths.get(file);
+        this.table = ownBin().build();
+        Gauge.builder("bin.ranges", this, router -> router.table.ranges())
+                .description("BIN ranges in the routing table")
+                .register(meterRegistry);
+    }
+
+    public BinRoute resolve(String pan) {
+        return table.resolve(pan, BinRoute.UNKNOWN);
+    }
+
+    public CardRoute route(String pan) {
+        return resolve(pan).getRoute();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    //neispravan red ili nedostupna tabela ostavljaju prethodnu tabelu
+    @Scheduled(cron = "${bank.bin.reload-cron:0 */5 * * * *}")
+    public synchronized void reload() {
+        try {
+            BinTable loaded = file == null ? fromRepository() : fromFile();
+            if (loaded == null)
+                return;
+            table = loaded;
+            log.info("Loaded {} BIN ranges ({} trie nodes)", loaded.ranges(), loaded.nodes());
+        } catch (RuntimeException e) {
+            log.error("Cannot load BIN ranges, keeping the previous {} ranges", table.ranges(), e);
+        }
+    }
+
+    private BinTable fromRepository() {
+        List<BinRange> ranges = readOnlyTransaction.execute(status -> binRangeRepository.findAll());
+        BinTable.Builder builder = ownBin();
+        for (BinRange range : ranges)
+            builder.add(range.getLowPrefix(), range.getHighPrefix(), route(range.getIssuer(), range.getScheme()));
+        return builder.build();
+    }
+
+    //null ako se fajl nije menjao od poslednjeg ucitavanja
+    private BinTable fromFile() {
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == fileModified)
+                return null;
+            BinTable.Builder builder = ownBin();
+            for (String line : Files.readAllLines(file)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] columns = line.split(",");
+                if (columns.length != 4)
+                    throw new IllegalArgumentException("Invalid BIN range " + line);
+                builder.add(columns[0].trim(), columns[1].trim(), route(columns[2].trim(), CardScheme.valueOf(columns[3].trim())));
+            }
+            fileModified = modified;
+            return builder.build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BinTable.Builder ownBin() {
+        return BinTable.builder().add(acquirerBin, acquirerBin, new BinRoute(issuer, CardRoute.LOCAL, CardScheme.UNKNOWN));
+    }
+
+    private BinRoute route(String rangeIssuer, CardScheme scheme) {
+        return new BinRoute(rangeIssuer, issuer.equals(rangeIssuer) ? CardRoute.LOCAL : CardRoute.PCC, scheme == null ? CardScheme.UNKNOWN : scheme);
+    }
+
+    private static String bin(String pan) {
+        StringBuilder bin = new StringBuilder(BIN_DIGITS);
+        for (int i = 0; i < pan.length() && bin.length() < BIN_DIGITS; i++)
+            if (pan.charAt(i) >= '0' && pan.charAt(i) <= '9')
+                bin.append(pan.charAt(i));
+        return bin.toString();
+    }
+}
@@ -0,0 +1,136 @@
+package com.agency.bank.routing;
+
+import java.util.Arrays;
+
+//digit trie nad normalizovanim pan-om (razmaci i crtice se preskacu), svaki cvor ima 10 dece.
+//opseg [low, high] se pri gradjenju razlaze na najmanji skup prefiksa koji ga tacno pokriva, pa pretraga ide
+//cifru po cifru (najvise MAX_DIGITS koraka), bez alokacija, i vraca rutu najduzeg pokrivenog prefiksa.
+//tabela se posle gradjenja ne menja i moze se citati iz vise thread-ova
+public final class BinTable {
+
+    public static final int MAX_DIGITS = 11;
+    private static final long[] POWERS = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i <= MAX_DIGITS; i++)
+            POWERS[i] = POWERS[i - 1] * 10;
+    }
+
+    private final int[] children; //cvor * 10 + cifra -> dete, 0 - nema deteta (0 je koren)
+    private final BinRoute[] routes; //ruta opsega koji pokriva ceo cvor, null - vazi ruta roditelja
+    private final int ranges;
+
+    private BinTable(int[] children, BinRoute[] routes, int ranges) {
+        this.children = children;
+        this.routes = routes;
+        this.ranges = ranges;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    //ruta najduzeg prefiksa pan-a iz tabele ili unknown
+    public BinRoute resolve(String pan, BinRoute unknown) {
+        BinRoute found = routes[0] == null ? unknown : routes[0];
+        int node = 0;
+        int depth = 0;
+        for (int i = 0, length = pan.length(); i < length && depth < MAX_DIGITS; i++) {
+            char c = pan.charAt(i);
+            if (c == ' ' || c == '-')
+                continue;
+            if (c < '0' || c > '9')
+                break;
+            node = children[node * 10 + (c - '0')];
+            if (node == 0)
+                break;
+            depth++;
+            if (routes[node] != null)
+                found = routes[node];
+        }
+        return found;
+    }
+
+    public int ranges() {
+        return ranges;
+    }
+
+    public int nodes() {
+        return routes.length;
+    }
+
+    //uzi opseg ima prednost bez obzira na redosled dodavanja, a za isti prefiks vazi kasnije dodat opseg
+    public static final class Builder {
+
+        private int[] children = new int[10 * 1024];
+        private BinRoute[] routes = new BinRoute[1024];
+        private int nodes = 1;
+        private int ranges;
+
+        private Builder() {
+        }
+
+        public Builder add(String lowPrefix, String highPrefix, BinRoute route) {
+            long low = bound(lowPrefix, 0);
+            long high = bound(highPrefix, 9);
+            if (low > high)
+                throw new IllegalArgumentException("Empty BIN range " + lowPrefix + " - " + highPrefix);
+            cover(0, 0, 0, low, high, route);
+            ranges++;
+            return this;
+        }
+
+        public BinTable build() {
+            return new BinTable(Arrays.copyOf(children, nodes * 10), Arrays.copyOf(routes, nodes), ranges);
+        }
+
+        //cvor na dubini depth sa prefiksom prefix pokriva brojeve [prefix * 10^(MAX - depth), (prefix + 1) * 10^(MAX - depth) - 1]
+        private void cover(int node, int depth, long prefix, long low, long high, BinRoute route) {
+            long span = POWERS[MAX_DIGITS - depth];
+            long first = prefix * span;
+            if (low <= first && first + span - 1 <= high) {
+                routes[node] = route;
+                return;
+            }
+            long childSpan = span / 10;
+            for (int digit = 0; digit < 10; digit++) {
+                long childFirst = first + digit * childSpan;
+                if (childFirst + childSpan - 1 >= low && childFirst <= high)
+                    cover(child(node, digit), depth + 1, prefix * 10 + digit, low, high, route);
+            }
+        }
+
+        private int child(int node, int digit) {
+            int index = node * 10 + digit;
+            if (children[index] == 0) {
+                if (nodes == routes.length) {
+                    routes = Arrays.copyOf(routes, nodes * 2);
+                    children = Arrays.copyOf(children, nodes * 20);
+                }
+                children[index] = nodes++;
+            }
+            return children[index];
+        }
+
+        //cifre prefiksa dopunjene do MAX_DIGITS cifrom pad
+        private static long bound(String prefix, int pad) {
+            long value = 0;
+            int digits = 0;
+            for (int i = 0; i < prefix.length(); i++) {
+                char c = prefix.charAt(i);
+                if (c == ' ' || c == '-')
+                    continue;
+                if (c < '0' || c > '9' || digits == MAX_DIGITS)
+                    throw new IllegalArgumentException("Invalid BIN prefix " + prefix);
+                value = value * 10 + (c - '0');
+                digits++;
+            }
+            if (digits == 0)
+                throw new IllegalArgumentException("Invalid BIN prefix " + prefix);
+            for (; digits < MAX_DIGITS; digits++)
+                value = value * 10 + pad;
+            return value;
+        }
+    }
+}
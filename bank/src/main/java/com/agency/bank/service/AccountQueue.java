@@ -0,0 +1,47 @@
+package com.agency.bank.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+//bank.account-concurrency.mode=optimistic: placanja istog racuna idu paralelno, a PaymentWriter rezervaciju
+//upisuje uz proveru verzije racuna i ponavlja je ako je racun u medjuvremenu promenjen. Radi i sa vise instanci.
+//bank.account-concurrency.mode=queue: placanja istog racuna cekaju u redu (fer lock po racunu) i jedno po jedno
+//prolaze proveru sredstava i upis, bez konflikata i ponavljanja. Red postoji samo u ovoj instanci
+@Component
+public class AccountQueue {
+
+    private final boolean enabled;
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    private static final class Lane {
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private int waiting; //menja se samo u compute nad mapom
+    }
+
+    public AccountQueue(@Value("${bank.account-concurrency.mode:optimistic}") String mode) {
+        this.enabled = "queue".equals(mode);
+    }
+
+    public <T> T run(long accountId, Supplier<T> task) {
+        if (!enabled)
+            return task.get();
+        Lane lane = lanes.compute(accountId, (id, current) -> {
+            Lane next = current == null ? new Lane() : current;
+            next.waiting++;
+            return next;
+        });
+        lane.lock.lock();
+        try {
+            return task.get();
+        } finally {
+            lane.lock.unlock();
+            //red racuna bez placanja se uklanja
+            lanes.computeIfPresent(accountId, (id, current) -> --current.waiting == 0 ? null : current);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.agency.bank.service;
+
+import com.agency.bank.journal.PaymentJournal;
+import com.agency.bank.money.Money;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.ReservationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+//raspoloziva sredstva po racunu: available = balance - reserved, bez ucitavanja rezervacija pri svakom placanju
+@RequiredArgsConstructor
+@Service
+public class BalanceLedgerService {
+
+    private static final int STRIPES = 64;
+
+    private final AccountRepository accountRepository;
+    private final ReservationRepository reservationRepository;
+    private final PaymentJournal paymentJournal;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = createLocks();
+    //izmene baze za kojima sledi izmena ledger-a drze read lock, rebuild ceka da se sve zavrse
+    private final ReentrantReadWriteLock changes = new ReentrantReadWriteLock();
+
+    private static ReentrantLock[] createLocks() {
+        ReentrantLock[] locks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++)
+            locks[i] = new ReentrantLock();
+        return locks;
+    }
+
+    private static final class Entry {
+        private long balance;
+        private long reserved;
+
+        private Entry(long balance, long reserved) {
+            this.balance = balance;
+            this.reserved = reserved;
+        }
+    }
+
+    //iz dnevnika placanja ako je to moguce, inace iz baze. Placanja koja su stigla pre ovoga su vec ucitala svoje
+    //racune (entry) sa rezervacijama koje jos nisu upisane, pa se ti racuni ne zamenjuju
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!paymentJournal.warmStart(this::load))
+            load(loadFromDatabase());
+        paymentJournal.checkpoint(balances());
+    }
+
+    //ponovo racuna stanje iz tabela account i reservation. Ceka da se zavrse placanja i obracuni koji su promenili
+    //ledger, a bazu jos nisu (ili obrnuto), pa se ni jedna rezervacija ni zaduzenje ne izgube niti primene dvaput
+    public void rebuild() {
+        changes.writeLock().lock();
+        try {
+            Map<Long, long[]> balances = loadFromDatabase();
+            lockAll();
+            try {
+                entries.clear();
+                balances.forEach((accountId, balance) -> entries.put(accountId, new Entry(balance[0], balance[1])));
+            } finally {
+                unlockAll();
+            }
+            paymentJournal.checkpoint(balances());
+        } finally {
+            changes.writeLock().unlock();
+        }
+    }
+
+    //izmena baze i ledger-a (rezervacija pa upis, ili upis pa zaduzenje) kao jedna celina za rebuild. Poziva se
+    //pre otvaranja transakcije: nit koja drzi red u bazi ne sme da ceka na rebuild
+    public <T> T change(Supplier<T> change) {
+        changes.readLock().lock();
+        try {
+            return change.get();
+        } finally {
+            changes.readLock().unlock();
+        }
+    }
+
+    public void change(Runnable change) {
+        change(() -> {
+            change.run();
+            return null;
+        });
+    }
+
+    //stanje iz tabela account i reservation, van lock-ova
+    private Map<Long, long[]> loadFromDatabase() {
+        Map<Long, Long> reserved = new HashMap<>();
+        for (Object[] row : reservationRepository.sumAmountsByAccount())
+            reserved.put((Long) row[0], ((Number) row[1]).longValue());
+
+        Map<Long, long[]> balances = new HashMap<>();
+        for (Object[] row : accountRepository.findAllBalances()) {
+            Long accountId = (Long) row[0];
+            balances.put(accountId, new long[]{(Long) row[1], reserved.getOrDefault(accountId, 0L)});
+        }
+        return balances;
+    }
+
+    //id racuna -> {stanje, rezervisano}
+    public Map<Long, long[]> balances() {
+        lockAll();
+        try {
+            Map<Long, long[]> balances = new HashMap<>(entries.size());
+            entries.forEach((accountId, entry) -> balances.put(accountId, new long[]{entry.balance, entry.reserved}));
+            return balances;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private void load(Map<Long, long[]> balances) {
+        lockAll();
+        try {
+            balances.forEach((accountId, balance) -> entries.putIfAbsent(accountId, new Entry(balance[0], balance[1])));
+        } finally {
+            unlockAll();
+        }
+    }
+
+    //provera i rezervacija u jednom koraku, pod lock-om racuna
+    public boolean tryReserve(long accountId, long amount) {
+        ReentrantLock lock = lockFor(accountId);
+        lock.lock();
+        try {
+            Entry entry = entry(accountId);
+            if (entry.balance - entry.reserved - amount < 0)
+                return false;
+            entry.reserved = Money.add(entry.reserved, amount);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //rezervacija nije sacuvana, vracamo sredstva
+    public void release(long accountId, long amount) {
+        ReentrantLock lock = lockFor(accountId);
+        lock.lock();
+        try {
+            entry(accountId).reserved -= amount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //rezervacija je naplacena, raspolozivo stanje kupca se ne menja. Poziva se posle commit-a obracuna: racun koji
+    //jos nije ucitan ce se ucitati iz baze vec zaduzen i bez te rezervacije
+    public void settleDebit(long accountId, long amount) {
+        ReentrantLock lock = lockFor(accountId);
+        lock.lock();
+        try {
+            Entry entry = entries.get(accountId);
+            if (entry == null)
+                return;
+            entry.balance -= amount;
+            entry.reserved -= amount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //poziva se posle commit-a odobrenja: racun koji jos nije ucitan ce se ucitati iz baze sa vec upisanim odobrenjem
+    public void credit(long accountId, long amount) {
+        ReentrantLock lock = lockFor(accountId);
+        lock.lock();
+        try {
+            Entry entry = entries.get(accountId);
+            if (entry != null)
+                entry.balance = Money.add(entry.balance, amount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long available(long accountId) {
+        ReentrantLock lock = lockFor(accountId);
+        lock.lock();
+        try {
+            Entry entry = entry(accountId);
+            return entry.balance - entry.reserved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //poziva se samo pod lock-om racuna; racun koji nije ucitan pri pokretanju se ucitava iz baze
+    private Entry entry(long accountId) {
+        Entry entry = entries.get(accountId);
+        if (entry == null) {
+            long balance = accountRepository.findById(accountId)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown account " + accountId))
+                    .getAmount();
+            entry = new Entry(balance, reservationRepository.sumAmountByAccount(accountId));
+            entries.put(accountId, entry);
+        }
+        return entry;
+    }
+
+    private void lockAll() {
+        for (ReentrantLock lock : locks)
+            lock.lock();
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--)
+            locks[i].unlock();
+    }
+
+    private ReentrantLock lockFor(long accountId) {
+        return locks[(Long.hashCode(accountId) & 0x7fffffff) % STRIPES];
+    }
+}
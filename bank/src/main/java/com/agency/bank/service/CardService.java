@@ -1,7 +1,7 @@
 package com.agency.bank.service;
 
-import com.agency.bank.model.Card;
-import com.agency.bank.repository.CardRepository;
+import com.agency.bank.cache.CardSnapshot;
+import com.agency.bank.cache.PaymentLookupCache;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -9,9 +9,9 @@ import org.springframework.stereotype.Service;
 @Service
 public class CardService {
 
-    private final CardRepository cardRepository;
+    private final PaymentLookupCache paymentLookupCache;
 
-    public Card findByPan(String pan) {
-        return cardRepository.findByPan(pan);
+    public CardSnapshot findByPan(String pan) {
+        return paymentLookupCache.findCard(pan);
     }
 }
@@ -1,5 +1,7 @@
 package com.agency.bank.service;
 
+import com.agency.bank.cache.ClientSnapshot;
+import com.agency.bank.cache.PaymentLookupCache;
 import com.agency.bank.model.Client;
 import com.agency.bank.repository.ClientRepository;
 import lombok.AllArgsConstructor;
@@ -11,13 +13,28 @@ import org.springframework.stereotype.Service;
 public class ClientService {
 
     private final ClientRepository clientRepository;
+    private final PaymentLookupCache paymentLookupCache;
+    private final MerchantCredentialService merchantCredentialService;
 
-    public Client findByPan(String pan) {
-        Client c = clientRepository.findClientByPan(pan);
-        return c;
+    public ClientSnapshot findByPan(String pan) {
+        return paymentLookupCache.findClient(pan);
     }
 
-    public Client findByMerchantIdAndMerchantPassword(String merchantId, String merchantPassword) {
-        return clientRepository.findByMerchantIdAndMerchantPassword(merchantId, merchantPassword);
+    public ClientSnapshot getAcquirer() {
+        return paymentLookupCache.getAcquirer();
+    }
+
+    //referenca za vezu rezervacije i transakcije sa klijentom, bez ucitavanja klijenta
+    public Client getReference(long id) {
+        return clientRepository.getReferenceById(id);
+    }
+
+    //samo id prodavca, za vezu sa transakcijom preko getReference
+    public Long findMerchantId(String merchantId, String merchantPassword) {
+        return merchantCredentialService.verify(merchantId, merchantPassword);
+    }
+
+    public boolean rotateMerchantPassword(String merchantId, String newPassword) {
+        return merchantCredentialService.rotate(merchantId, newPassword);
     }
 }
@@ -0,0 +1,9 @@
+package com.agency.bank.service;
+
+//racun u bazi nema dovoljno raspolozivih sredstava za rezervaciju iz PaymentWrite
+public class InsufficientFundsException extends RuntimeException {
+
+    public InsufficientFundsException(long accountId) {
+        super("Insufficient funds on account " + accountId);
+    }
+}
@@ -0,0 +1,177 @@
+package com.agency.bank.service;
+
+import com.agency.bank.cache.MerchantCredential;
+import com.agency.bank.cache.MerchantCredentialCache;
+import com.agency.bank.repository.ClientRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+//lozinka prodavca se u bazi cuva samo kao PBKDF2 hash sa salt-om: pbkdf2-sha256$iteracije$salt$hash.
+//posle uspesne provere kes po merchantId pamti HMAC lozinke (kljuc postoji samo u memoriji ove instance), pa ista
+//lozinka sledeci put ne ide ni u bazu ni kroz PBKDF2. Sva poredjenja su u konstantnom vremenu.
+//lozinke u cistom tekstu i hash-evi sa manje iteracija od podesenih se prepisuju pri uspesnoj proveri
+@Slf4j
+@Service
+public class MerchantCredentialService {
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String KDF = "PBKDF2WithHmacSHA256";
+    private static final String HMAC = "HmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    private final ClientRepository clientRepository;
+    private final MerchantCredentialCache merchantCredentialCache;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+    private final int iterations;
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec verifiedKey;
+    private final String unknownMerchantHash; //da nepostojeci prodavac traje koliko i pogresna lozinka
+
+    public MerchantCredentialService(ClientRepository clientRepository,
+                                     MerchantCredentialCache merchantCredentialCache,
+                                     TransactionTemplate transactionTemplate,
+                                     @Qualifier("applicationTaskExecutor") AsyncTaskExecutor applicationTaskExecutor,
+                                     @Value("${bank.merchant-credentials.iterations:310000}") int iterations) {
+        this.clientRepository = clientRepository;
+        this.merchantCredentialCache = merchantCredentialCache;
+        this.transactionTemplate = transactionTemplate;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.iterations = iterations;
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        this.verifiedKey = new SecretKeySpec(key, HMAC);
+        this.unknownMerchantHash = hash("unknown merchant");
+    }
+
+    //id prodavca ili null ako prodavac ne postoji ili lozinka nije ispravna
+    public Long verify(String merchantId, String password) {
+        if (merchantId == null || password == null)
+            return null;
+        MerchantCredential credential = merchantCredentialCache.get(merchantId, clientRepository::findCredentialByMerchantId);
+        if (credential == null || credential.getPasswordHash() == null) {
+            matches(password, unknownMerchantHash);
+            return null;
+        }
+        byte[] mac = mac(password);
+        if (credential.getVerified() != null && MessageDigest.isEqual(mac, credential.getVerified()))
+            return credential.getClientId();
+        if (!matches(password, credential.getPasswordHash()))
+            return null;
+
+        String passwordHash = credential.getPasswordHash();
+        if (needsRehash(passwordHash)) {
+            String rehashed = hash(password);
+            Integer updated = transactionTemplate.execute(status ->
+                    clientRepository.replaceMerchantPassword(credential.getClientId(), credential.getPasswordHash(), rehashed));
+            if (updated == null || updated == 0) {
+                //lozinka je u medjuvremenu promenjena, kes se puni ponovo iz baze
+                merchantCredentialCache.invalidate(merchantId);
+                return credential.getClientId();
+            }
+            passwordHash = rehashed;
+            log.info("Rehashed merchant credential of {}", merchantId);
+        }
+        merchantCredentialCache.replace(merchantId, credential, new MerchantCredential(credential.getClientId(), passwordHash, mac));
+        return credential.getClientId();
+    }
+
+    //nova lozinka vazi odmah na ovoj instanci, na ostalim najkasnije posle bank.merchant-credentials.ttl
+    public boolean rotate(String merchantId, String newPassword) {
+        String passwordHash = hash(newPassword);
+        Integer updated = transactionTemplate.execute(status -> clientRepository.updateMerchantPassword(merchantId, passwordHash));
+        merchantCredentialCache.invalidate(merchantId);
+        return updated != null && updated > 0;
+    }
+
+    //PBKDF2 svake lozinke traje stotine milisekundi, pa se ne radi na thread-u koji objavljuje ApplicationReadyEvent.
+    //prodavac koji se prijavi pre toga dobija hash u verify
+    @EventListener(ApplicationReadyEvent.class)
+    public void hashPlaintextPasswordsInBackground() {
+        applicationTaskExecutor.execute(() -> {
+            try {
+                hashPlaintextPasswords();
+            } catch (RuntimeException e) {
+                log.error("Hashing plaintext merchant passwords failed", e);
+            }
+        });
+    }
+
+    //lozinke upisane u cistom tekstu pre uvodjenja hash-a
+    public void hashPlaintextPasswords() {
+        int hashed = 0;
+        for (MerchantCredential credential : clientRepository.findPlaintextCredentials()) {
+            String passwordHash = hash(credential.getPasswordHash());
+            Integer updated = transactionTemplate.execute(status ->
+                    clientRepository.replaceMerchantPassword(credential.getClientId(), credential.getPasswordHash(), passwordHash));
+            if (updated != null)
+                hashed += updated;
+        }
+        if (hashed > 0) {
+            merchantCredentialCache.invalidateAll();
+            log.info("Hashed {} plaintext merchant passwords", hashed);
+        }
+    }
+
+    private String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$" + base64.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    private boolean matches(String password, String passwordHash) {
+        if (!passwordHash.startsWith(PREFIX))
+            return MessageDigest.isEqual(mac(password), mac(passwordHash));
+        String[] parts = passwordHash.split("\\$");
+        if (parts.length != 4)
+            return false;
+        Base64.Decoder base64 = Base64.getDecoder();
+        return MessageDigest.isEqual(pbkdf2(password, base64.decode(parts[2]), Integer.parseInt(parts[1])), base64.decode(parts[3]));
+    }
+
+    private boolean needsRehash(String passwordHash) {
+        if (!passwordHash.startsWith(PREFIX))
+            return true;
+        int start = PREFIX.length();
+        return Integer.parseInt(passwordHash.substring(start, passwordHash.indexOf('$', start))) < iterations;
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(KDF).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot hash merchant password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private byte[] mac(String value) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(verifiedKey);
+            return mac.doFinal(value.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot compute HMAC", e);
+        }
+    }
+}
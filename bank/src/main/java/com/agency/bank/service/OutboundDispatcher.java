@@ -0,0 +1,194 @@
+package com.agency.bank.service;
+
+import com.agency.bank.dto.CardPaymentRequestDto;
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.OutboundStatus;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.OutboundMessage;
+import com.agency.bank.pcc.PccLink;
+import com.agency.bank.pcc.PccLinkException;
+import com.agency.bank.repository.OutboundMessageRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+//poruke za PSP i PCC se upisuju u outbound_message u istoj transakciji kao i promena statusa,
+//a salje ih OutboxRelay; ovde je upis, jedan pokusaj slanja i racunanje cekanja do sledeceg.
+//uz bank.pcc.transport=binary poruke za PCC idu preko PccLink-a umesto HTTP-a
+@Slf4j
+@Service
+public class OutboundDispatcher {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final OutboundMessageRepository outboundMessageRepository;
+    private final RestTemplate restTemplate;
+    private final PccLink pccLink;
+    private final ObjectMapper objectMapper;
+    private final String pspUrl;
+    private final String pccUrl;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Map<OutboundDestination, Timer> succeeded = new EnumMap<>(OutboundDestination.class);
+    private final Map<OutboundDestination, Timer> failed = new EnumMap<>(OutboundDestination.class);
+
+    public OutboundDispatcher(OutboundMessageRepository outboundMessageRepository,
+                              RestTemplate restTemplate,
+                              PccLink pccLink,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${bank.pspUrl}") String pspUrl,
+                              @Value("${bank.pccUrl}") String pccUrl,
+                              @Value("${bank.outbound.max-attempts:10}") int maxAttempts,
+                              @Value("${bank.outbound.initial-backoff:1s}") Duration initialBackoff,
+                              @Value("${bank.outbound.max-backoff:5m}") Duration maxBackoff) {
+        this.outboundMessageRepository = outboundMessageRepository;
+        this.restTemplate = restTemplate;
+        this.pccLink = pccLink;
+        this.objectMapper = objectMapper;
+        this.pspUrl = pspUrl;
+        this.pccUrl = pccUrl;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        for (OutboundDestination destination : OutboundDestination.values()) {
+            succeeded.put(destination, requestTimer(meterRegistry, destination, "success"));
+            failed.put(destination, requestTimer(meterRegistry, destination, "error"));
+        }
+    }
+
+    private static Timer requestTimer(MeterRegistry meterRegistry, OutboundDestination destination, String outcome) {
+        return Timer.builder("outbound.requests")
+                .tag("destination", destination.name())
+                .tag("outcome", outcome)
+                .description("Calls to PSP and PCC, over HTTP or the binary PCC link")
+                .register(meterRegistry);
+    }
+
+    public static String pspKey(long paymentId, TransactionStatus status) {
+        return "psp-" + paymentId + "-" + status;
+    }
+
+    public static String pccKey(long paymentId) {
+        return "pcc-" + paymentId;
+    }
+
+    public boolean isEnqueued(String idempotencyKey) {
+        return outboundMessageRepository.existsByIdempotencyKey(idempotencyKey);
+    }
+
+    //ucestvuje u transakciji pozivaoca, poruka postoji samo ako je promena statusa upisana
+    public void enqueue(OutboundDestination destination, String idempotencyKey, long paymentId, Object payload) {
+        if (isEnqueued(idempotencyKey))
+            return;
+        outboundMessageRepository.save(message(destination, idempotencyKey, paymentId, payload));
+    }
+
+    //poruka za upis preko PaymentWriter-a; dupli kljuc tamo obara samo upis tog placanja (unique constraint)
+    public OutboundMessage message(OutboundDestination destination, String idempotencyKey, long paymentId, Object payload) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            return OutboundMessage.builder()
+                    .destination(destination)
+                    .idempotencyKey(idempotencyKey)
+                    .paymentId(paymentId)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .status(OutboundStatus.PENDING)
+                    .nextAttemptAt(now)
+                    .createdAt(now)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize payload for " + idempotencyKey, e);
+        }
+    }
+
+    //menja samo stanje poruke, upis radi relay u svojoj transakciji
+    public void attempt(OutboundMessage message) {
+        try {
+            attemptAsync(message).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    //HTTP poziv se zavrsava na thread-u pozivaoca; zahtev preko PCC veze se samo upise u vezu, a stanje poruke
+    //menja potvrda PCC-a na thread-u veze, pa thread pozivaoca ne ceka potvrdu
+    public CompletableFuture<Void> attemptAsync(OutboundMessage message) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> sent;
+        try {
+            sent = send(message);
+        } catch (RestClientException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        return sent.handle((ignored, e) -> {
+            Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+            if (cause == null) {
+                succeeded.get(message.getDestination()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                message.setStatus(OutboundStatus.SENT);
+            } else if (cause instanceof RestClientException || cause instanceof PccLinkException) {
+                failed.get(message.getDestination()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                retryOrGiveUp(message, cause);
+            } else {
+                throw new CompletionException(cause);
+            }
+            return null;
+        });
+    }
+
+    //i za greske koje relay dobije van attemptAsync
+    void retryOrGiveUp(OutboundMessage message, Throwable e) {
+        message.setAttempts(message.getAttempts() + 1);
+        if (message.getAttempts() >= maxAttempts) {
+            message.setStatus(OutboundStatus.FAILED);
+            log.error("Giving up on {} after {} attempts", message.getIdempotencyKey(), message.getAttempts(), e);
+        } else {
+            message.setStatus(OutboundStatus.PENDING);
+            message.setNextAttemptAt(LocalDateTime.now().plus(backoff(message.getAttempts())));
+            log.warn("Sending {} failed (attempt {}): {}", message.getIdempotencyKey(), message.getAttempts(), e.getMessage());
+        }
+    }
+
+    Duration backoff(int attempts) {
+        long millis = initialBackoff.toMillis() << Math.min(attempts - 1, 30);
+        return millis <= 0 || millis > maxBackoff.toMillis() ? maxBackoff : Duration.ofMillis(millis);
+    }
+
+    private CompletableFuture<Void> send(OutboundMessage message) {
+        if (message.getDestination() == OutboundDestination.PCC && pccLink.isEnabled())
+            return pccLink.send(read(message));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set(IDEMPOTENCY_KEY_HEADER, message.getIdempotencyKey());
+        String url = message.getDestination() == OutboundDestination.PSP ? pspUrl : pccUrl;
+        restTemplate.postForEntity(url, new HttpEntity<>(message.getPayload(), headers), String.class);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    //outbox cuva poruku kao JSON i kad se salje binarno, pa se posle restarta moze poslati bilo kojim putem
+    private CardPaymentRequestDto read(OutboundMessage message) {
+        try {
+            return objectMapper.readValue(message.getPayload(), CardPaymentRequestDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot read PCC payload of " + message.getIdempotencyKey(), e);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.agency.bank.service;
+
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.OutboundStatus;
+import com.agency.bank.model.OutboundMessage;
+import com.agency.bank.repository.OutboundMessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+//prazni outbound_message u paketima: redovi se zakljucavaju sa SKIP LOCKED, vise statusa za isti
+//paymentId se spaja u jednu poruku ka PSP-u (i statusi iz ranijih paketa koji cekaju ponovni pokusaj), a slanje ide paralelno sa ogranicenim brojem thread-ova (zahtevi
+//preko binarne PCC veze ne drze thread dok cekaju potvrdu, pa je u letu ceo paket).
+//Paket se uzima u jednoj kratkoj transakciji (status SENDING i zakup do now + lease), salje bez transakcije i
+//zakljucanih redova, a ishod se upisuje u drugoj kratkoj transakciji. Poruku relay-a koji je pao pre upisa
+//ishoda drugi relay ponovo salje kad istekne zakup, sa istim idempotency kljucem
+@Slf4j
+@Service
+public class OutboxRelay {
+
+    private final OutboundMessageRepository outboundMessageRepository;
+    private final OutboundDispatcher outboundDispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService senders;
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration lease;
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter sent;
+    private final Counter coalesced;
+    private final Counter failed;
+    private final Timer batchTimer;
+    private volatile boolean running;
+    private Thread relayThread;
+
+    public OutboxRelay(OutboundMessageRepository outboundMessageRepository,
+                       OutboundDispatcher outboundDispatcher,
+                       TransactionTemplate transactionTemplate,
+                       MeterRegistry meterRegistry,
+                       @Value("${bank.outbox.enabled:true}") boolean enabled,
+                       @Value("${bank.outbox.batch-size:100}") int batchSize,
+                       @Value("${bank.outbox.concurrency:16}") int concurrency,
+                       @Value("${bank.outbox.poll-interval:200ms}") Duration pollInterval,
+                       @Value("${bank.outbox.lease:2m}") Duration lease) {
+        this.outboundMessageRepository = outboundMessageRepository;
+        this.outboundDispatcher = outboundDispatcher;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.lease = lease;
+        AtomicInteger counter = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "outbox-sender-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sent = meterRegistry.counter("outbox.relay.messages", "result", "sent");
+        this.coalesced = meterRegistry.counter("outbox.relay.messages", "result", "coalesced");
+        this.failed = meterRegistry.counter("outbox.relay.messages", "result", "failed");
+        this.batchTimer = meterRegistry.timer("outbox.relay.batch");
+        Gauge.builder("outbox.relay.lag", lagMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .description("Age of the oldest message in the last drained batch")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+        running = true;
+        relayThread = new Thread(this::relay, "outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (relayThread != null) {
+            relayThread.interrupt();
+            relayThread.join(pollInterval.toMillis() * 10);
+        }
+        senders.shutdown();
+    }
+
+    private void relay() {
+        while (running) {
+            try {
+                if (drain() < batchSize)
+                    Thread.sleep(pollInterval.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Outbox relay batch failed", e);
+                try {
+                    Thread.sleep(pollInterval.toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public int drain() {
+        LocalDateTime now = LocalDateTime.now();
+        //baza cuva mikrosekunde, zakup se posle poredi sa procitanom vrednoscu
+        LocalDateTime leaseUntil = now.plus(lease).truncatedTo(ChronoUnit.MILLIS);
+        List<OutboundMessage> batch = transactionTemplate.execute(status -> claim(now, leaseUntil));
+        if (batch == null || batch.isEmpty()) {
+            lagMillis.set(0);
+            return 0;
+        }
+        lagMillis.set(Duration.between(batch.get(0).getCreatedAt(), now).toMillis());
+        List<OutboundMessage> claimed = batch.stream()
+                .filter(message -> message.getStatus() == OutboundStatus.SENDING)
+                .collect(Collectors.toList());
+        batchTimer.record(() -> send(claimed));
+        transactionTemplate.executeWithoutResult(status -> complete(claimed, leaseUntil));
+        return batch.size();
+    }
+
+    private List<OutboundMessage> claim(LocalDateTime now, LocalDateTime leaseUntil) {
+        List<OutboundMessage> batch = outboundMessageRepository.lockDue(now, batchSize);
+        for (OutboundMessage message : coalesce(batch, now)) {
+            message.setStatus(OutboundStatus.SENDING);
+            message.setNextAttemptAt(leaseUntil);
+        }
+        return batch;
+    }
+
+    //ishod se upisuje samo dok je zakup ovog relay-a na snazi: poruku ciji je zakup istekao vec salje drugi relay
+    private void complete(List<OutboundMessage> messages, LocalDateTime leaseUntil) {
+        Map<Long, OutboundMessage> attempted = new HashMap<>();
+        for (OutboundMessage message : messages) {
+            if (message.getStatus() != OutboundStatus.SENDING)
+                attempted.put(message.getId(), message);
+        }
+        if (attempted.isEmpty())
+            return;
+        for (OutboundMessage row : outboundMessageRepository.findAllById(attempted.keySet())) {
+            if (row.getStatus() != OutboundStatus.SENDING || !leaseUntil.equals(row.getNextAttemptAt()))
+                continue;
+            OutboundMessage message = attempted.get(row.getId());
+            row.setStatus(message.getStatus());
+            row.setAttempts(message.getAttempts());
+            row.setNextAttemptAt(message.getNextAttemptAt());
+            if (message.getStatus() == OutboundStatus.SENT)
+                sent.increment();
+            else if (message.getStatus() == OutboundStatus.FAILED)
+                failed.increment();
+        }
+    }
+
+    //za PSP je bitan samo poslednji status placanja, i salje se tek kad nijedan stariji status istog placanja nije
+    //u slanju: stariji statusi (iz paketa ili u backoff-u posle neuspelog slanja) se spajaju u poslednji. Ako stariji
+    //drzi drugi relay (red zakljucan ili SENDING sa vazecim zakupom), poslednji ceka sledeci prolaz, pa PSP ne vidi
+    //da se status placanja vraca unazad
+    private List<OutboundMessage> coalesce(List<OutboundMessage> batch, LocalDateTime now) {
+        Map<Long, OutboundMessage> latestForPsp = new LinkedHashMap<>();
+        List<OutboundMessage> toSend = new ArrayList<>(batch.size());
+        for (OutboundMessage message : batch) {
+            if (message.getDestination() == OutboundDestination.PSP)
+                latestForPsp.put(message.getPaymentId(), message); //paket je po id-u, ostaje najnovija
+            else
+                toSend.add(message);
+        }
+        for (OutboundMessage latest : latestForPsp.values()) {
+            List<OutboundMessage> older = outboundMessageRepository.lockOlderUnsent(latest.getPaymentId(), latest.getId());
+            boolean olderInFlight = older.size() < outboundMessageRepository.countOlderUnsent(latest.getPaymentId(), latest.getId())
+                    || older.stream().anyMatch(message -> message.getStatus() == OutboundStatus.SENDING && message.getNextAttemptAt().isAfter(now));
+            if (olderInFlight)
+                continue;
+            for (OutboundMessage message : older) {
+                message.setStatus(OutboundStatus.COALESCED);
+                coalesced.increment();
+            }
+            toSend.add(latest);
+        }
+        return toSend;
+    }
+
+    //neocekivana greska (ne greska PSP-a ili PCC-a) se racuna kao neuspeo pokusaj, da poruka koja je uvek izaziva
+    //posle max-attempts pokusaja postane FAILED umesto da se salje zauvek
+    private void send(List<OutboundMessage> messages) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            OutboundMessage message = messages.get(i);
+            futures[i] = CompletableFuture.supplyAsync(() -> outboundDispatcher.attemptAsync(message), senders)
+                    .thenCompose(attempt -> attempt)
+                    .exceptionally(e -> {
+                        log.error("Sending {} failed", message.getIdempotencyKey(), e);
+                        outboundDispatcher.retryOrGiveUp(message, e instanceof CompletionException ? e.getCause() : e);
+                        return null;
+                    });
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,56 @@
+package com.agency.bank.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+//id-jevi placanja iz sekvence payment_id_seq: svaki nextval rezervise blok od BLOCK_SIZE brojeva za ovu
+//instancu, pa se id-jevi ne ponavljaju ni izmedju vise instanci, a baza se pita jednom po bloku.
+//Sekvencu pravi migracija V7__PaymentIdSequence iznad postojecih paymentId-jeva. BLOCK_SIZE mora da ostane jednak
+//increment-u sekvence, zato nije podesiv
+@Service
+public class PaymentIdGenerator {
+
+    static final int BLOCK_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long limit;
+
+    public PaymentIdGenerator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long nextId() {
+        lock.lock();
+        try {
+            if (next == limit) {
+                next = jdbcTemplate.queryForObject("select nextval('payment_id_seq')", Long.class);
+                limit = next + BLOCK_SIZE;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //count id-jeva odjednom, pod jednim zakljucavanjem: ostatak tekuceg bloka pa novi blokovi koliko treba
+    public long[] nextIds(int count) {
+        long[] ids = new long[count];
+        lock.lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                if (next == limit) {
+                    next = jdbcTemplate.queryForObject("select nextval('payment_id_seq')", Long.class);
+                    limit = next + BLOCK_SIZE;
+                }
+                ids[i] = next++;
+            }
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.agency.bank.service;
+
+import com.agency.bank.enums.PccCallbackOutcome;
+import com.agency.bank.enums.TransactionStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+//trajanje faza placanja (payment.phase), ishodi placanja po statusu (payment.outcome)
+//i povratni pozivi PCC-a po ishodu (pcc.callback)
+@Service
+public class PaymentMetrics {
+
+    public enum Phase {
+        CARD_VALIDATION("card_validation"),
+        CLIENT_LOOKUP("client_lookup"),
+        FUNDS_CHECK("funds_check"),
+        COMMIT("commit");
+
+        private final String tag;
+
+        Phase(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    private final Map<Phase, Timer> phases = new EnumMap<>(Phase.class);
+    private final Map<TransactionStatus, Counter> outcomes = new EnumMap<>(TransactionStatus.class);
+    private final Map<PccCallbackOutcome, Counter> callbacks = new EnumMap<>(PccCallbackOutcome.class);
+
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        for (Phase phase : Phase.values())
+            phases.put(phase, Timer.builder("payment.phase")
+                    .tag("phase", phase.tag)
+                    .description("Duration of a step of /payment/withCard")
+                    .register(meterRegistry));
+        for (TransactionStatus status : TransactionStatus.values())
+            outcomes.put(status, Counter.builder("payment.outcome")
+                    .tag("status", status.name())
+                    .description("Payments by resulting transaction status")
+                    .register(meterRegistry));
+        for (PccCallbackOutcome outcome : PccCallbackOutcome.values())
+            callbacks.put(outcome, Counter.builder("pcc.callback")
+                    .tag("outcome", outcome.name())
+                    .description("PCC callbacks on /payment/transaction by outcome")
+                    .register(meterRegistry));
+    }
+
+    public <T> T time(Phase phase, Supplier<T> step) {
+        return phases.get(phase).record(step);
+    }
+
+    public void time(Phase phase, Runnable step) {
+        phases.get(phase).record(step);
+    }
+
+    //broji se tek kada je status upisan
+    public void outcome(TransactionStatus status) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            outcomes.get(status).increment();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outcomes.get(status).increment();
+            }
+        });
+    }
+
+    public PccCallbackOutcome callback(PccCallbackOutcome outcome) {
+        callbacks.get(outcome).increment();
+        return outcome;
+    }
+}
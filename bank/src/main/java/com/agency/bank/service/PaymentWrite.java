@@ -0,0 +1,68 @@
+package com.agency.bank.service;
+
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.journal.JournalRecord;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.money.Money;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+//sve sto jedno placanje upisuje u bazu. Novi redovi se prave pri svakom pokusaju upisa
+//(entitet iz neuspele transakcije vec ima dodeljen id), zato su Supplier-i
+public class PaymentWrite {
+
+    final List<Supplier<?>> inserts = new ArrayList<>(4);
+    final Map<Long, TransactionStatus> statusUpdates = new HashMap<>(2);
+    final Map<Long, Long> reservations = new HashMap<>(1); //po id-u racuna
+    final Map<Long, TransactionStatus> paymentStatuses = new LinkedHashMap<>(2); //po paymentId, za dnevnik placanja
+    private final List<Runnable> onFailure = new ArrayList<>(1);
+    final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+    public PaymentWrite insert(Supplier<?> entity) {
+        inserts.add(entity);
+        return this;
+    }
+
+    public PaymentWrite updateStatus(Transaction transaction) {
+        statusUpdates.put(transaction.getId(), transaction.getTransactionStatus());
+        paymentStatuses.put(transaction.getPaymentId(), transaction.getTransactionStatus());
+        return this;
+    }
+
+    //upis prolazi samo ako racun u bazi ima dovoljno raspolozivih sredstava, inace InsufficientFundsException
+    public PaymentWrite reserve(long accountId, long amount) {
+        reservations.merge(accountId, amount, Money::add);
+        return this;
+    }
+
+    //npr. vracanje rezervacije u ledger-u ako upis nije prosao
+    public PaymentWrite onFailure(Runnable action) {
+        onFailure.add(action);
+        return this;
+    }
+
+    //posle PaymentWriter.writeAll: null ako je upis prosao
+    Throwable failure() {
+        return committed.handle((ignored, e) -> e).join();
+    }
+
+    //posle commit-a: rezervacije i novi statusi placanja
+    List<JournalRecord> journalRecords() {
+        long paymentId = paymentStatuses.isEmpty() ? 0 : paymentStatuses.keySet().iterator().next();
+        List<JournalRecord> records = new ArrayList<>(reservations.size() + paymentStatuses.size());
+        reservations.forEach((accountId, amount) -> records.add(JournalRecord.reserved(paymentId, accountId, amount)));
+        paymentStatuses.forEach((id, status) -> records.add(JournalRecord.status(id, status)));
+        return records;
+    }
+
+    void fail(RuntimeException e) {
+        onFailure.forEach(Runnable::run);
+        committed.completeExceptionally(e);
+    }
+}
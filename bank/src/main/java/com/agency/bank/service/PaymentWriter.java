@@ -0,0 +1,286 @@
+package com.agency.bank.service;
+
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.journal.JournalRecord;
+import com.agency.bank.journal.PaymentJournal;
+import com.agency.bank.model.Account;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//group commit: upisi placanja iz vise zahteva se skupljaju najduze window ili do max-batch placanja i upisuju
+//u jednoj transakciji (Hibernate JDBC batch, id-evi iz sekvenci po 50). Pozivalac ceka commit svog upisa.
+//window = 0 upisuje sve sto je stiglo dok je prethodna grupa bila u bazi, bez dodatnog cekanja
+@Slf4j
+@Service
+public class PaymentWriter {
+
+    private final EntityManager entityManager;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentJournal paymentJournal;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxBatch;
+    private final int maxAttempts;
+    private final BlockingQueue<PaymentWrite> queue = new LinkedBlockingQueue<>();
+    private final DistributionSummary batchSize;
+    private final Timer batchTimer;
+    private final Counter conflicts;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public PaymentWriter(EntityManager entityManager,
+                         TransactionRepository transactionRepository,
+                         AccountRepository accountRepository,
+                         TransactionTemplate transactionTemplate,
+                         PaymentJournal paymentJournal,
+                         MeterRegistry meterRegistry,
+                         @Value("${bank.group-commit.enabled:true}") boolean enabled,
+                         @Value("${bank.group-commit.window:1ms}") Duration window,
+                         @Value("${bank.group-commit.max-batch:64}") int maxBatch,
+                         @Value("${bank.account-concurrency.max-attempts:5}") int maxAttempts) {
+        this.entityManager = entityManager;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.paymentJournal = paymentJournal;
+        this.enabled = enabled;
+        this.window = window;
+        this.maxBatch = maxBatch;
+        this.maxAttempts = maxAttempts;
+        this.batchSize = DistributionSummary.builder("payment.write.batch.size")
+                .description("Payments committed in one group commit")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("payment.write.batch")
+                .description("Duration of one group commit transaction")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("payment.write.conflicts")
+                .description("Payment writes repeated because an account was changed concurrently")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled)
+            return;
+        running = true;
+        writerThread = new Thread(this::run, "payment-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        for (PaymentWrite write; (write = queue.poll()) != null; )
+            write.fail(new IllegalStateException("Payment writer stopped"));
+    }
+
+    //vraca se posle commit-a, greska upisa se baca pozivaocu
+    public void write(PaymentWrite write) {
+        if (running)
+            queue.add(write);
+        else
+            writeAlone(write); //group commit iskljucen ili aplikacija jos nije pokrenuta
+        try {
+            write.committed.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    //grupa koja je vec skupljena (batch zahtev prodavca) se upisuje odmah, na thread-u pozivaoca, bez reda.
+    //ne baca gresku: svaki upis posle poziva ima svoj ishod, neuspeli se ponavljaju jedan po jedan
+    public void writeAll(List<PaymentWrite> writes) {
+        if (!writes.isEmpty())
+            flush(writes);
+    }
+
+    private void run() {
+        List<PaymentWrite> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + window.toNanos();
+                while (batch.size() < maxBatch) {
+                    PaymentWrite next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null)
+                            break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                batch.forEach(write -> write.fail(new IllegalStateException("Payment writer stopped")));
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PaymentWrite> batch) {
+        long start = System.nanoTime();
+        Set<PaymentWrite> rejected = null;
+        try {
+            rejected = apply(batch);
+        } catch (RuntimeException e) {
+            //jedno lose placanje ne sme da obori ostala iz grupe
+            log.warn("Group commit of {} payments failed, writing them one by one", batch.size(), e);
+            batch.forEach(this::writeAlone);
+        }
+        //posle commit-a: nista odavde ne sme da vrati grupu na ponovni upis
+        if (rejected != null) {
+            journal(batch, rejected);
+            for (PaymentWrite write : batch)
+                complete(write, rejected);
+        }
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSize.record(batch.size());
+    }
+
+    private void writeAlone(PaymentWrite write) {
+        Set<PaymentWrite> rejected;
+        try {
+            rejected = apply(List.of(write));
+        } catch (RuntimeException e) {
+            write.fail(e);
+            return;
+        }
+        journal(List.of(write), rejected);
+        complete(write, rejected);
+    }
+
+    //cela grupa u dnevnik placanja jednim fsync-om, pre nego sto pozivaoci saznaju za commit.
+    //placanja su vec u bazi, pa se greska dnevnika samo belezi
+    private void journal(List<PaymentWrite> batch, Set<PaymentWrite> rejected) {
+        List<JournalRecord> records = new ArrayList<>(batch.size() * 2);
+        for (PaymentWrite write : batch) {
+            if (!rejected.contains(write))
+                records.addAll(write.journalRecords());
+        }
+        try {
+            paymentJournal.append(records);
+        } catch (RuntimeException e) {
+            log.error("Journaling {} committed payments failed", batch.size() - rejected.size(), e);
+        }
+    }
+
+    private static void complete(PaymentWrite write, Set<PaymentWrite> rejected) {
+        if (rejected.contains(write))
+            write.fail(new InsufficientFundsException(write.reservations.keySet().iterator().next()));
+        else
+            write.committed.complete(null);
+    }
+
+    //racun koji je u medjuvremenu promenila druga transakcija (druga instanca, obracun) se cita ponovo,
+    //najvise max-attempts puta
+    private Set<PaymentWrite> apply(List<PaymentWrite> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> applyOnce(batch));
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts)
+                    throw e;
+                conflicts.increment();
+            }
+        }
+    }
+
+    //statusi se menjaju na transakcijama ucitanim jednim upitom, svi redovi se salju pri commit-u.
+    //vraca upise odbijene zbog nedovoljnih sredstava, od njih se nista ne upisuje
+    private Set<PaymentWrite> applyOnce(List<PaymentWrite> batch) {
+        Set<PaymentWrite> rejected = reserve(batch);
+        Map<Long, TransactionStatus> statusUpdates = new HashMap<>();
+        for (PaymentWrite write : batch) {
+            if (!rejected.contains(write))
+                statusUpdates.putAll(write.statusUpdates);
+        }
+        if (!statusUpdates.isEmpty()) {
+            for (Transaction transaction : transactionRepository.findAllById(statusUpdates.keySet()))
+                transaction.setTransactionStatus(statusUpdates.get(transaction.getId()));
+        }
+        for (PaymentWrite write : batch) {
+            if (rejected.contains(write))
+                continue;
+            for (Supplier<?> insert : write.inserts) {
+                Object entity = insert.get();
+                entityManager.persist(entity);
+                if (entity instanceof Transaction)
+                    write.paymentStatuses.put(((Transaction) entity).getPaymentId(), ((Transaction) entity).getTransactionStatus());
+            }
+        }
+        return rejected;
+    }
+
+    //rezervacije iz grupe se proveravaju redom nad stanjem racuna iz baze, a svaki racun se menja jednim
+    //update-om uz proveru verzije procitane na pocetku
+    private Set<PaymentWrite> reserve(List<PaymentWrite> batch) {
+        Set<Long> accountIds = new HashSet<>();
+        for (PaymentWrite write : batch)
+            accountIds.addAll(write.reservations.keySet());
+        if (accountIds.isEmpty())
+            return Set.of();
+
+        Map<Long, long[]> accounts = new HashMap<>(); //id -> {amount, reserved, version}
+        for (Object[] row : accountRepository.findReservationState(accountIds))
+            accounts.put((Long) row[0], new long[]{(Long) row[1], (Long) row[2], (Long) row[3]});
+
+        Set<PaymentWrite> rejected = new HashSet<>();
+        Set<Long> changed = new HashSet<>();
+        for (PaymentWrite write : batch) {
+            boolean covered = write.reservations.entrySet().stream().allMatch(reservation -> {
+                long[] account = accounts.get(reservation.getKey());
+                return account != null && account[0] - account[1] - reservation.getValue() >= 0;
+            });
+            if (!covered) {
+                if (!write.reservations.isEmpty())
+                    rejected.add(write);
+                continue;
+            }
+            write.reservations.forEach((accountId, amount) -> accounts.get(accountId)[1] += amount);
+            changed.addAll(write.reservations.keySet());
+        }
+        for (Long accountId : changed) {
+            long[] account = accounts.get(accountId);
+            if (accountRepository.updateReserved(accountId, account[1], account[2]) == 0)
+                throw new ObjectOptimisticLockingFailureException(Account.class, accountId);
+        }
+        return rejected;
+    }
+}
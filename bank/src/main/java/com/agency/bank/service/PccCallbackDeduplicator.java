@@ -0,0 +1,119 @@
+package com.agency.bank.service;
+
+import com.agency.bank.cache.BloomFilter;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.PccCallback;
+import com.agency.bank.repository.PccCallbackRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+//povratni pozivi PCC-a po kljucu (paymentId, issuerOrderId):
+//- nedavno obradjeni kljucevi su u kesu, ponovljen poziv se odbija bez baze
+//- bloom filter svih kljuceva iz pcc_callback: ako kaze "nije vidjen", tabela se ne cita
+//- tek insert u pcc_callback (on conflict do nothing) u transakciji obrade odlucuje, i izmedju vise instanci
+@Slf4j
+@Service
+public class PccCallbackDeduplicator {
+
+    private final PccCallbackRepository pccCallbackRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<PccCallback.Key, Boolean> recent;
+    private final long expectedKeys;
+    private final double falsePositiveRate;
+    private final Duration retention;
+    private volatile BloomFilter seen;
+
+    public PccCallbackDeduplicator(PccCallbackRepository pccCallbackRepository,
+                                   JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${bank.pcc-callback.recent-size:100000}") long recentSize,
+                                   @Value("${bank.pcc-callback.expected-keys:1000000}") long expectedKeys,
+                                   @Value("${bank.pcc-callback.false-positive-rate:0.01}") double falsePositiveRate,
+                                   @Value("${bank.pcc-callback.retention:30d}") Duration retention) {
+        this.pccCallbackRepository = pccCallbackRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.retention = retention;
+        this.recent = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder().maximumSize(recentSize).recordStats().<PccCallback.Key, Boolean>build(),
+                "pccCallbacks");
+        this.seen = new BloomFilter(expectedKeys, falsePositiveRate);
+    }
+
+    //do ucitavanja filter je prazan, duplikate tada hvata insert
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        seen = loadKeys();
+    }
+
+    //pozivi stariji od retention se brisu, a filter se pravi iz preostalih kljuceva
+    @Scheduled(cron = "${bank.pcc-callback.purge-cron:0 0 3 * * *}")
+    public void purge() {
+        Integer deleted = transactionTemplate.execute(status -> pccCallbackRepository.deleteReceivedBefore(LocalDateTime.now().minus(retention)));
+        log.info("Purged {} PCC callbacks older than {}", deleted, retention);
+        seen = loadKeys();
+    }
+
+    //bez baze ako je kljuc u kesu ili ga bloom filter sigurno nije video
+    public boolean isDuplicate(long paymentId, int issuerOrderId) {
+        PccCallback.Key key = new PccCallback.Key(paymentId, issuerOrderId);
+        if (recent.getIfPresent(key) != null)
+            return true;
+        if (!seen.mightContain(hash(paymentId, issuerOrderId)) || !pccCallbackRepository.existsById(key))
+            return false;
+        recent.put(key, Boolean.TRUE);
+        return true;
+    }
+
+    //mora u transakciji obrade poziva; false ako je isti poziv vec upisan
+    public boolean record(long paymentId, int issuerOrderId, TransactionStatus status) {
+        if (pccCallbackRepository.insertIfAbsent(paymentId, issuerOrderId, status.ordinal(), LocalDateTime.now()) == 0) {
+            remember(paymentId, issuerOrderId);
+            return false;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                remember(paymentId, issuerOrderId);
+            }
+        });
+        return true;
+    }
+
+    private void remember(long paymentId, int issuerOrderId) {
+        seen.put(hash(paymentId, issuerOrderId));
+        recent.put(new PccCallback.Key(paymentId, issuerOrderId), Boolean.TRUE);
+    }
+
+    private BloomFilter loadKeys() {
+        BloomFilter filter = new BloomFilter(expectedKeys, falsePositiveRate);
+        jdbcTemplate.query("select payment_id, issuer_order_id from pcc_callback",
+                rs -> {
+                    filter.put(hash(rs.getLong(1), rs.getInt(2)));
+                });
+        return filter;
+    }
+
+    private static long hash(long paymentId, int issuerOrderId) {
+        return paymentId * 0x9E3779B97F4A7C15L + issuerOrderId;
+    }
+}
@@ -0,0 +1,181 @@
+package com.agency.bank.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+//vlasnistvo nad delovima obracuna kad radi vise instanci banke. Rezervacija pripada delu mod(account_id, settlement.shards),
+//svaki cvor se javlja u settlement_node i drzi zakup (settlement_lease) nad priblizno shards / broj zivih cvorova delova.
+//zakupi se obnavljaju na svakih ttl / 3. Deo cvora koji se nije javio duze od ttl preuzima drugi cvor, a cvor koji ima
+//vise od svog dela otpusta visak da bi novi cvor dobio posao. Transakcija obracuna dela zakljucava red zakupa (hold),
+//pa preuzimanje ceka da se deo koji je u toku upise, a cvor koji je deo izgubio ga vise ne obracunava
+@Slf4j
+@Service
+public class SettlementLeases {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String node;
+    private final int shards;
+    private final Duration ttl;
+    private volatile Map<Integer, Long> owned = Collections.emptyMap(); //deo -> token zakupa
+    private volatile boolean running;
+    private Thread renewThread;
+
+    public SettlementLeases(JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${settlement.node-id:}") String node,
+                            @Value("${settlement.shards:64}") int shards,
+                            @Value("${settlement.lease.ttl:30s}") Duration ttl) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.node = node.isEmpty() ? defaultNode() : node;
+        this.shards = shards;
+        this.ttl = ttl;
+        Gauge.builder("settlement.shards.owned", this, leases -> leases.owned.size())
+                .description("Settlement shards leased by this node")
+                .register(meterRegistry);
+    }
+
+    //prvi zakupi se uzimaju odmah, pre prvog obracuna
+    public synchronized void start() {
+        if (running)
+            return;
+        List<Object[]> rows = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++)
+            rows.add(new Object[]{shard});
+        jdbcTemplate.batchUpdate("insert into settlement_lease (shard, node, expires_at, token) values (?, null, null, 0) on conflict do nothing", rows);
+        rebalance();
+        running = true;
+        renewThread = new Thread(this::renew, "settlement-leases");
+        renewThread.setDaemon(true);
+        renewThread.start();
+        log.info("Settlement node {} leased {} of {} shards", node, owned.size(), shards);
+    }
+
+    //delovi se otpustaju odmah, drugi cvorovi ih preuzimaju bez cekanja da zakup istekne
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running)
+            return;
+        running = false;
+        renewThread.interrupt();
+        renewThread.join(ttl.toMillis());
+        synchronized (this) {
+            owned = Collections.emptyMap();
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("update settlement_lease set node = null, expires_at = null where node = ?", node);
+                jdbcTemplate.update("delete from settlement_node where node_id = ?", node);
+            });
+        }
+    }
+
+    public String node() {
+        return node;
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    public Map<Integer, Long> owned() {
+        return owned;
+    }
+
+    //mora u transakciji obracuna dela; red zakupa ostaje zakljucan do kraja transakcije.
+    //false ako je deo u medjuvremenu otpusten ili ga je preuzeo drugi cvor
+    public boolean hold(int shard, long token) {
+        List<Long> tokens = jdbcTemplate.queryForList("select token from settlement_lease where shard = ? and node = ? for update",
+                Long.class, shard, node);
+        return tokens.size() == 1 && tokens.get(0) == token;
+    }
+
+    private void renew() {
+        while (running) {
+            try {
+                Thread.sleep(ttl.toMillis() / 3);
+                rebalance();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                //zakupi isticu ako baza nije dostupna duze od ttl, a hold ne pusta obracun delova koje je preuzeo drugi cvor
+                log.error("Settlement lease renewal failed", e);
+            }
+        }
+    }
+
+    synchronized void rebalance() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(ttl);
+        if (jdbcTemplate.update("update settlement_node set expires_at = ? where node_id = ?", expiresAt, node) == 0)
+            jdbcTemplate.update("insert into settlement_node (node_id, expires_at) values (?, ?)", node, expiresAt);
+        int live = Math.max(1, jdbcTemplate.queryForObject("select count(*) from settlement_node where expires_at > ?", Integer.class, now));
+        int share = (shards + live - 1) / live;
+
+        jdbcTemplate.update("update settlement_lease set expires_at = ? where node = ?", expiresAt, node);
+        TreeMap<Integer, Long> leased = new TreeMap<>();
+        jdbcTemplate.query("select shard, token from settlement_lease where node = ? and shard < ?", rs -> {
+            leased.put(rs.getInt(1), rs.getLong(2));
+        }, node, shards);
+
+        //visak se prvo skida iz owned da ga worker-i vise ne uzimaju, a otpustanje ceka na deo koji je u toku
+        if (leased.size() > share) {
+            List<Integer> released = new ArrayList<>();
+            while (leased.size() > share)
+                released.add(leased.pollLastEntry().getKey());
+            owned = Collections.unmodifiableMap(new TreeMap<>(leased));
+            for (int shard : released)
+                jdbcTemplate.update("update settlement_lease set node = null, expires_at = null where shard = ? and node = ?", shard, node);
+            log.info("Settlement node {} released shards {} ({} live nodes)", node, released, live);
+        }
+
+        if (leased.size() < share) {
+            List<Integer> claimed = new ArrayList<>();
+            for (int shard : jdbcTemplate.queryForList("select shard from settlement_lease where (node is null or expires_at < ?) and shard < ? order by shard",
+                    Integer.class, now, shards)) {
+                if (leased.size() >= share)
+                    break;
+                Long token = transactionTemplate.execute(status -> {
+                    if (jdbcTemplate.update("update settlement_lease set node = ?, expires_at = ?, token = token + 1 where shard = ? and (node is null or expires_at < ?)",
+                            node, expiresAt, shard, now) == 0)
+                        return null;
+                    return jdbcTemplate.queryForObject("select token from settlement_lease where shard = ?", Long.class, shard);
+                });
+                if (token != null) {
+                    leased.put(shard, token);
+                    claimed.add(shard);
+                }
+            }
+            if (!claimed.isEmpty())
+                log.info("Settlement node {} claimed shards {} ({} live nodes)", node, claimed, live);
+        }
+        owned = Collections.unmodifiableMap(leased);
+    }
+
+    private static String defaultNode() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "bank";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
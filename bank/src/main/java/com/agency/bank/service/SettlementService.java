@@ -0,0 +1,482 @@
+package com.agency.bank.service;
+
+import com.agency.bank.journal.JournalRecord;
+import com.agency.bank.journal.PaymentJournal;
+import com.agency.bank.model.SettlementRun;
+import com.agency.bank.money.Money;
+import com.agency.bank.repository.ReservationRepository;
+import com.agency.bank.repository.SettlementRunRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//obracun rezervacija u delovima: jedna transakcija po delu, zaduzenja i odobrenja se sabiraju po racunu.
+//rezervacije su podeljene u delove (shard) po id-u racuna kupca i svaka instanca obracunava samo delove koje je
+//zakupila (SettlementLeases), pa se broj obracunatih rezervacija u sekundi povecava sa brojem instanci.
+//settlement.mode=cron: obracun se pokrece po greeting.cron, delovi ove instance su raspodeljeni na particije,
+//svaka particija ima svoj thread pa se jedan racun uvek menja iz istog thread-a i istim redosledom.
+//settlement.mode=continuous: thread settlement-stream obracunava rezervacije u malim delovima cim su upisane, a
+//odobrenja prodavcima skuplja u settlement_credit svog obracuna i prenosi ih na racune najvise jednom u
+//credit-interval, kao i cron obracun (jedan upis po racunu prodavca, bez borbe delova za isti red).
+//tabela reservation je trajni spisak neobracunatih rezervacija (posle restarta se nastavlja od nje), a u memoriji
+//je samo signal da je stigla nova rezervacija. Svaka transakcija proverava zakup dela i broj obrisanih rezervacija,
+//pa se rezervacija ne obracunava dva puta ni kad deo predje na drugu instancu
+@Slf4j
+@RequiredArgsConstructor
+@Service
+public class SettlementService {
+
+    private static final String SELECT_CHUNK =
+            "select r.id, r.amount, r.acquirer_account_number, c.account_id from reservation r " +
+            "join client c on c.id = r.client_id " +
+            "where r.id > ? and r.id <= ? and mod(c.account_id, ?) = ? order by r.id limit ?";
+
+    private static final String LOCK_PENDING =
+            "select r.id, r.amount, r.acquirer_account_number, (select c.account_id from client c where c.id = r.client_id), r.created_at " +
+            "from reservation r where r.client_id in (select c.id from client c where mod(c.account_id, ?) = ?) " +
+            "order by r.id limit ? for update skip locked";
+
+    //nezavrseni obracuni ove instance (prekinuti padom) i instanci koje se vise ne javljaju
+    private static final String ABANDONED_RUNS =
+            "select id from settlement_run where finished_at is null and (node is null or node = ? or node not in " +
+            "(select node_id from settlement_node where expires_at > ?)) order by id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReservationRepository reservationRepository;
+    private final SettlementRunRepository settlementRunRepository;
+    private final SettlementLeases settlementLeases;
+    private final BalanceLedgerService balanceLedgerService;
+    private final PaymentJournal paymentJournal;
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final BlockingQueue<Boolean> reservationSignal = new ArrayBlockingQueue<>(1);
+    private final AtomicLong lagMillis = new AtomicLong();
+    private ExecutorService workers;
+    private DistributionSummary batchSize;
+    private Timer batchDuration;
+    private Timer runDuration;
+    private volatile boolean streaming;
+    private Thread streamThread;
+    private SettlementRun continuousRun; //otvoren obracun kontinuiranog rezima, pravi se uz prvi deo sa rezervacijama
+    private long lastCreditTransfer = System.nanoTime();
+
+    //cron ili continuous
+    @Value("${settlement.mode:cron}")
+    private String mode;
+
+    //najduze cekanje worker-a kad nema signala, npr. za rezervacije drugih instanci
+    @Value("${settlement.continuous.interval:1s}")
+    private Duration interval;
+
+    //koliko dugo kontinuirani obracun skuplja odobrenja prodavcima pre prenosa na racune
+    @Value("${settlement.continuous.credit-interval:5s}")
+    private Duration creditInterval;
+
+    @Value("${settlement.chunk-size:1000}")
+    private int chunkSize;
+
+    //0 - broj jezgara, ali ne vise od broja konekcija u pool-u (jedna ostaje za ostatak aplikacije)
+    @Value("${settlement.partitions:0}")
+    private int partitions;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    private static final class Chunk {
+        private final List<Long> reservationIds = new ArrayList<>();
+        private final Map<Long, Long> debits = new TreeMap<>(); //po id-u racuna kupca
+        private final Map<String, Long> credits = new TreeMap<>(); //po broju racuna prodavca
+        private long lastReservationId;
+        private LocalDateTime oldest;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (partitions <= 0)
+            partitions = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), connectionPoolSize - 1));
+        AtomicInteger counter = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(partitions, r -> {
+            Thread thread = new Thread(r, "settlement-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        batchSize = DistributionSummary.builder("settlement.batch.size")
+                .description("Reservations settled in one chunk transaction")
+                .register(meterRegistry);
+        batchDuration = Timer.builder("settlement.batch")
+                .description("Duration of one chunk transaction")
+                .register(meterRegistry);
+        runDuration = Timer.builder("settlement.run")
+                .description("Duration of a whole settlement run")
+                .register(meterRegistry);
+        Gauge.builder("settlement.lag", lagMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .description("Age of the oldest reservation in the last continuously settled chunk")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        streaming = false;
+        if (streamThread != null) {
+            streamThread.interrupt();
+            streamThread.join(interval.toMillis() * 10);
+        }
+        workers.shutdownNow();
+    }
+
+    //obracun koji je prekinut padom aplikacije se zavrsava odmah po pokretanju: odobrenja vec obracunatih delova
+    //idu prodavcima, a u cron rezimu se odmah obracunava i ostatak
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRun() {
+        settlementLeases.start();
+        if (finishAbandonedRuns() > 0 && !isContinuous())
+            settle();
+        if (isContinuous()) {
+            streaming = true;
+            streamThread = new Thread(this::stream, "settlement-stream");
+            streamThread.setDaemon(true);
+            streamThread.start();
+        }
+    }
+
+    @Scheduled(cron = "${greeting.cron}")
+    public void finishTransactions() {
+        if (!isContinuous())
+            settle();
+    }
+
+    //poziva se posle commit-a nove rezervacije, vise signala pre nego sto ih worker preuzme se spaja u jedan
+    public void reservationCommitted() {
+        if (streaming)
+            reservationSignal.offer(Boolean.TRUE);
+    }
+
+    private boolean isContinuous() {
+        return "continuous".equals(mode);
+    }
+
+    private void stream() {
+        while (streaming) {
+            try {
+                reservationSignal.poll(interval.toMillis(), TimeUnit.MILLISECONDS);
+                settlePending();
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                //neobracunate rezervacije ostaju u tabeli i uzimaju se u sledecem prolazu
+                log.error("Continuous settlement chunk failed", e);
+            }
+        }
+        //pri gasenju prodavci dobijaju odobrenja odmah, a ne tek kad obracun preuzme druga instanca
+        try {
+            transferCredits();
+        } catch (RuntimeException e) {
+            log.warn("Settlement credits of node {} will be transferred by the next run", settlementLeases.node(), e);
+        }
+    }
+
+    //sve upisane rezervacije delova ove instance; settlement.lag je starost najstarije rezervacije u ovom prolazu.
+    //svakih credit-interval se zavrsavaju obracuni ove instance (odobrenja idu prodavcima) i instanci koje se ne javljaju
+    public int settlePending() {
+        int total = 0;
+        long lag = 0;
+        for (Map.Entry<Integer, Long> lease : settlementLeases.owned().entrySet()) {
+            Chunk chunk;
+            do {
+                chunk = settlePending(lease.getKey(), lease.getValue());
+                if (chunk == null)
+                    break;
+                total += chunk.reservationIds.size();
+                if (chunk.oldest != null)
+                    lag = Math.max(lag, Duration.between(chunk.oldest, LocalDateTime.now()).toMillis());
+            } while (chunk.reservationIds.size() == chunkSize);
+        }
+        lagMillis.set(lag);
+        if (System.nanoTime() - lastCreditTransfer >= creditInterval.toNanos())
+            transferCredits();
+        return total;
+    }
+
+    //zavrsava otvoren obracun ove instance (sledeci deo sa rezervacijama otvara nov) i napustene obracune
+    public void transferCredits() {
+        if (continuousRun != null)
+            finishRun(continuousRun.getId());
+        continuousRun = null;
+        finishAbandonedRuns();
+        lastCreditTransfer = System.nanoTime();
+    }
+
+    //najstarije rezervacije jednog dela u jednoj transakciji, odobrenja idu u settlement_credit otvorenog obracuna.
+    //null ako deo vise ne pripada ovoj instanci
+    private Chunk settlePending(int shard, long token) {
+        return balanceLedgerService.change(() -> settlePendingChunk(shard, token));
+    }
+
+    private Chunk settlePendingChunk(int shard, long token) {
+        Chunk chunk = new Chunk();
+        long start = System.nanoTime();
+        Boolean held;
+        try {
+            held = transactionTemplate.execute(status -> settlePending(shard, token, chunk));
+        } catch (RuntimeException e) {
+            //nov red obracuna je vracen zajedno sa delom, a postojeci je mozda zavrsila druga instanca;
+            //vec upisana odobrenja zavrsava sledeci transferCredits
+            continuousRun = null;
+            throw e;
+        }
+        if (!Boolean.TRUE.equals(held))
+            return null;
+        if (chunk.reservationIds.isEmpty())
+            return chunk;
+        batchDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSize.record(chunk.reservationIds.size());
+        debitLedger(chunk.debits);
+        return chunk;
+    }
+
+    private boolean settlePending(int shard, long token, Chunk chunk) {
+        if (!settlementLeases.hold(shard, token))
+            return false;
+        jdbcTemplate.query(LOCK_PENDING, rs -> {
+            long amount = rs.getLong(2);
+            chunk.reservationIds.add(rs.getLong(1));
+            chunk.debits.merge(rs.getLong(4), amount, Money::add);
+            chunk.credits.merge(rs.getString(3), amount, Money::add);
+            Timestamp createdAt = rs.getTimestamp(5);
+            if (createdAt != null && (chunk.oldest == null || createdAt.toLocalDateTime().isBefore(chunk.oldest)))
+                chunk.oldest = createdAt.toLocalDateTime();
+        }, settlementLeases.shards(), shard, chunkSize);
+        if (chunk.reservationIds.isEmpty())
+            return true;
+        if (continuousRun == null)
+            continuousRun = openRun(0);
+        apply(continuousRun.getId(), chunk);
+        return true;
+    }
+
+    public void settle() {
+        if (!running.compareAndSet(false, true))
+            return;
+        try {
+            finishAbandonedRuns();
+            run(openRun(reservationRepository.findMaxId()));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    //upisuje se odmah, jer ga u istoj transakciji menja i JdbcTemplate
+    private SettlementRun openRun(long highWaterMark) {
+        return settlementRunRepository.saveAndFlush(SettlementRun.builder()
+                .highWaterMark(highWaterMark)
+                .startedAt(LocalDateTime.now())
+                .node(settlementLeases.node())
+                .build());
+    }
+
+    private void run(SettlementRun run) {
+        long start = System.nanoTime();
+        List<Map.Entry<Integer, Long>> leases = new ArrayList<>(settlementLeases.owned().entrySet());
+        List<Future<Long>> results = new ArrayList<>(partitions);
+        for (int partition = 0; partition < partitions; partition++) {
+            int p = partition;
+            results.add(workers.submit(() -> settlePartition(run, leases, p)));
+        }
+        long settled = 0;
+        try {
+            for (Future<Long> result : results)
+                settled += result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Settlement run " + run.getId() + " interrupted", e);
+        } catch (ExecutionException e) {
+            //run ostaje otvoren i nastavlja se sledeci put, obracunati delovi su vec upisani
+            throw new IllegalStateException("Settlement run " + run.getId() + " failed", e.getCause());
+        }
+
+        finishRun(run.getId());
+
+        long elapsed = System.nanoTime() - start;
+        runDuration.record(elapsed, TimeUnit.NANOSECONDS);
+        long millis = Math.max(1, elapsed / 1_000_000);
+        log.info("Settlement run {} settled {} reservations of {} shards in {} ms across {} partitions ({} reservations/s)",
+                run.getId(), settled, leases.size(), millis, partitions, settled * 1000 / millis);
+    }
+
+    //delovi particije idu jedan za drugim
+    private long settlePartition(SettlementRun run, List<Map.Entry<Integer, Long>> leases, int partition) {
+        long settled = 0;
+        for (int i = partition; i < leases.size(); i += partitions)
+            settled += settleShard(run, leases.get(i).getKey(), leases.get(i).getValue());
+        return settled;
+    }
+
+    //delovi se citaju u transakciji koja drzi zakup, pa deo koji je preuzela druga instanca ona cita tek posle upisa
+    private long settleShard(SettlementRun run, int shard, long token) {
+        long settled = 0;
+        long cursor = 0;
+        while (true) {
+            long from = cursor;
+            long start = System.nanoTime();
+            Chunk chunk = balanceLedgerService.change(() -> {
+                Chunk applied = transactionTemplate.execute(status -> {
+                    if (!settlementLeases.hold(shard, token))
+                        return null;
+                    Chunk read = readChunk(from, run.getHighWaterMark(), shard);
+                    if (!read.reservationIds.isEmpty())
+                        apply(run.getId(), read);
+                    return read;
+                });
+                if (applied != null && !applied.reservationIds.isEmpty())
+                    debitLedger(applied.debits);
+                return applied;
+            });
+            if (chunk == null) {
+                log.info("Settlement shard {} moved to another node during run {}", shard, run.getId());
+                return settled;
+            }
+            if (chunk.reservationIds.isEmpty())
+                return settled;
+            batchDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSize.record(chunk.reservationIds.size());
+            settled += chunk.reservationIds.size();
+            cursor = chunk.lastReservationId;
+        }
+    }
+
+    private Chunk readChunk(long cursor, long highWaterMark, int shard) {
+        Chunk chunk = new Chunk();
+        jdbcTemplate.query(SELECT_CHUNK, rs -> {
+            long id = rs.getLong(1);
+            long amount = rs.getLong(2);
+            chunk.reservationIds.add(id);
+            chunk.debits.merge(rs.getLong(4), amount, Money::add);
+            chunk.credits.merge(rs.getString(3), amount, Money::add);
+            chunk.lastReservationId = id;
+        }, cursor, highWaterMark, settlementLeases.shards(), shard, chunkSize);
+        return chunk;
+    }
+
+    //racuni se azuriraju sortirani po id-u (zaduzenja ovde, odobrenja u finishRun), da dve transakcije ne bi
+    //zakljucale redove obrnutim redosledom. Odobrenja prodavcu se samo upisuju u settlement_credit, na racun ih
+    //prenosi finishRun. Obracun koji je u medjuvremenu zavrsila druga instanca (ova se nije javila na vreme) ne
+    //prima nove delove, jer ih niko ne bi preneo
+    private void apply(long runId, Chunk chunk) {
+        debit(chunk);
+
+        List<Object[]> credits = new ArrayList<>(chunk.credits.size());
+        chunk.credits.forEach((accountNumber, amount) -> credits.add(new Object[]{runId, accountNumber, amount}));
+        jdbcTemplate.batchUpdate("insert into settlement_credit (run_id, account_number, amount) values (?, ?, ?)", credits);
+
+        deleteReservations(chunk);
+        if (jdbcTemplate.update("update settlement_run set settled_count = settled_count + ? where id = ? and finished_at is null",
+                chunk.reservationIds.size(), runId) == 0)
+            throw new IllegalStateException("Settlement run " + runId + " was finished by another node");
+    }
+
+    private void debit(Chunk chunk) {
+        List<Object[]> debits = new ArrayList<>(chunk.debits.size());
+        chunk.debits.forEach((accountId, amount) -> debits.add(new Object[]{amount, amount, accountId}));
+        //rezervisano se smanjuje zajedno sa stanjem, a nova verzija obara rezervaciju koja je procitala staro stanje
+        jdbcTemplate.batchUpdate("update account set amount = amount - ?, reserved = reserved - ?, version = version + 1 where id = ?", debits);
+    }
+
+    private void credit(Map<Long, Long> credits) {
+        List<Object[]> updates = new ArrayList<>(credits.size());
+        credits.forEach((accountId, amount) -> updates.add(new Object[]{amount, accountId}));
+        jdbcTemplate.batchUpdate("update account set amount = amount + ?, version = version + 1 where id = ?", updates);
+    }
+
+    //rezervaciju koju je u medjuvremenu obrisala druga transakcija ne sme zaduziti i ova
+    private void deleteReservations(Chunk chunk) {
+        int deleted = namedParameterJdbcTemplate.update("delete from reservation where id in (:ids)",
+                new MapSqlParameterSource("ids", chunk.reservationIds));
+        if (deleted != chunk.reservationIds.size())
+            throw new IllegalStateException("Settled " + chunk.reservationIds.size() + " reservations but only " + deleted + " were pending");
+    }
+
+    private int finishAbandonedRuns() {
+        List<Long> runIds = jdbcTemplate.queryForList(ABANDONED_RUNS, Long.class, settlementLeases.node(), LocalDateTime.now());
+        for (long runId : runIds) {
+            finishRun(runId);
+            log.info("Finished abandoned settlement run {}", runId);
+        }
+        return runIds.size();
+    }
+
+    //jedan upis po racunu prodavca za ceo obracun, umesto da se sve particije bore za isti red.
+    //red obracuna je zakljucan, pa napusten obracun zavrsava samo jedna instanca
+    private void finishRun(long runId) {
+        balanceLedgerService.change(() -> finishRunAndCredit(runId));
+    }
+
+    private void finishRunAndCredit(long runId) {
+        Map<Long, Long> credits = new TreeMap<>(); //po id-u racuna prodavca
+        transactionTemplate.executeWithoutResult(status -> {
+            if (jdbcTemplate.queryForList("select id from settlement_run where id = ? and finished_at is null for update", Long.class, runId).isEmpty())
+                return;
+            jdbcTemplate.query("select a.id, sum(sc.amount) from settlement_credit sc join account a on a.account_number = sc.account_number " +
+                            "where sc.run_id = ? group by a.id",
+                    rs -> {
+                        credits.put(rs.getLong(1), rs.getLong(2));
+                    }, runId);
+            credit(credits);
+            jdbcTemplate.update("delete from settlement_credit where run_id = ?", runId);
+            jdbcTemplate.update("update settlement_run set finished_at = ? where id = ?", LocalDateTime.now(), runId);
+        });
+        creditLedger(credits);
+    }
+
+    private void debitLedger(Map<Long, Long> debits) {
+        List<JournalRecord> records = new ArrayList<>(debits.size());
+        debits.forEach((accountId, amount) -> {
+            balanceLedgerService.settleDebit(accountId, amount);
+            records.add(JournalRecord.settled(accountId, amount));
+        });
+        paymentJournal.append(records);
+    }
+
+    private void creditLedger(Map<Long, Long> credits) {
+        List<JournalRecord> records = new ArrayList<>(credits.size());
+        credits.forEach((accountId, amount) -> {
+            balanceLedgerService.credit(accountId, amount);
+            records.add(JournalRecord.credited(accountId, amount));
+        });
+        paymentJournal.append(records);
+    }
+}
@@ -1,19 +1,31 @@
 package com.agency.bank.service;
 
+import com.agency.bank.cache.CardSnapshot;
+import com.agency.bank.cache.ClientSnapshot;
+import com.agency.bank.cache.RecentPaymentWrites;
+import com.agency.bank.config.ReadRouting;
 import com.agency.bank.dto.*;
+import com.agency.bank.enums.CardRoute;
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.PccCallbackOutcome;
 import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.journal.JournalRecord;
+import com.agency.bank.journal.PaymentJournal;
 import com.agency.bank.model.*;
-import com.agency.bank.repository.AccountRepository;
 import com.agency.bank.repository.TransactionRepository;
+import com.agency.bank.routing.BinRouter;
+import com.agency.bank.service.PaymentMetrics.Phase;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.PropertySource;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @PropertySource(value = "application.properties", ignoreResourceNotFound = true)
 @AllArgsConstructor
@@ -22,9 +34,20 @@ public class TransactionService {
 
     private TransactionRepository transactionRepository;
     private CardService cardService;
-    private ReservationService reservationService;
-    private AccountRepository accountRepository;
     private ClientService clientService;
+    private BalanceLedgerService balanceLedgerService;
+    private OutboundDispatcher outboundDispatcher;
+    private PaymentIdGenerator paymentIdGenerator;
+    private PaymentMetrics paymentMetrics;
+    private PaymentWriter paymentWriter;
+    private AccountQueue accountQueue;
+    private SettlementService settlementService;
+    private RecentPaymentWrites recentPaymentWrites;
+    private PaymentJournal paymentJournal;
+    private PccCallbackDeduplicator pccCallbackDeduplicator;
+    private BinRouter binRouter;
+    private TransactionTemplate transactionTemplate;
+    private static final int PAYMENT_BATCH_CHUNK = 500;
     private static String paymentUrl;
     private static String panAcquirer;
 
@@ -38,122 +61,241 @@ public class TransactionService {
         this.panAcquirer = panAcquirer;
     }
 
+    //promena statusa i poruka ka PSP-u/PCC-u se upisuju u istoj transakciji, preko PaymentWriter-a (group commit).
+    //null ako placanje sa tim paymentId ne postoji, kao findPayment
     public Transaction pay(CardDto cardDto) {
-        Client client = clientService.findByPan(cardDto.getPan()); //kupac
-        Transaction transaction = transactionRepository.findByPaymentId(Integer.parseInt(cardDto.getPaymentId()));
-        Client acquirer = clientService.findByPan(panAcquirer); //prodavac
+        Transaction transaction = findRequestedPayment(cardDto.getPaymentId());
+        if (transaction == null)
+            return null;
+        ClientSnapshot client = paymentMetrics.time(Phase.CLIENT_LOOKUP, () -> clientService.findByPan(cardDto.getPan())); //kupac
+        ClientSnapshot acquirer = clientService.getAcquirer(); //prodavac
+        PaymentWrite write = new PaymentWrite();
 
         //provarava validnost dobijenih podataka
-        if (!checkValidityOfIssuerCardData(cardDto)){
+        if (!paymentMetrics.time(Phase.CARD_VALIDATION, () -> checkValidityOfIssuerCardData(cardDto))){
             transaction.setTransactionStatus(TransactionStatus.FAILED);
+            commit(notifyPSP(write.updateStatus(transaction), transaction), transaction.getPaymentId());
+            paymentMetrics.outcome(transaction.getTransactionStatus());
             return transaction;
         }
 
         //provera da li je ista banka
-        if (sameBankForAcquirerAndIssuer(cardDto.getPan())){
-            //provera raspolozivih sredstava
-            if (checkClientAccountState(transaction.getAmount(), client)){
-                //rezervacija sredstava
-                Reservation reservation = Reservation.builder()
-                        .description(cardDto.getDescription())
-                        .amount(Double.parseDouble(cardDto.getAmount()))
-                        .acquirerAccountNumber(acquirer.getAccount().getAccountNumber())
-                        .client(client)
-                        .build();
-                transaction.setTransactionStatus(TransactionStatus.IN_PROGRESS);
-                reservationService.save(reservation);
-            } else {
-                transaction.setTransactionStatus(TransactionStatus.FAILED); //klijent nema dovoljno raspolozivih sredstava pa je transakicja neuspesna
-            }
+        if (sameBankForAcquirerAndIssuer(cardDto.getPan()))
+            return balanceLedgerService.change(() -> accountQueue.run(client.getAccountId(), () -> payFromAccount(cardDto, transaction, client, acquirer, write)));
+
+        //slucaj kada su razlicite banke, korak 3b,4,5,6 ide preko PCC-a
+        String pccKey = OutboundDispatcher.pccKey(transaction.getPaymentId());
+        if (!outboundDispatcher.isEnqueued(pccKey)) {
+            Object pccRequest = paymentPCCRequest(cardDto);
+            commit(write.insert(() -> outboundDispatcher.message(OutboundDestination.PCC, pccKey, transaction.getPaymentId(), pccRequest)), transaction.getPaymentId());
+        }
+        return transaction;
+    }
+
+    private Transaction findRequestedPayment(String paymentId) {
+        try {
+            return transactionRepository.findFirstByPaymentIdOrderById(Long.parseLong(paymentId));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Transaction payFromAccount(CardDto cardDto, Transaction transaction, ClientSnapshot client, ClientSnapshot acquirer, PaymentWrite write) {
+        //provera raspolozivih sredstava i rezervacija u ledger-u
+        long accountId = client.getAccountId();
+        long amount = transaction.getAmount();
+        if (paymentMetrics.time(Phase.FUNDS_CHECK, () -> balanceLedgerService.tryReserve(accountId, amount))){
+            transaction.setTransactionStatus(TransactionStatus.IN_PROGRESS);
+            //rezervacija u ledger-u vazi samo ako je i rezervacija u bazi upisana
+            write.insert(() -> Reservation.builder()
+                            .description(cardDto.getDescription())
+                            .amount(amount)
+                            .acquirerAccountNumber(acquirer.getAccountNumber())
+                            .createdAt(LocalDateTime.now())
+                            .client(clientService.getReference(client.getId()))
+                            .build())
+                    .reserve(accountId, amount)
+                    .onFailure(() -> balanceLedgerService.release(accountId, amount));
         } else {
-            return transaction; // na kontroleru ce ovim da se preusmeri na korak 3b,4,5,6 -----------> slucaj kada su razlicite banke
+            transaction.setTransactionStatus(TransactionStatus.FAILED); //klijent nema dovoljno raspolozivih sredstava pa je transakicja neuspesna
         }
-        transactionRepository.save(transaction);
-        createTransactionForIssuer(transaction, client);
+        try {
+            commit(notifyPSP(write.updateStatus(transaction).insert(() -> issuerTransaction(transaction, client)), transaction), transaction.getPaymentId());
+        } catch (InsufficientFundsException e) {
+            //ledger ove instance ne vidi rezervacije drugih instanci, odlucuje stanje racuna u bazi
+            transaction.setTransactionStatus(TransactionStatus.FAILED);
+            commit(notifyPSP(new PaymentWrite().updateStatus(transaction).insert(() -> issuerTransaction(transaction, client)), transaction), transaction.getPaymentId());
+        }
+        if (transaction.getTransactionStatus() == TransactionStatus.IN_PROGRESS)
+            settlementService.reservationCommitted();
+        paymentMetrics.outcome(transaction.getTransactionStatus());
         return transaction;
     }
 
-    private void createTransactionForIssuer(Transaction transaction, Client client) {
-        Transaction issuerTransaction = Transaction.builder()
+    private void commit(PaymentWrite write, long paymentId) {
+        paymentMetrics.time(Phase.COMMIT, () -> paymentWriter.write(write));
+        recentPaymentWrites.record(paymentId);
+    }
+
+    private void notifyPSP(Transaction transaction) {
+        outboundDispatcher.enqueue(OutboundDestination.PSP,
+                OutboundDispatcher.pspKey(transaction.getPaymentId(), transaction.getTransactionStatus()),
+                transaction.getPaymentId(), pspResponse(transaction));
+    }
+
+    //isti status se PSP-u javlja samo jednom, provera je pre upisa da ne bi obarala celu grupu
+    private PaymentWrite notifyPSP(PaymentWrite write, Transaction transaction) {
+        String key = OutboundDispatcher.pspKey(transaction.getPaymentId(), transaction.getTransactionStatus());
+        if (outboundDispatcher.isEnqueued(key))
+            return write;
+        PSPResponseDto response = pspResponse(transaction);
+        return write.insert(() -> outboundDispatcher.message(OutboundDestination.PSP, key, transaction.getPaymentId(), response));
+    }
+
+    private PSPResponseDto pspResponse(Transaction transaction) {
+        return PSPResponseDto.builder()
+                .paymentId(transaction.getPaymentId())
+                .acquirerOrderId(transaction.getAcquirerOrderId())
+                .acquirerTimestamp(transaction.getAcquirerTimestamp())
+                .merchantOrderId(transaction.getMerchantOrderId())
+                .amount(transaction.getAmount())
+                .description(transaction.getDescription())
+                .transactionStatus(transaction.getTransactionStatus())
+                .build();
+    }
+
+    private Transaction issuerTransaction(Transaction transaction, ClientSnapshot client) {
+        return Transaction.builder()
                 .transactionStatus(transaction.getTransactionStatus())
                 .paymentId(transaction.getPaymentId())
                 .description(transaction.getDescription())
                 .merchantTimestamp(transaction.getMerchantTimestamp())
                 .merchantOrderId(transaction.getMerchantOrderId())
                 .amount(transaction.getAmount())
-                .client(client)
+                .client(clientService.getReference(client.getId()))
                 .build();
-        transactionRepository.save(issuerTransaction);
-    }
-
-    private boolean checkClientAccountState(double amount, Client client) {
-        double sum = 0;
-        if (client.getReservations().size() > 0) {
-            sum = sumReservations(client.getReservations());
-        }
-
-        if ((client.getAccount().getAmount() - sum - amount) >= 0) //uzima u obzir i neobradjene rezervacije
-            return true;
-        else
-            return false;
-    }
-
-    private double sumReservations(List<Reservation> reservations) { //sabira sumu svih rezervacija
-        double sum = 0;
-        for (Reservation reservation: reservations) {
-            sum += reservation.getAmount();
-        }
-        return sum;
     }
 
+    //banka izdavalac po BIN-u kartice, bez alokacija
     public boolean sameBankForAcquirerAndIssuer(String pan) {
-        if (pan.substring(0,7).equals(panAcquirer.substring(0,7)))
-            return true;
-        return false;
+        return binRouter.route(pan) == CardRoute.LOCAL;
     }
 
     private boolean checkValidityOfIssuerCardData(CardDto cardDto) {
-        Card card = cardService.findByPan(cardDto.getPan());
-        if (card == null || !card.getDateExpiration().equals(cardDto.getDateExpiration().trim()) || !card.getSecurityCode().equals(cardDto.getSecurityCode()))
+        CardSnapshot card = cardService.findByPan(cardDto.getPan());
+        if (card == null || !card.matches(cardDto.getSecurityCode(), cardDto.getDateExpiration().trim()))
             return false;
         return true;
     }
 
     public PaymentResponseDTO requestPayment(PaymentForBankRequestDto paymentForBankRequestDto) {
         //provera merchant info
-        Client acquirer = clientService.findByMerchantIdAndMerchantPassword(paymentForBankRequestDto.getMerchantId(), paymentForBankRequestDto.getMerchantPassword());
+        Long acquirerId = clientService.findMerchantId(paymentForBankRequestDto.getMerchantId(), paymentForBankRequestDto.getMerchantPassword());
 
-        if (acquirer == null)
+        if (acquirerId == null)
             return null;
 
-        Transaction transaction = Transaction.builder()
-                .paymentId(generateRandomNumber())
+        long paymentId = paymentIdGenerator.nextId();
+        commit(new PaymentWrite().insert(() -> requestedTransaction(paymentId, paymentForBankRequestDto, acquirerId)), paymentId);
+
+        return paymentResponse(paymentId, paymentForBankRequestDto);
+    }
+
+    //batch prodavca: kredencijali se proveravaju jednom po prodavcu, id-jevi se uzimaju za celu grupu odjednom, a grupa od
+    //PAYMENT_BATCH_CHUNK placanja se upisuje u jednoj transakciji. Rezultati grupe idu pozivaocu cim je upisana,
+    //dok se ostatak zahteva jos cita. Neispravna stavka prekida citanje, ono sto je procitano pre nje se upisuje
+    public void requestPayments(Iterator<PaymentForBankRequestDto> requests, Consumer<List<PaymentBatchResultDto>> results) {
+        Map<List<String>, Optional<Long>> merchants = new HashMap<>();
+        List<PaymentForBankRequestDto> chunk = new ArrayList<>(PAYMENT_BATCH_CHUNK);
+        int index = 0;
+        while (true) {
+            try {
+                if (!requests.hasNext())
+                    break;
+                chunk.add(requests.next());
+            } catch (RuntimeException e) {
+                if (!chunk.isEmpty())
+                    results.accept(requestPaymentChunk(chunk, index - chunk.size(), merchants));
+                results.accept(List.of(PaymentBatchResultDto.builder().index(index).error("Malformed payment request").build()));
+                return;
+            }
+            index++;
+            if (chunk.size() == PAYMENT_BATCH_CHUNK) {
+                results.accept(requestPaymentChunk(chunk, index - chunk.size(), merchants));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty())
+            results.accept(requestPaymentChunk(chunk, index - chunk.size(), merchants));
+    }
+
+    private List<PaymentBatchResultDto> requestPaymentChunk(List<PaymentForBankRequestDto> requests, int firstIndex, Map<List<String>, Optional<Long>> merchants) {
+        List<PaymentBatchResultDto> results = new ArrayList<>(requests.size());
+        long[] acquirerIds = new long[requests.size()];
+        int accepted = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentForBankRequestDto request = requests.get(i);
+            Optional<Long> acquirerId = merchants.computeIfAbsent(Arrays.asList(request.getMerchantId(), request.getMerchantPassword()),
+                    credentials -> Optional.ofNullable(clientService.findMerchantId(credentials.get(0), credentials.get(1))));
+            results.add(PaymentBatchResultDto.builder()
+                    .index(firstIndex + i)
+                    .merchantOrderId(request.getMerchantOrderId())
+                    .error(acquirerId.isPresent() ? null : "Invalid merchant credentials")
+                    .build());
+            acquirerIds[i] = acquirerId.orElse(-1L);
+            if (acquirerId.isPresent())
+                accepted++;
+        }
+
+        long[] paymentIds = paymentIdGenerator.nextIds(accepted);
+        PaymentWrite[] writes = new PaymentWrite[requests.size()];
+        for (int i = 0, next = 0; i < requests.size(); i++) {
+            if (acquirerIds[i] < 0)
+                continue;
+            long paymentId = paymentIds[next++];
+            PaymentForBankRequestDto request = requests.get(i);
+            long acquirerId = acquirerIds[i];
+            writes[i] = new PaymentWrite().insert(() -> requestedTransaction(paymentId, request, acquirerId));
+            results.get(i).setPayment(paymentResponse(paymentId, request));
+        }
+        List<PaymentWrite> batch = Arrays.stream(writes).filter(Objects::nonNull).collect(Collectors.toList());
+        paymentMetrics.time(Phase.COMMIT, () -> paymentWriter.writeAll(batch));
+
+        for (int i = 0; i < writes.length; i++) {
+            if (writes[i] == null)
+                continue;
+            if (writes[i].failure() != null) {
+                results.get(i).setPayment(null);
+                results.get(i).setError("Payment could not be saved");
+            } else {
+                recentPaymentWrites.record(results.get(i).getPayment().getPaymentId());
+            }
+        }
+        return results;
+    }
+
+    private Transaction requestedTransaction(long paymentId, PaymentForBankRequestDto paymentForBankRequestDto, long acquirerId) {
+        return Transaction.builder()
+                .paymentId(paymentId)
                 .transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
                 .merchantOrderId(paymentForBankRequestDto.getMerchantOrderId())
                 .merchantTimestamp(paymentForBankRequestDto.getMerchantTimestamp())
                 .amount(paymentForBankRequestDto.getAmount())
                 .description(paymentForBankRequestDto.getDescription())
-                .client(acquirer)
+                .client(clientService.getReference(acquirerId))
                 .build();
+    }
 
-        transactionRepository.save(transaction);
-
-        PaymentResponseDTO response = PaymentResponseDTO.builder()
-                .paymentId(transaction.getPaymentId())
+    private static PaymentResponseDTO paymentResponse(long paymentId, PaymentForBankRequestDto paymentForBankRequestDto) {
+        return PaymentResponseDTO.builder()
+                .paymentId(paymentId)
                 .paymentURL(paymentUrl)
-                .amount(transaction.getAmount())
-                .description(transaction.getDescription())
+                .amount(paymentForBankRequestDto.getAmount())
+                .description(paymentForBankRequestDto.getDescription())
                 .successUrl(paymentForBankRequestDto.getSuccessUrl())
                 .errorUrl(paymentForBankRequestDto.getErrorUrl())
                 .failedUrl(paymentForBankRequestDto.getFailedUrl())
                 .build();
-
-        return response;
-    }
-
-    private int generateRandomNumber() {
-        int m = (int) Math.pow(10, 10 - 1);
-        return m + new Random().nextInt(9 * m);
     }
 
     public String getPaymentURL(Transaction transaction, CardDto cardDto) {
@@ -165,62 +307,80 @@ public class TransactionService {
             return cardDto.getErrorUrl();
     }
 
-    @Scheduled(cron = "${greeting.cron}")
-    private void finishTransactions(){
-        //nisam ova cuvanja verovatno napisala kako treba zato je zakomentarisano
-        Client acquirer = clientService.findByPan(panAcquirer);//prodji kroz sve klijente i sve njihove rezervacije
-        for (Reservation reservation: reservationService.getAllWithClients()) {
-            double newAmount = reservation.getClient().getAccount().getAmount() - reservation.getAmount();//smanji novac kupcu
-            Account clientAccount = reservation.getClient().getAccount();
-            clientAccount.setAmount(newAmount);
-            accountRepository.save(clientAccount);
-            double newAmountForAcquirer = acquirer.getAccount().getAmount() + reservation.getAmount(); //povecaj novac prodavcu
-            Account acquirerAccount = acquirer.getAccount();
-            acquirerAccount.setAmount(newAmountForAcquirer);
-            accountRepository.save(acquirerAccount);
-            reservation.setClient(null);
-            reservationService.save(reservation);
-            reservationService.delete(reservation);//izbrsi rezervaciju
-        }
-        //nije promenjena transakcija u success
-    }
-
     //pcc korak
     public Object paymentPCCRequest(CardDto cardDto){
         CardPaymentRequestDto paymentRequest = CardPaymentRequestDto.builder()
-                .acquirerOrderId(generateRandomNumber())
+                .acquirerOrderId(paymentIdGenerator.nextId())
                 .acquirerTimestamp(LocalDateTime.now())
                 .cardHolderName(cardDto.getCardHolderName())
-                .amount(Double. parseDouble(cardDto.getAmount()))
+                .amount(cardDto.getAmount())
                 .dateExpiration(cardDto.getDateExpiration())
                 .pan(cardDto.getPan())
                 .securityCode(cardDto.getSecurityCode())
                 .panAcquirer(panAcquirer)
-                .paymentId(Integer.parseInt(cardDto.getPaymentId()))
+                .paymentId(Long.parseLong(cardDto.getPaymentId()))
                 .description(cardDto.getDescription())
                 .build();
         return paymentRequest;
     }
 
-    //kad od pcca stigne transakcija sa banke 2, ovde se kreira
-    public Transaction transferMoneyToBank(TransactionPCCResponseDto transactionRequest){
-        //OVDE TREBA DODATI PROVERU TRANSAKCIJE
+    //sa replike, osim placanja koje je ova instanca upravo upisala ili promenila
+    @Transactional(readOnly = true)
+    public TransactionDto findPayment(long paymentId) {
+        if (recentPaymentWrites.contains(paymentId))
+            ReadRouting.usePrimary();
+        Transaction transaction = transactionRepository.findFirstByPaymentIdIncludingArchive(paymentId);
+        if (transaction == null)
+            return null;
+        return TransactionDto.builder()
+                .transactionStatus(transaction.getTransactionStatus())
+                .merchantOrderId(transaction.getMerchantOrderId())
+                .acquirerOrderId(transaction.getAcquirerOrderId())
+                .acquirerTimestamp(transaction.getAcquirerTimestamp())
+                .paymentId(transaction.getPaymentId())
+                .amount(transaction.getAmount())
+                .description(transaction.getDescription())
+                .build();
+    }
+
+    //kad od pcca stigne transakcija sa banke 2, ovde se kreira. Ponovljen poziv (isti paymentId i issuerOrderId)
+    //se odbija bez upisa, a status se menja samo unapred pa poziv koji zakasni ne vraca placanje u raniji status
+    public PccCallbackOutcome transferMoneyToBank(TransactionPCCResponseDto transactionRequest){
+        long paymentId = transactionRequest.getPaymentId();
+        int issuerOrderId = transactionRequest.getIssuerOrderId();
+        if (pccCallbackDeduplicator.isDuplicate(paymentId, issuerOrderId))
+            return paymentMetrics.callback(PccCallbackOutcome.DUPLICATE);
+
+        PccCallbackOutcome outcome = transactionTemplate.execute(status -> {
+            Transaction transaction = transactionRepository.findFirstByPaymentIdOrderById(paymentId);
+            if (transaction == null)
+                return PccCallbackOutcome.UNKNOWN_PAYMENT;
+            if (!pccCallbackDeduplicator.record(paymentId, issuerOrderId, transactionRequest.getTransactionStatus()))
+                return PccCallbackOutcome.DUPLICATE;
+            TransactionStatus current = transaction.getTransactionStatus();
+            if (current != null && !current.canBeFollowedBy(transactionRequest.getTransactionStatus()))
+                return PccCallbackOutcome.STALE;
 
-        Transaction transaction = transactionRepository.findByPaymentId(transactionRequest.getPaymentId());
-        if(transaction != null) {
             transaction.setAcquirerOrderId(transactionRequest.getAcquirerOrderId());
             transaction.setAcquirerTimestamp(transactionRequest.getAcquirerTimestamp());
-           //setuj klijenta
-            transaction.setClient(clientService.findByPan(transactionRequest.getAcquirerPan()));
-            transaction.setIssuerOrderId(transactionRequest.getIssuerOrderId());
+            //setuj klijenta
+            ClientSnapshot acquirer = transactionRequest.getAcquirerPan() == null ? null : clientService.findByPan(transactionRequest.getAcquirerPan());
+            transaction.setClient(acquirer == null ? null : clientService.getReference(acquirer.getId()));
+            transaction.setIssuerOrderId(issuerOrderId);
             transaction.setIssuerTimestamp(transactionRequest.getIssuerOrderTimestamp());
             transaction.setMerchantOrderId(transactionRequest.getMerchantOrderId());
             transaction.setMerchantTimestamp(LocalDateTime.now()); //ovo ni ne treba
             transaction.setTransactionStatus(transactionRequest.getTransactionStatus());
             transaction.setAmount(transactionRequest.getAmount());
+            //prebacivanje sredstava, PSP dobija poruku preko outbox-a posle commit-a
+            notifyPSP(transaction);
+            paymentMetrics.outcome(transaction.getTransactionStatus());
+            return PccCallbackOutcome.APPLIED;
+        });
+        if (outcome == PccCallbackOutcome.APPLIED) {
+            recentPaymentWrites.record(paymentId);
+            paymentJournal.append(JournalRecord.status(paymentId, transactionRequest.getTransactionStatus()));
         }
-        //prebacivanje sredstava
-       transactionRepository.saveAndFlush(transaction);
-        return transaction;
+        return paymentMetrics.callback(outcome);
     }
 }
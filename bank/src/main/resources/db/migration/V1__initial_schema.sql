@@ -0,0 +1,64 @@
+-- sema prve verzije banke, kako ju je napravio ddl-auto=update. Postojeca baza bez flyway_schema_history se
+-- oznacava kao verzija 1 (spring.flyway.baseline-on-migrate), pa ova skripta radi samo nad praznom bazom.
+-- svaka sledeca migracija mora da radi i nad bazom koju je vec menjao ddl-auto=update (IF NOT EXISTS)
+
+CREATE SEQUENCE hibernate_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE account (
+    id int8 NOT NULL,
+    account_number varchar(255),
+    amount float8 NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE card (
+    id int8 NOT NULL,
+    card_holder_name varchar(255),
+    date_expiration varchar(255),
+    pan varchar(255),
+    security_code varchar(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE client (
+    id int8 NOT NULL,
+    merchant_id varchar(255),
+    merchant_password varchar(255),
+    name varchar(255),
+    surname varchar(255),
+    account_id int8,
+    card_id int8,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE reservation (
+    id int8 NOT NULL,
+    acquirer_account_number varchar(255),
+    amount float8 NOT NULL,
+    description varchar(255),
+    client_id int8,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE transaction (
+    id int8 NOT NULL,
+    acquirer_order_id int4 NOT NULL,
+    acquirer_timestamp timestamp,
+    amount float8 NOT NULL,
+    description varchar(255),
+    issuer_order_id int4 NOT NULL,
+    issuer_timestamp timestamp,
+    merchant_order_id int4 NOT NULL,
+    merchant_timestamp timestamp,
+    payment_id int4 NOT NULL,
+    transaction_status int4,
+    client_id int8,
+    PRIMARY KEY (id)
+);
+
+ALTER TABLE client ADD CONSTRAINT client_account_uk UNIQUE (account_id);
+ALTER TABLE client ADD CONSTRAINT client_card_uk UNIQUE (card_id);
+ALTER TABLE client ADD CONSTRAINT client_account_fk FOREIGN KEY (account_id) REFERENCES account;
+ALTER TABLE client ADD CONSTRAINT client_card_fk FOREIGN KEY (card_id) REFERENCES card;
+ALTER TABLE reservation ADD CONSTRAINT reservation_client_fk FOREIGN KEY (client_id) REFERENCES client;
+ALTER TABLE transaction ADD CONSTRAINT transaction_client_fk FOREIGN KEY (client_id) REFERENCES client;
@@ -0,0 +1,84 @@
+-- id-jevi placanja su bigint (10+ cifara), ddl-auto=update ne menja tip postojece kolone
+ALTER TABLE transaction ALTER COLUMN payment_id SET DATA TYPE bigint;
+ALTER TABLE transaction ALTER COLUMN acquirer_order_id SET DATA TYPE bigint;
+CREATE INDEX IF NOT EXISTS transaction_payment_id_idx ON transaction (payment_id);
+CREATE INDEX IF NOT EXISTS transaction_merchant_order_id_idx ON transaction (merchant_order_id);
+CREATE INDEX IF NOT EXISTS transaction_acquirer_order_id_idx ON transaction (acquirer_order_id);
+-- transakcija prodavca i kupca dele paymentId
+CREATE UNIQUE INDEX IF NOT EXISTS transaction_payment_id_client_uk ON transaction (payment_id, client_id);
+
+ALTER TABLE reservation ADD COLUMN IF NOT EXISTS created_at timestamp;
+
+-- tabele koje su dodate posle prve verzije; iznosi su odmah u parama
+CREATE TABLE IF NOT EXISTS outbound_message (
+    id int8 NOT NULL,
+    destination varchar(255),
+    idempotency_key varchar(255),
+    payment_id int8 NOT NULL,
+    payload text,
+    status varchar(255),
+    attempts int4 NOT NULL,
+    next_attempt_at timestamp,
+    created_at timestamp,
+    PRIMARY KEY (id)
+);
+ALTER TABLE outbound_message ALTER COLUMN payment_id SET DATA TYPE bigint;
+CREATE UNIQUE INDEX IF NOT EXISTS outbound_message_idempotency_key_uk ON outbound_message (idempotency_key);
+CREATE INDEX IF NOT EXISTS outbound_message_status_next_attempt_at_idx ON outbound_message (status, next_attempt_at);
+
+CREATE TABLE IF NOT EXISTS pcc_callback (
+    payment_id int8 NOT NULL,
+    issuer_order_id int4 NOT NULL,
+    transaction_status int4,
+    received_at timestamp,
+    PRIMARY KEY (payment_id, issuer_order_id)
+);
+CREATE INDEX IF NOT EXISTS pcc_callback_received_at_idx ON pcc_callback (received_at);
+
+CREATE TABLE IF NOT EXISTS bin_range (
+    id int8 NOT NULL,
+    low_prefix varchar(255) NOT NULL,
+    high_prefix varchar(255) NOT NULL,
+    issuer varchar(255) NOT NULL,
+    scheme int4,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+    id int8 NOT NULL,
+    beat_at int8 NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS settlement_run (
+    id int8 NOT NULL,
+    high_water_mark int8 NOT NULL,
+    settled_count int8 NOT NULL,
+    started_at timestamp,
+    finished_at timestamp,
+    node varchar(255),
+    PRIMARY KEY (id)
+);
+ALTER TABLE settlement_run ADD COLUMN IF NOT EXISTS node varchar(255);
+
+CREATE TABLE IF NOT EXISTS settlement_credit (
+    id int8 GENERATED BY DEFAULT AS IDENTITY,
+    run_id int8 NOT NULL,
+    account_number varchar(255),
+    amount int8 NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE IF NOT EXISTS settlement_lease (
+    shard int4 NOT NULL,
+    node varchar(255),
+    expires_at timestamp,
+    token int8 NOT NULL,
+    PRIMARY KEY (shard)
+);
+
+CREATE TABLE IF NOT EXISTS settlement_node (
+    node_id varchar(255) NOT NULL,
+    expires_at timestamp,
+    PRIMARY KEY (node_id)
+);
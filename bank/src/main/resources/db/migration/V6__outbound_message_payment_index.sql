@@ -0,0 +1,2 @@
+-- OutboxRelay pre slanja statusa PSP-u trazi starije neposlate statuse istog placanja
+CREATE INDEX IF NOT EXISTS outbound_message_payment_id_id_idx ON outbound_message (payment_id, id);
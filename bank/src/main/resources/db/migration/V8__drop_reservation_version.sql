@@ -0,0 +1,3 @@
+-- rezervacija se upisuje jednom i brise obracunom, nikad se ne menja, pa joj verzija za optimisticko zakljucavanje
+-- ne treba (V4 ju je dodao uz verziju racuna)
+ALTER TABLE reservation DROP COLUMN IF EXISTS version;
@@ -0,0 +1,114 @@
+package com.agency.bank.archive;
+
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//zavrsene transakcije iz hladnih meseci se prebacuju u segmente (dva segmenta, vise blokova)
+//i i dalje se nalaze po paymentId, i posle ponovnog otvaranja arhive
+@SpringBootTest(properties = "bank.archive.segment-rows=5000")
+class TransactionArchiveTests {
+
+	private static final long FIRST_PAYMENT_ID = 7_000_000_000L;
+	private static final int COLD_PAYMENTS = 9000;
+	private static final Path DIRECTORY = directory();
+
+	@Autowired
+	private TransactionArchiver transactionArchiver;
+
+	@Autowired
+	private TransactionArchive transactionArchive;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@DynamicPropertySource
+	static void archiveDirectory(DynamicPropertyRegistry registry) {
+		registry.add("bank.archive.directory", DIRECTORY::toString);
+	}
+
+	@Test
+	void archivesColdFinishedTransactionsAndFindsThemByPaymentId() throws IOException {
+		LocalDateTime cold = YearMonth.now().minusMonths(5).atDay(3).atTime(10, 15, 30);
+		List<Transaction> transactions = new ArrayList<>();
+		for (int i = 0; i < COLD_PAYMENTS; i++)
+			transactions.add(transaction(FIRST_PAYMENT_ID + i, i % 10 == 0 ? TransactionStatus.FAILED : TransactionStatus.SUCCESS, cold.plusMinutes(i)));
+		transactionRepository.saveAll(transactions);
+		long stuck = FIRST_PAYMENT_ID + COLD_PAYMENTS;
+		long recent = stuck + 1;
+		transactionRepository.save(transaction(stuck, TransactionStatus.IN_PROGRESS, cold));
+		transactionRepository.save(transaction(recent, TransactionStatus.SUCCESS, LocalDateTime.now().withNano(0)));
+
+		assertEquals(COLD_PAYMENTS, transactionArchiver.archive());
+		assertEquals(2, transactionArchive.segmentCount());
+		assertEquals(0, transactionArchiver.archive());
+
+		long paymentId = FIRST_PAYMENT_ID + 4321;
+		assertNull(transactionRepository.findFirstByPaymentIdOrderById(paymentId));
+		assertArchived(transactions.get(4321), transactionRepository.findFirstByPaymentIdIncludingArchive(paymentId));
+		assertEquals(TransactionStatus.FAILED, transactionRepository.findFirstByPaymentIdIncludingArchive(FIRST_PAYMENT_ID + 10).getTransactionStatus());
+		assertNotNull(transactionRepository.findFirstByPaymentIdOrderById(stuck));
+		assertNotNull(transactionRepository.findFirstByPaymentIdOrderById(recent));
+		assertNull(transactionRepository.findFirstByPaymentIdIncludingArchive(FIRST_PAYMENT_ID - 1));
+
+		TransactionArchive reopened = new TransactionArchive(DIRECTORY.toString());
+		reopened.open();
+		try {
+			assertEquals(COLD_PAYMENTS, reopened.rows());
+			assertArchived(transactions.get(COLD_PAYMENTS - 1), reopened.findFirst(FIRST_PAYMENT_ID + COLD_PAYMENTS - 1));
+		} finally {
+			reopened.close();
+		}
+	}
+
+	private static Transaction transaction(long paymentId, TransactionStatus status, LocalDateTime merchantTimestamp) {
+		return Transaction.builder()
+				.paymentId(paymentId)
+				.transactionStatus(status)
+				.merchantOrderId((int) (paymentId % 100_000))
+				.merchantTimestamp(merchantTimestamp)
+				.acquirerOrderId(paymentId * 3)
+				.amount(paymentId % 1_000_000)
+				.description(paymentId % 7 == 0 ? null : "Knjiga " + paymentId)
+				.build();
+	}
+
+	private static void assertArchived(Transaction expected, Transaction archived) {
+		assertNotNull(archived);
+		assertEquals(expected.getId(), archived.getId());
+		assertEquals(expected.getPaymentId(), archived.getPaymentId());
+		assertEquals(expected.getTransactionStatus(), archived.getTransactionStatus());
+		assertEquals(expected.getMerchantOrderId(), archived.getMerchantOrderId());
+		assertEquals(expected.getMerchantTimestamp(), archived.getMerchantTimestamp());
+		assertEquals(expected.getAcquirerOrderId(), archived.getAcquirerOrderId());
+		assertNull(archived.getAcquirerTimestamp());
+		assertEquals(expected.getAmount(), archived.getAmount());
+		assertEquals(expected.getDescription(), archived.getDescription());
+	}
+
+	private static Path directory() {
+		try {
+			return Files.createTempDirectory("transaction-archive");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.agency.bank.cache;
+
+import com.agency.bank.model.Account;
+import com.agency.bank.model.Card;
+import com.agency.bank.model.Client;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.CardRepository;
+import com.agency.bank.repository.ClientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class PaymentLookupCacheTests {
+
+	@Autowired
+	private PaymentLookupCache paymentLookupCache;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@Autowired
+	private CardRepository cardRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Test
+	void cardIsFoundByPanAndCheckedAgainstSecurityCodeAndExpiration() {
+		Client client = client("1112 5800 0000 0101", "123");
+
+		CardSnapshot card = paymentLookupCache.findCard("1112 5800 0000 0101");
+
+		assertNotNull(card);
+		assertEquals(client.getCard().getId(), card.getId());
+		assertTrue(card.matches("123", "12/30"));
+		assertFalse(card.matches("124", "12/30"));
+		assertFalse(card.matches("123", "11/30"));
+		assertSame(card, paymentLookupCache.findCard("1112 5800 0000 0101"));
+		assertNull(paymentLookupCache.findCard("1112 5800 0000 0199"));
+		assertEquals(client.getId(), paymentLookupCache.findClient("1112 5800 0000 0101").getId());
+	}
+
+	//izmena mimo JPA se ne vidi do isteka ttl, izmena kroz repozitorijum prazni kes odmah
+	@Test
+	void cardChangedThroughJpaIsReloaded() {
+		Client client = client("1112 5800 0000 0202", "123");
+		assertTrue(paymentLookupCache.findCard("1112 5800 0000 0202").matches("123", "12/30"));
+
+		jdbcTemplate.update("update card set security_code = '456' where id = ?", client.getCard().getId());
+		assertTrue(paymentLookupCache.findCard("1112 5800 0000 0202").matches("123", "12/30"));
+
+		Card card = cardRepository.findById(client.getCard().getId()).orElseThrow();
+		card.setSecurityCode("789");
+		cardRepository.save(card);
+
+		CardSnapshot reloaded = paymentLookupCache.findCard("1112 5800 0000 0202");
+		assertFalse(reloaded.matches("123", "12/30"));
+		assertTrue(reloaded.matches("789", "12/30"));
+	}
+
+	//u kesu nije hash koda koji bi se pogodio isprobavanjem 1000 vrednosti, nego HMAC sa kljucem instance
+	@Test
+	void securityCodeIsKeptOnlyAsKeyedMac() throws NoSuchAlgorithmException {
+		client("1112 5800 0000 0303", "123");
+
+		byte[] kept = paymentLookupCache.findCard("1112 5800 0000 0303").getSecurityCodeMac();
+
+		byte[] sha256 = MessageDigest.getInstance("SHA-256").digest("123".getBytes(StandardCharsets.UTF_8));
+		assertFalse(MessageDigest.isEqual(sha256, kept));
+		assertFalse(MessageDigest.isEqual(new SecurityCodeMac().of("123"), kept));
+	}
+
+	//drugo placanje cita karticu dok izmena jos nije upisana: kes se prazni tek posle commit-a, pa ne ostaje stari kod
+	@Test
+	void cacheIsEmptiedAfterTheChangeIsCommitted() {
+		Client client = client("1112 5800 0000 0404", "123");
+
+		transactionTemplate.executeWithoutResult(status -> {
+			Card card = cardRepository.findById(client.getCard().getId()).orElseThrow();
+			card.setSecurityCode("789");
+			cardRepository.saveAndFlush(card);
+			CardSnapshot beforeCommit = CompletableFuture.supplyAsync(() -> paymentLookupCache.findCard("1112 5800 0000 0404")).join();
+			assertTrue(beforeCommit.matches("123", "12/30"));
+		});
+
+		assertTrue(paymentLookupCache.findCard("1112 5800 0000 0404").matches("789", "12/30"));
+	}
+
+	private Client client(String pan, String securityCode) {
+		Client client = new Client();
+		client.setName("Kupac " + pan);
+		client.setAccount(accountRepository.save(new Account(0, "LOOKUP-" + pan, 1000, 0, 0)));
+		client.setCard(new Card(0, pan, securityCode, "Kupac", "12/30"));
+		return clientRepository.save(client);
+	}
+}
@@ -0,0 +1,94 @@
+package com.agency.bank.config;
+
+import com.agency.bank.dto.PaymentForBankRequestDto;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.ClientRepository;
+import com.agency.bank.repository.TransactionRepository;
+import com.agency.bank.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//dve H2 baze: replika je kopija primarne napravljena u testu, posle kopije se redovi menjaju samo na replici
+//pa se po opisu placanja vidi koja baza je odgovorila. Kasnjenje se meri samo kad ga test pozove
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:routing-primary;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_ON_EXIT=FALSE",
+		"bank.datasource.replica-urls=jdbc:h2:mem:routing-replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+		"bank.datasource.replica-max-lag=30s",
+		"bank.datasource.replica-check-interval=1h"})
+@DirtiesContext
+class ReadReplicaRoutingTests {
+
+	private static final long OLD_PAYMENT_ID = 6_000_000_000L;
+
+	@Autowired
+	private TransactionService transactionService;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@Autowired
+	private ReadWriteRoutingDataSource readWriteRoutingDataSource;
+
+	@Autowired
+	private ReplicaLagMonitor replicaLagMonitor;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	void readsGoToAFreshReplicaExceptForRecentWrites() {
+		Client merchant = new Client();
+		merchant.setName("Prodavac");
+		merchant.setMerchantId("routing-shop");
+		merchant.setMerchantPassword("secret");
+		clientRepository.save(merchant);
+		long recentPaymentId = transactionService.requestPayment(new PaymentForBankRequestDto("routing-shop", "secret", 1000,
+				"primary", 1, LocalDateTime.now(), null, null, null)).getPaymentId();
+		transactionRepository.save(Transaction.builder()
+				.paymentId(OLD_PAYMENT_ID)
+				.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+				.merchantTimestamp(LocalDateTime.now())
+				.amount(1000)
+				.description("primary")
+				.build());
+
+		replicaLagMonitor.check();
+		JdbcTemplate replica = replicate();
+		replica.update("update transaction set description = 'replica'");
+		replicaLagMonitor.check();
+
+		assertEquals("replica", transactionService.findPayment(OLD_PAYMENT_ID).getDescription());
+		assertEquals("primary", transactionService.findPayment(recentPaymentId).getDescription());
+		assertTrue(meterRegistry.get("datasource.reads").tag("target", "replica").functionCounter().count() > 0);
+
+		//replika koja kasni vise od replica-max-lag se ne koristi
+		replica.update("update replica_heartbeat set beat_at = beat_at - 3600000");
+		replicaLagMonitor.check();
+		assertEquals("primary", transactionService.findPayment(OLD_PAYMENT_ID).getDescription());
+	}
+
+	private JdbcTemplate replicate() {
+		jdbcTemplate.execute("script to 'target/routing-replica.sql'");
+		JdbcTemplate replica = new JdbcTemplate(readWriteRoutingDataSource.replicas().get(0));
+		replica.execute("drop all objects");
+		replica.execute("runscript from 'target/routing-replica.sql'");
+		return replica;
+	}
+}
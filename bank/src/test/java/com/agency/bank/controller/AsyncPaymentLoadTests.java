@@ -0,0 +1,96 @@
+package com.agency.bank.controller;
+
+import com.agency.bank.config.PaymentExecutor;
+import com.agency.bank.service.ClientService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+//putanja virtual moda (VirtualTransactionController, servlet async) i na Javi pre 21: PaymentExecutor predaje placanja
+//pool-u platform thread-ova bez ogranicenja umesto virtuelnim thread-ovima. Tomcat je ogranicen na 10 thread-ova,
+//a broj placanja u obradi mora da predje to ogranicenje, kao u VirtualThreadLoadTests
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"bank.execution-mode=virtual",
+		"server.tomcat.threads.max=" + AsyncPaymentLoadTests.TOMCAT_THREADS
+})
+class AsyncPaymentLoadTests {
+
+	static final int TOMCAT_THREADS = 10;
+	private static final int REQUESTS = 200;
+	private static final long LOOKUP_MILLIS = 200;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private final ExecutorService workers = Executors.newCachedThreadPool();
+
+	@LocalServerPort
+	private int port;
+
+	@MockBean
+	private ClientService clientService;
+
+	@MockBean
+	private PaymentExecutor paymentExecutor;
+
+	@BeforeEach
+	void slowMerchantLookupOnUnboundedWorkers() {
+		when(paymentExecutor.submit(any())).thenAnswer(invocation ->
+				CompletableFuture.supplyAsync(invocation.<Supplier<?>>getArgument(0), workers));
+		when(clientService.findMerchantId(any(), any())).thenAnswer(invocation -> {
+			peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(LOOKUP_MILLIS);
+				return null;
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		});
+	}
+
+	@AfterEach
+	void stopWorkers() {
+		workers.shutdownNow();
+	}
+
+	@Test
+	void concurrentPaymentsScalePastTomcatThreadCap() {
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		String body = "{\"merchantId\":\"load\",\"merchantPassword\":\"load\",\"amount\":10,\"merchantOrderId\":1}";
+
+		long start = System.nanoTime();
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(REQUESTS);
+		for (int i = 0; i < REQUESTS; i++) {
+			responses.add(client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/payment"))
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(body))
+					.build(), HttpResponse.BodyHandlers.ofString()));
+		}
+		for (CompletableFuture<HttpResponse<String>> response : responses)
+			assertEquals(200, response.join().statusCode());
+		long millis = (System.nanoTime() - start) / 1_000_000;
+
+		assertTrue(peakInFlight.get() > TOMCAT_THREADS * 5, "peak in-flight " + peakInFlight.get());
+		//na Tomcat thread-ovima bi provere trajale bar REQUESTS / TOMCAT_THREADS * LOOKUP_MILLIS, ovde bar upola krace
+		assertTrue(millis < REQUESTS / TOMCAT_THREADS * LOOKUP_MILLIS / 2, "all payments answered in " + millis + " ms");
+	}
+}
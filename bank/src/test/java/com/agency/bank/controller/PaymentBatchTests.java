@@ -0,0 +1,118 @@
+package com.agency.bank.controller;
+
+import com.agency.bank.dto.PaymentBatchResultDto;
+import com.agency.bank.model.Client;
+import com.agency.bank.repository.ClientRepository;
+import com.agency.bank.repository.TransactionRepository;
+import com.agency.bank.service.ClientService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+//batch prodavca preko HTTP-a: vise grupa upisa, pogresni kredencijali i neispravna stavka se vracaju po stavci
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaymentBatchTests {
+
+	private static final int ORDERS = 1200;
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@Autowired
+	private ClientService clientService;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@BeforeEach
+	void merchant() {
+		if (clientService.findMerchantId("marketplace", "secret") != null)
+			return;
+		Client merchant = new Client();
+		merchant.setName("Marketplace");
+		merchant.setMerchantId("marketplace");
+		merchant.setMerchantPassword("secret");
+		clientRepository.save(merchant);
+	}
+
+	@Test
+	void ndjsonOrdersAreAllAnsweredInOrder() throws Exception {
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < ORDERS; i++)
+			body.append(order(i, i == 7 ? "wrong" : "secret")).append('\n');
+		long before = transactionRepository.count();
+
+		List<PaymentBatchResultDto> results = post("application/x-ndjson", body.toString());
+
+		assertEquals(ORDERS, results.size());
+		Set<Long> paymentIds = new HashSet<>();
+		for (int i = 0; i < ORDERS; i++) {
+			PaymentBatchResultDto result = results.get(i);
+			assertEquals(i, result.getIndex());
+			assertEquals(i, result.getMerchantOrderId());
+			if (i == 7) {
+				assertNull(result.getPayment());
+				assertEquals("Invalid merchant credentials", result.getError());
+			} else {
+				assertNull(result.getError());
+				assertEquals(1250, result.getPayment().getAmount());
+				paymentIds.add(result.getPayment().getPaymentId());
+			}
+		}
+		assertEquals(ORDERS - 1, paymentIds.size());
+		assertEquals(before + ORDERS - 1, transactionRepository.count());
+		assertNotNull(transactionRepository.findFirstByPaymentIdOrderById(paymentIds.iterator().next()));
+	}
+
+	@Test
+	void malformedItemStopsTheJsonArray() throws Exception {
+		String body = "[" + order(0, "secret") + "," + order(1, "secret") + ",{\"amount\":\"not a number\"}," + order(3, "secret") + "]";
+
+		List<PaymentBatchResultDto> results = post("application/json", body);
+
+		assertEquals(3, results.size());
+		assertNotNull(results.get(0).getPayment());
+		assertNotNull(results.get(1).getPayment());
+		assertEquals(2, results.get(2).getIndex());
+		assertEquals("Malformed payment request", results.get(2).getError());
+	}
+
+	private static String order(int merchantOrderId, String password) {
+		return "{\"merchantId\":\"marketplace\",\"merchantPassword\":\"" + password + "\",\"amount\":12.50,\"merchantOrderId\":" + merchantOrderId + "}";
+	}
+
+	private List<PaymentBatchResultDto> post(String contentType, String body) throws Exception {
+		HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/payment/batch"))
+				.header("Content-Type", contentType)
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, response.statusCode());
+		assertEquals("application/x-ndjson", response.headers().firstValue("Content-Type").orElse(""));
+		List<PaymentBatchResultDto> results = new ArrayList<>();
+		for (String line : response.body().split("\n"))
+			results.add(objectMapper.readValue(line, PaymentBatchResultDto.class));
+		return results;
+	}
+}
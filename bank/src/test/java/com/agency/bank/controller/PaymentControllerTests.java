@@ -0,0 +1,49 @@
+package com.agency.bank.controller;
+
+import com.agency.bank.repository.OutboundMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//placanje karticom za paymentId koji banka nije izdala: 404 kao GET /payment/{paymentId}, bez upisa i poruka PSP-u/PCC-u
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaymentControllerTests {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private OutboundMessageRepository outboundMessageRepository;
+
+	@Test
+	void cardPaymentForUnknownPaymentIdIsNotFound() throws Exception {
+		long messages = outboundMessageRepository.count();
+
+		assertEquals(404, payWithCard("7999999999"));
+		assertEquals(404, payWithCard("not a payment"));
+		assertEquals(404, get("/payment/7999999999"));
+		assertEquals(messages, outboundMessageRepository.count());
+	}
+
+	private int payWithCard(String paymentId) throws Exception {
+		String body = "{\"paymentId\":\"" + paymentId + "\",\"pan\":\"1112 5800 0000 0404\",\"securityCode\":\"123\"," +
+				"\"cardHolderName\":\"Kupac\",\"dateExpiration\":\"12/30\",\"description\":\"nepoznato\",\"amount\":10}";
+		return HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/payment/withCard"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body))
+				.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+
+	private int get(String path) throws Exception {
+		return HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build(),
+				HttpResponse.BodyHandlers.discarding()).statusCode();
+	}
+}
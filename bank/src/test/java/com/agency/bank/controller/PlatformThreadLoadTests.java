@@ -0,0 +1,101 @@
+package com.agency.bank.controller;
+
+import com.agency.bank.config.PaymentExecutor;
+import com.agency.bank.service.ClientService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIf;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+//podrazumevani rezim (i jedini na Javi pre 21): placanje se obradjuje na Tomcat thread-u, pa je broj placanja
+//u obradi ogranicen brojem Tomcat thread-ova, a sva placanja ipak dobijaju odgovor
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"bank.execution-mode=platform",
+		"server.tomcat.threads.max=" + PlatformThreadLoadTests.TOMCAT_THREADS
+})
+class PlatformThreadLoadTests {
+
+	static final int TOMCAT_THREADS = 10;
+	private static final int REQUESTS = 50;
+	private static final long LOOKUP_MILLIS = 200;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+
+	@LocalServerPort
+	private int port;
+
+	@MockBean
+	private ClientService clientService;
+
+	static boolean virtualThreadsAvailable() {
+		return Runtime.version().feature() >= 21;
+	}
+
+	@BeforeEach
+	void slowMerchantLookup() {
+		when(clientService.findMerchantId(any(), any())).thenAnswer(invocation -> {
+			peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(LOOKUP_MILLIS);
+				return null;
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		});
+	}
+
+	@Test
+	void concurrentPaymentsAreCappedByTomcatThreads() {
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		String body = "{\"merchantId\":\"load\",\"merchantPassword\":\"load\",\"amount\":10,\"merchantOrderId\":1}";
+
+		long start = System.nanoTime();
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(REQUESTS);
+		for (int i = 0; i < REQUESTS; i++) {
+			responses.add(client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/payment"))
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(body))
+					.build(), HttpResponse.BodyHandlers.ofString()));
+		}
+		for (CompletableFuture<HttpResponse<String>> response : responses)
+			assertEquals(200, response.join().statusCode());
+		long millis = (System.nanoTime() - start) / 1_000_000;
+
+		assertTrue(peakInFlight.get() <= TOMCAT_THREADS, "peak in-flight " + peakInFlight.get());
+		//najvise TOMCAT_THREADS provera u isto vreme, pa sve traju bar REQUESTS / TOMCAT_THREADS provera jedna za drugom
+		assertTrue(millis >= REQUESTS / TOMCAT_THREADS * LOOKUP_MILLIS, "all payments answered in " + millis + " ms");
+	}
+
+	//virtual rezim bez virtuelnih thread-ova ne prelazi tiho na Tomcat thread-ove, nego ne pokrece banku
+	@Test
+	@DisabledIf("virtualThreadsAvailable")
+	void virtualModeFailsBeforeJava21() {
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> new PaymentExecutor("virtual"));
+		assertTrue(e.getMessage().contains("Java 21"), e.getMessage());
+	}
+
+	//nepoznat rezim ne pokrece banku bez kontrolera placanja
+	@Test
+	void unknownModeFails() {
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> new PaymentExecutor("virtul"));
+		assertTrue(e.getMessage().contains("platform or virtual"), e.getMessage());
+	}
+}
@@ -0,0 +1,84 @@
+package com.agency.bank.controller;
+
+import com.agency.bank.service.ClientService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+//Tomcat je ogranicen na 10 thread-ova, a provera prodavca na /payment blokira 500 ms (kao spor JDBC);
+//sa virtuelnim thread-ovima broj placanja u obradi mora da predje to ogranicenje
+@EnabledIf("virtualThreadsAvailable")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"bank.execution-mode=virtual",
+		"server.tomcat.threads.max=" + VirtualThreadLoadTests.TOMCAT_THREADS
+})
+class VirtualThreadLoadTests {
+
+	static final int TOMCAT_THREADS = 10;
+	private static final int REQUESTS = 500;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+
+	@LocalServerPort
+	private int port;
+
+	@MockBean
+	private ClientService clientService;
+
+	static boolean virtualThreadsAvailable() {
+		return Runtime.version().feature() >= 21;
+	}
+
+	@BeforeEach
+	void slowMerchantLookup() {
+		when(clientService.findMerchantId(any(), any())).thenAnswer(invocation -> {
+			peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(500);
+				return null;
+			} finally {
+				inFlight.decrementAndGet();
+			}
+		});
+	}
+
+	@Test
+	void concurrentPaymentsScalePastTomcatThreadCap() {
+		HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		String body = "{\"merchantId\":\"load\",\"merchantPassword\":\"load\",\"amount\":10,\"merchantOrderId\":1}";
+
+		long start = System.nanoTime();
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(REQUESTS);
+		for (int i = 0; i < REQUESTS; i++) {
+			responses.add(client.sendAsync(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/payment"))
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofString(body))
+					.build(), HttpResponse.BodyHandlers.ofString()));
+		}
+		for (CompletableFuture<HttpResponse<String>> response : responses)
+			assertEquals(200, response.join().statusCode());
+		long millis = (System.nanoTime() - start) / 1_000_000;
+
+		assertTrue(peakInFlight.get() > TOMCAT_THREADS * 5, "peak in-flight " + peakInFlight.get());
+		//na Tomcat thread-ovima bi provere trajale bar REQUESTS / TOMCAT_THREADS * 500 ms, ovde bar upola krace
+		assertTrue(millis < REQUESTS / TOMCAT_THREADS * 500 / 2, "all payments answered in " + millis + " ms");
+	}
+}
@@ -0,0 +1,119 @@
+package com.agency.bank.journal;
+
+import com.agency.bank.enums.TransactionStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PaymentJournalTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void recordsRollOverSegmentsAndAreReadFromAnySequence() throws IOException {
+		PaymentJournal journal = open(Duration.ofDays(30));
+		for (int i = 1; i <= 100; i++)
+			journal.append(JournalRecord.status(i, TransactionStatus.PAYMENT_REQUESTED));
+		journal.close();
+
+		assertTrue(JournalFormat.segments(directory).size() > 1);
+		List<JournalRecord> all = read(0);
+		assertEquals(101, all.size());
+		assertEquals(JournalRecord.Type.SHUTDOWN, all.get(100).getType());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i + 1, all.get(i).getSequence());
+			assertEquals(i + 1, all.get(i).getPaymentId());
+			assertEquals(TransactionStatus.PAYMENT_REQUESTED, all.get(i).getStatus());
+		}
+		assertEquals(50, read(50).get(0).getSequence());
+	}
+
+	//stanje iz poslednjeg checkpoint-a i dogadjaji posle njega; racun kog nema u checkpoint-u ledger ucitava iz baze
+	@Test
+	void warmStartReplaysEventsAfterTheLatestCheckpoint() throws IOException {
+		PaymentJournal journal = open(Duration.ofDays(30));
+		journal.checkpoint(Map.of(1L, new long[]{1000, 0}, 2L, new long[]{0, 0}));
+		journal.append(List.of(JournalRecord.reserved(7, 1, 100), JournalRecord.status(7, TransactionStatus.IN_PROGRESS)));
+		journal.append(JournalRecord.reserved(8, 1, 50));
+		journal.append(List.of(JournalRecord.settled(1, 100), JournalRecord.credited(2, 100), JournalRecord.credited(3, 100)));
+		journal.close();
+
+		Map<Long, long[]> expected = new HashMap<>();
+		expected.put(1L, new long[]{900, 50});
+		expected.put(2L, new long[]{100, 0});
+		assertWarmStart(expected);
+
+		//kompakcija: nov checkpoint, segmenti pre njega se brisu (retention 0)
+		journal = open(Duration.ZERO);
+		assertTrue(journal.warmStart(balances -> {
+		}));
+		journal.compact();
+		journal.close();
+		assertEquals(JournalRecord.Type.CHECKPOINT, read(0).get(0).getType());
+		assertWarmStart(expected);
+	}
+
+	//posle pada (nema SHUTDOWN) ili sa nedovrsenim zapisom ledger se puni iz baze
+	@Test
+	void tornRecordEndsTheJournalAndDisablesWarmStart() throws IOException {
+		PaymentJournal journal = open(Duration.ofDays(30));
+		journal.checkpoint(Map.of(1L, new long[]{1000, 0}));
+		journal.append(JournalRecord.reserved(7, 1, 100));
+		journal.close();
+
+		Path segment = JournalFormat.segments(directory).get(0);
+		List<JournalRecord> before = read(0);
+		JournalRecord reserved = before.get(before.size() - 2);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			long offset = JournalFormat.HEADER_BYTES + (reserved.getSequence() - 1) * JournalFormat.RECORD_BYTES + 2 * Integer.BYTES + 3;
+			channel.write(ByteBuffer.wrap(new byte[]{0x5A}), offset);
+		}
+
+		List<JournalRecord> after = read(0);
+		assertEquals(before.size() - 2, after.size());
+		assertEquals(JournalRecord.Type.BALANCE, after.get(after.size() - 1).getType());
+		journal = open(Duration.ofDays(30));
+		assertFalse(journal.warmStart(balances -> {
+		}));
+		journal.close();
+	}
+
+	private void assertWarmStart(Map<Long, long[]> expected) throws IOException {
+		PaymentJournal journal = open(Duration.ofDays(30));
+		Map<Long, long[]> loaded = new HashMap<>();
+		assertTrue(journal.warmStart(loaded::putAll));
+		assertEquals(expected.keySet(), loaded.keySet());
+		expected.forEach((accountId, balance) -> assertArrayEquals(balance, loaded.get(accountId), "account " + accountId));
+		journal.close();
+	}
+
+	private PaymentJournal open(Duration retention) throws IOException {
+		PaymentJournal journal = new PaymentJournal(new SimpleMeterRegistry(), true, true, directory.toString(), DataSize.ofBytes(1024), retention);
+		journal.open();
+		return journal;
+	}
+
+	private List<JournalRecord> read(long fromSequence) {
+		List<JournalRecord> records = new ArrayList<>();
+		JournalReader.open(directory, fromSequence).forEachRemaining(records::add);
+		return records;
+	}
+}
@@ -0,0 +1,201 @@
+package com.agency.bank.migration;
+
+import com.agency.bank.BankApplication;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Reservation;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.ReservationRepository;
+import com.agency.bank.repository.TransactionRepository;
+import com.agency.bank.service.PaymentIdGenerator;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//migracije nad praznom bazom i nad bazom prve verzije banke (sema iz V1, napravljena bez Flyway-a i popunjena
+//pre migracije), sa istim podesavanjima Flyway-a kao application.properties
+class SchemaMigrationTests {
+
+	private String url;
+	private JdbcDataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void openDatabase() {
+		url = "jdbc:h2:mem:migration-" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+		dataSource = new JdbcDataSource();
+		dataSource.setURL(url);
+		dataSource.setUser("sa");
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@Test
+	void emptyDatabaseIsCreatedByMigrations() {
+		migrate();
+
+		assertEquals("1", jdbcTemplate.queryForObject("select min(\"version\") from flyway_schema_history where \"success\"", String.class));
+		insertTransaction(1, 5_000_000_000L);
+		assertEquals(5_000_000_000L, jdbcTemplate.queryForObject("select payment_id from transaction where id = 1", Long.class));
+	}
+
+	@Test
+	void legacyDatabaseIsBaselinedAndUpgraded() {
+		legacySchema();
+		jdbcTemplate.update("insert into transaction (id, acquirer_order_id, amount, issuer_order_id, merchant_order_id, payment_id, transaction_status) " +
+				"values (1, 7, 10.5, 0, 3, 123456, 1)");
+
+		migrate();
+
+		List<String> baseline = jdbcTemplate.queryForList("select \"type\" from flyway_schema_history where \"version\" = '1'", String.class);
+		assertEquals(List.of("BASELINE"), baseline);
+		assertEquals(123456L, jdbcTemplate.queryForObject("select payment_id from transaction where id = 1", Long.class));
+		insertTransaction(2, 5_000_000_000L);
+		assertEquals(5_000_000_000L, jdbcTemplate.queryForObject("select payment_id from transaction where id = 2", Long.class));
+	}
+
+	@Test
+	void legacyAmountsAreConvertedToMinorUnits() {
+		legacySchema();
+		jdbcTemplate.update("insert into account (id, account_number, amount) values (1, 'ACC-1', 1250.5)");
+		jdbcTemplate.update("insert into client (id, name, account_id) values (2, 'Kupac', 1)");
+		jdbcTemplate.update("insert into reservation (id, acquirer_account_number, amount, description, client_id) values (3, 'ACC-2', 0.1, 'Knjiga', 2)");
+		jdbcTemplate.update("insert into transaction (id, acquirer_order_id, amount, issuer_order_id, merchant_order_id, payment_id, transaction_status, client_id) " +
+				"values (4, 7, 19.99, 0, 3, 123456, 1, 2)");
+
+		migrate();
+
+		assertEquals(125050L, jdbcTemplate.queryForObject("select amount from account where id = 1", Long.class));
+		assertEquals(10L, jdbcTemplate.queryForObject("select amount from reservation where id = 3", Long.class));
+		assertEquals(1999L, jdbcTemplate.queryForObject("select amount from transaction where id = 4", Long.class));
+		assertEquals("bigint", jdbcTemplate.queryForObject("select lower(data_type) from information_schema.columns " +
+				"where table_name = 'account' and column_name = 'amount'", String.class));
+		assertEquals("NO", jdbcTemplate.queryForObject("select is_nullable from information_schema.columns " +
+				"where table_name = 'account' and column_name = 'amount'", String.class));
+	}
+
+	@Test
+	void reservedIsBackfilledFromOpenReservations() {
+		legacySchema();
+		jdbcTemplate.update("insert into account (id, account_number, amount) values (1, 'ACC-1', 100)");
+		jdbcTemplate.update("insert into account (id, account_number, amount) values (2, 'ACC-2', 50)");
+		jdbcTemplate.update("insert into client (id, name, account_id) values (3, 'Kupac', 1)");
+		jdbcTemplate.update("insert into client (id, name, account_id) values (4, 'Bez rezervacija', 2)");
+		jdbcTemplate.update("insert into reservation (id, acquirer_account_number, amount, description, client_id) values (5, 'ACC-9', 1.5, 'Knjiga', 3)");
+		jdbcTemplate.update("insert into reservation (id, acquirer_account_number, amount, description, client_id) values (6, 'ACC-9', 2.5, 'Knjiga', 3)");
+
+		migrate();
+
+		assertEquals(400L, jdbcTemplate.queryForObject("select reserved from account where id = 1", Long.class));
+		assertEquals(0L, jdbcTemplate.queryForObject("select reserved from account where id = 2", Long.class));
+		assertEquals(0L, jdbcTemplate.queryForObject("select max(version) from account", Long.class));
+		assertEquals(0L, jdbcTemplate.queryForObject("select count(*) from information_schema.columns " +
+				"where table_name = 'reservation' and column_name = 'version'", Long.class));
+	}
+
+	//id-jevi prve verzije su iz hibernate_sequence; transaction_id_seq je vec napravio ddl-auto=update (od 1),
+	//reservation_id_seq ne postoji. Banka posle migracija upisuje nove redove preko Hibernate-a
+	@Test
+	void pooledIdsDoNotCollideWithExistingRows() {
+		legacySchema();
+		for (int id = 1; id <= 120; id++) {
+			jdbcTemplate.update("insert into transaction (id, acquirer_order_id, amount, issuer_order_id, merchant_order_id, payment_id, transaction_status) " +
+					"values (?, ?, 1, 0, 1, ?, 1)", id, id, id);
+			jdbcTemplate.update("insert into reservation (id, acquirer_account_number, amount, description) values (?, 'ACC-9', 1, 'stara')", id);
+		}
+		jdbcTemplate.execute("create sequence transaction_id_seq start with 1 increment by 50");
+
+		try (ConfigurableApplicationContext bank = startBank()) {
+			List<Transaction> transactions = new ArrayList<>();
+			List<Reservation> reservations = new ArrayList<>();
+			for (int i = 0; i < 120; i++) {
+				transactions.add(Transaction.builder()
+						.paymentId(9_900_000_000L + i)
+						.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+						.merchantTimestamp(LocalDateTime.now())
+						.amount(1000)
+						.build());
+				reservations.add(Reservation.builder().amount(1000).description("nova").createdAt(LocalDateTime.now()).build());
+			}
+			bank.getBean(TransactionRepository.class).saveAll(transactions);
+			bank.getBean(ReservationRepository.class).saveAll(reservations);
+		}
+
+		assertEquals(240L, jdbcTemplate.queryForObject("select count(*) from transaction", Long.class));
+		assertEquals(240L, jdbcTemplate.queryForObject("select count(*) from reservation", Long.class));
+		assertTrue(jdbcTemplate.queryForObject("select min(id) from transaction where payment_id >= 9900000000", Long.class) > 120);
+		assertTrue(jdbcTemplate.queryForObject("select min(id) from reservation where description = 'nova'", Long.class) > 120);
+	}
+
+	//placanja prve verzije imaju nasumicne paymentId-jeve, a sekvencu je ranija verzija banke napravila od 10 cifara:
+	//novi paymentId-jevi su iznad svih postojecih
+	@Test
+	void paymentIdsStartAboveLegacyPaymentIds() {
+		legacySchema();
+		insertTransaction(1, 1_000_000_005L);
+		insertTransaction(2, 2_000_000_123L);
+		jdbcTemplate.execute("create sequence payment_id_seq start with 1000000000 increment by 1000");
+
+		try (ConfigurableApplicationContext bank = startBank()) {
+			long[] ids = bank.getBean(PaymentIdGenerator.class).nextIds(2000);
+			assertTrue(ids[0] > 2_000_000_123L, Long.toString(ids[0]));
+		}
+	}
+
+	//fast-startup ne proverava semu (ddl-auto=none), pa se ovde proverava da migracije prave tabele i kolone entiteta.
+	//dialekt je Postgres-ov kao u produkciji: bez JDBC metapodataka H2Dialect bi trazio imena velikim slovima
+	@Test
+	void migratedSchemaValidatesUnderFastStartup() {
+		legacySchema();
+
+		startBank("--spring.profiles.active=fast-startup",
+				"--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.PostgreSQL95Dialect").close();
+
+		assertEquals(8, jdbcTemplate.queryForObject("select max(cast(\"version\" as int)) from flyway_schema_history", Integer.class));
+	}
+
+	//banka sa migracijama nad ovom bazom; ddl-auto=validate ne pokrece se ako sema ne odgovara entitetima
+	private ConfigurableApplicationContext startBank(String... args) {
+		List<String> arguments = new ArrayList<>(List.of(
+				"--spring.datasource.url=" + url,
+				"--spring.flyway.enabled=true",
+				"--spring.jpa.hibernate.ddl-auto=validate",
+				"--server.port=0",
+				"--greeting.cron=-",
+				"--settlement.node-id=migration"));
+		arguments.addAll(List.of(args));
+		return new SpringApplicationBuilder(BankApplication.class).run(arguments.toArray(new String[0]));
+	}
+
+	//baza koju je napravio ddl-auto=update prve verzije: iste tabele kao V1, bez istorije migracija
+	private void legacySchema() {
+		new ResourceDatabasePopulator(new ClassPathResource("db/migration/V1__initial_schema.sql")).execute(dataSource);
+	}
+
+	private void migrate() {
+		Flyway.configure()
+				.dataSource(dataSource)
+				.locations("classpath:db/migration", "classpath:com/agency/bank/migration")
+				.baselineOnMigrate(true)
+				.baselineVersion("1")
+				.load()
+				.migrate();
+	}
+
+	private void insertTransaction(long id, long paymentId) {
+		jdbcTemplate.update("insert into transaction (id, acquirer_order_id, amount, issuer_order_id, merchant_order_id, payment_id, transaction_status) " +
+				"values (?, ?, 1000, 0, 1, ?, 1)", id, paymentId + 1, paymentId);
+	}
+}
@@ -0,0 +1,56 @@
+package com.agency.bank.money;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.dto.PSPResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void parsesDecimalMajorUnitsIntoMinorUnits() {
+		assertEquals(125050, Money.parse("1250.5"));
+		assertEquals(125050, Money.parse("1250.50"));
+		assertEquals(125000, Money.parse(" 1250 "));
+		assertEquals(10, Money.parse("0.10"));
+		assertEquals(10, Money.parse(".1"));
+		assertEquals(-305, Money.parse("-3.05"));
+		assertEquals(100, Money.parse("1.000"));
+	}
+
+	@Test
+	void rejectsAmountsThatCannotBeRepresentedExactly() {
+		assertThrows(ArithmeticException.class, () -> Money.parse("10.005"));
+		assertThrows(ArithmeticException.class, () -> Money.parse("999999999999999999"));
+		assertThrows(NumberFormatException.class, () -> Money.parse("1e3"));
+		assertThrows(NumberFormatException.class, () -> Money.parse("-"));
+		assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+	}
+
+	@Test
+	void formatsMinorUnitsAsMajorUnits() {
+		assertEquals("1250.50", Money.toString(125050));
+		assertEquals("0.05", Money.toString(5));
+		assertEquals("-3.05", Money.toString(-305));
+		assertEquals("92233720368547758.07", Money.toString(Long.MAX_VALUE));
+	}
+
+	@Test
+	void jsonKeepsDecimalWireFormat() throws Exception {
+		CardDto card = objectMapper.readValue("{\"amount\":\"1250.50\"}", CardDto.class);
+		assertEquals(125050, card.getAmount());
+
+		PSPResponseDto response = objectMapper.readValue("{\"amount\":0.1}", PSPResponseDto.class);
+		assertEquals(10, response.getAmount());
+
+		assertTrue(objectMapper.writeValueAsString(response).contains("\"amount\":0.10"));
+		assertThrows(InvalidFormatException.class, () -> objectMapper.readValue("{\"amount\":0.001}", PSPResponseDto.class));
+	}
+}
@@ -0,0 +1,185 @@
+package com.agency.bank.pcc;
+
+import com.agency.bank.dto.CardPaymentRequestDto;
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.OutboundStatus;
+import com.agency.bank.enums.PccCallbackOutcome;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.OutboundMessage;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.pcc.PccCodec.Frame;
+import com.agency.bank.repository.TransactionRepository;
+import com.agency.bank.service.OutboundDispatcher;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//PCC je ovde jedan thread nad ServerSocket-om: potvrdjuje svaki zahtev, odmah salje SUCCESS rezultat
+//i pamti ishode iz ADVICE_ACK. Posebna baza jer link radi i posle testa dok se kontekst ne ugasi
+@SpringBootTest(properties = {"bank.pcc.transport=binary", "bank.pcc.heartbeat-interval=200ms", "bank.pcc.request-timeout=5s",
+		"spring.datasource.url=jdbc:h2:mem:pcc-link;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_ON_EXIT=FALSE"})
+@DirtiesContext
+class PccLinkTests {
+
+	private static final long PAYMENT_ID = 9_500_000_000L;
+	private static final BlockingQueue<PccCallbackOutcome> OUTCOMES = new LinkedBlockingQueue<>();
+	private static final ServerSocket PCC = open();
+
+	@Autowired
+	private OutboundDispatcher outboundDispatcher;
+
+	@Autowired
+	private PccLink pccLink;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@DynamicPropertySource
+	static void pccAddress(DynamicPropertyRegistry registry) {
+		registry.add("bank.pcc.address", () -> "localhost:" + PCC.getLocalPort());
+	}
+
+	@AfterAll
+	static void closePcc() throws IOException {
+		PCC.close();
+	}
+
+	@Test
+	void framesSurviveARoundTrip() {
+		CardPaymentRequestDto request = request(PAYMENT_ID - 1);
+		request.setDescription(null);
+		ByteBuffer in = ByteBuffer.allocate(1024).put(PccCodec.request(request)).put(PccCodec.echo(PccCodec.ECHO, 7));
+		in.flip();
+
+		Frame frame = PccCodec.next(in, 1024);
+		assertEquals(PccCodec.REQUEST, frame.mti);
+		CardPaymentRequestDto read = PccCodec.readRequest(frame.acquirerOrderId, frame.body);
+		assertEquals(request.getAcquirerOrderId(), read.getAcquirerOrderId());
+		assertEquals(request.getPaymentId(), read.getPaymentId());
+		assertEquals(request.getAmount(), read.getAmount());
+		assertEquals(request.getAcquirerTimestamp(), read.getAcquirerTimestamp());
+		assertEquals("Kupac Čačak", read.getCardHolderName());
+		assertNull(read.getDescription());
+
+		frame = PccCodec.next(in, 1024);
+		assertEquals(PccCodec.ECHO, frame.mti);
+		assertEquals(7, frame.acquirerOrderId);
+		assertNull(PccCodec.next(in, 1024));
+	}
+
+	@Test
+	void outboxSendsOverTheLinkAndAdviceUpdatesThePayment() throws InterruptedException {
+		transactionRepository.save(Transaction.builder()
+				.paymentId(PAYMENT_ID)
+				.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+				.merchantTimestamp(LocalDateTime.now())
+				.amount(1000)
+				.build());
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!pccLink.isConnected()) {
+			assertTrue(System.currentTimeMillis() < deadline, "PCC link did not connect");
+			Thread.sleep(20);
+		}
+
+		OutboundMessage message = outboundDispatcher.message(OutboundDestination.PCC, OutboundDispatcher.pccKey(PAYMENT_ID), PAYMENT_ID, request(PAYMENT_ID));
+		outboundDispatcher.attempt(message);
+		assertEquals(OutboundStatus.SENT, message.getStatus());
+
+		assertEquals(PccCallbackOutcome.APPLIED, OUTCOMES.poll(10, TimeUnit.SECONDS));
+		assertEquals(TransactionStatus.SUCCESS, transactionRepository.findFirstByPaymentIdOrderById(PAYMENT_ID).getTransactionStatus());
+	}
+
+	private static CardPaymentRequestDto request(long paymentId) {
+		return CardPaymentRequestDto.builder()
+				.paymentId(paymentId)
+				.acquirerOrderId(paymentId + 1)
+				.acquirerTimestamp(LocalDateTime.now().withNano(0))
+				.pan("4242 4242 4242 4242")
+				.securityCode("123")
+				.cardHolderName("Kupac Čačak")
+				.dateExpiration("12/30")
+				.description("Knjiga")
+				.panAcquirer("1112 5825 9632 2369")
+				.amount(1000)
+				.build();
+	}
+
+	private static ServerSocket open() {
+		try {
+			ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			Thread thread = new Thread(() -> accept(server), "pcc-simulator");
+			thread.setDaemon(true);
+			thread.start();
+			return server;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void accept(ServerSocket server) {
+		while (!server.isClosed()) {
+			try (Socket socket = server.accept()) {
+				serve(new DataInputStream(socket.getInputStream()), socket.getOutputStream());
+			} catch (IOException e) {
+				//link se ponovo povezuje, a posle testa je server zatvoren
+			}
+		}
+	}
+
+	private static void serve(DataInputStream in, OutputStream out) throws IOException {
+		int issuerOrderId = 0;
+		while (true) {
+			int length = in.readInt();
+			ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + length).putInt(length);
+			in.readFully(buffer.array(), Integer.BYTES, length);
+			Frame frame = PccCodec.next(buffer.rewind(), 65536);
+			switch (frame.mti) {
+				case PccCodec.REQUEST:
+					CardPaymentRequestDto request = PccCodec.readRequest(frame.acquirerOrderId, frame.body);
+					out.write(PccCodec.requestAck(frame.acquirerOrderId, true).array());
+					out.write(PccCodec.advice(TransactionPCCResponseDto.builder()
+							.transactionStatus(TransactionStatus.SUCCESS)
+							.acquirerOrderId(request.getAcquirerOrderId())
+							.acquirerTimestamp(request.getAcquirerTimestamp())
+							.issuerOrderId(++issuerOrderId)
+							.issuerOrderTimestamp(LocalDateTime.now())
+							.paymentId(request.getPaymentId())
+							.amount(request.getAmount())
+							.description(request.getDescription())
+							.build()).array());
+					break;
+				case PccCodec.ADVICE_ACK:
+					OUTCOMES.add(PccCodec.readAdviceAck(frame.body));
+					break;
+				case PccCodec.ECHO:
+					out.write(PccCodec.echo(PccCodec.ECHO_ACK, frame.acquirerOrderId).array());
+					break;
+				default:
+					break;
+			}
+			out.flush();
+		}
+	}
+}
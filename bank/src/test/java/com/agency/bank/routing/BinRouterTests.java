@@ -0,0 +1,84 @@
+package com.agency.bank.routing;
+
+import com.agency.bank.enums.CardRoute;
+import com.agency.bank.enums.CardScheme;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinRouterTests {
+
+	private static final BinRoute VISA = new BinRoute("BANK2", CardRoute.PCC, CardScheme.VISA);
+	private static final BinRoute PRIVATE_LABEL = new BinRoute("BANK3", CardRoute.PCC, CardScheme.VISA);
+	private static final BinRoute DINA = new BinRoute("BANK", CardRoute.LOCAL, CardScheme.DINACARD);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void longestPrefixOfTheNormalizedPanWins() {
+		BinTable table = BinTable.builder()
+				.add("989100", "989199", DINA)
+				.add("42424250", "42424259", PRIVATE_LABEL) //uzi opseg dodat pre sireg
+				.add("4", "4", VISA)
+				.build();
+
+		assertSame(VISA, table.resolve("4111 1111 1111 1111", BinRoute.UNKNOWN));
+		assertSame(VISA, table.resolve("4242 4242 4242 4242", BinRoute.UNKNOWN));
+		assertSame(PRIVATE_LABEL, table.resolve("4242-4255-0000-0000", BinRoute.UNKNOWN));
+		assertSame(DINA, table.resolve("9891 1500 0000 0001", BinRoute.UNKNOWN));
+		assertSame(DINA, table.resolve("989199", BinRoute.UNKNOWN));
+		assertSame(BinRoute.UNKNOWN, table.resolve("9892 0000 0000 0000", BinRoute.UNKNOWN));
+		assertSame(BinRoute.UNKNOWN, table.resolve("98", BinRoute.UNKNOWN));
+		assertSame(BinRoute.UNKNOWN, table.resolve("", BinRoute.UNKNOWN));
+		assertEquals(3, table.ranges());
+
+		assertThrows(IllegalArgumentException.class, () -> BinTable.builder().add("5200", "5100", VISA));
+		assertThrows(IllegalArgumentException.class, () -> BinTable.builder().add("52x0", "5300", VISA));
+		assertThrows(IllegalArgumentException.class, () -> BinTable.builder().add("123456789012", "123456789012", VISA));
+	}
+
+	//stari substring(0, 7) je uporedjivao "1112 58" sa razmakom, BIN je 111258
+	@Test
+	void acquirerBinIsLocalAndFileIsReloaded() throws IOException {
+		Path file = directory.resolve("bins.csv");
+		Files.write(file, List.of("#low,high,issuer,scheme", "424242,424242,BANK2,VISA", "5100,5599,BANK,MASTERCARD"));
+		BinRouter router = new BinRouter(null, null, new SimpleMeterRegistry(), "BANK", "1112 5825 9632 2369", file.toString());
+
+		assertEquals(CardRoute.LOCAL, router.route("1112 5800 0000 0001"));
+		assertEquals(CardRoute.PCC, router.route("4242 4242 4242 4242"));
+		assertEquals(CardRoute.PCC, router.route("5300 0000 0000 0001"));
+
+		router.reload();
+		assertEquals(CardRoute.LOCAL, router.route("111258 0000000001"));
+		assertEquals(CardRoute.PCC, router.route("1112 5900 0000 0001"));
+		BinRoute visa = router.resolve("4242 4242 4242 4242");
+		assertEquals("BANK2", visa.getIssuer());
+		assertEquals(CardScheme.VISA, visa.getScheme());
+		assertEquals(CardRoute.LOCAL, router.route("5300 0000 0000 0001"));
+		assertEquals(CardScheme.MASTERCARD, router.resolve("5300 0000 0000 0001").getScheme());
+
+		//neispravan fajl ne menja tabelu
+		Files.write(file, List.of("5100,5599,BANK,MASTERCARD", "5600,BANK,VISA"));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+		router.reload();
+		assertEquals(CardRoute.PCC, router.route("4242 4242 4242 4242"));
+		assertEquals("BANK2", router.resolve("4242 4242 4242 4242").getIssuer());
+
+		Files.write(file, List.of("5100,5599,BANK,MASTERCARD"));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+		router.reload();
+		assertSame(BinRoute.UNKNOWN, router.resolve("4242 4242 4242 4242"));
+		assertEquals(CardRoute.LOCAL, router.route("1112 5825 9632 2369"));
+	}
+}
@@ -0,0 +1,162 @@
+package com.agency.bank.service;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Account;
+import com.agency.bank.model.Card;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Reservation;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.ClientRepository;
+import com.agency.bank.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//bez group commit-a svaki upis je svoja transakcija, pa se rezervacije istog racuna stvarno sudaraju
+@SpringBootTest(properties = {"bank.group-commit.enabled=false", "bank.account-concurrency.mode=queue"})
+class AccountConcurrencyTests {
+
+	private static final int THREADS = 16;
+	private static final int PAYMENTS = 300;
+	private static final long BALANCE = 1000;
+	private static final long AMOUNT = 10;
+
+	@Autowired
+	private PaymentWriter paymentWriter;
+
+	@Autowired
+	private TransactionService transactionService;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${bank.panAcquirer}")
+	private String panAcquirer;
+
+	@Value("${bank.account-concurrency.max-attempts}")
+	private int maxAttempts;
+
+	//mimo ledger-a i reda: bazu od prekoracenja cuva samo provera verzije racuna u PaymentWriter-u
+	@Test
+	void concurrentWritesNeverOverdrawTheAccount() {
+		long accountId = accountRepository.save(new Account(0, "STRESS-WRITER", BALANCE, 0, 0)).getId();
+		AtomicInteger committed = new AtomicInteger();
+		AtomicInteger insufficient = new AtomicInteger();
+		AtomicInteger conflicts = new AtomicInteger();
+		double retriedBefore = meterRegistry.counter("payment.write.conflicts").count();
+
+		runConcurrently(PAYMENTS, i -> {
+			try {
+				paymentWriter.write(new PaymentWrite()
+						.reserve(accountId, AMOUNT)
+						.insert(() -> Reservation.builder().amount(AMOUNT).description("STRESS-WRITER").build()));
+				committed.incrementAndGet();
+			} catch (InsufficientFundsException e) {
+				insufficient.incrementAndGet();
+			} catch (ConcurrencyFailureException e) {
+				conflicts.incrementAndGet(); //iscrpljeni pokusaji, nista nije upisano
+			}
+		});
+
+		Account account = accountRepository.findById(accountId).orElseThrow();
+		long reservations = jdbcTemplate.queryForObject("select count(*) from reservation where description = 'STRESS-WRITER'", Long.class);
+		assertEquals(PAYMENTS, committed.get() + insufficient.get() + conflicts.get());
+		assertEquals(committed.get(), reservations);
+		assertEquals(committed.get() * AMOUNT, account.getReserved());
+		assertTrue(account.getReserved() <= account.getAmount(), "reserved " + account.getReserved());
+		assertTrue(insufficient.get() > 0);
+		assertTrue(committed.get() > 0 && committed.get() <= BALANCE / AMOUNT, committed.get() + " committed");
+		//upis bez uspeha je ponovljen max-attempts - 1 puta
+		assertTrue(meterRegistry.counter("payment.write.conflicts").count() - retriedBefore >= conflicts.get() * (maxAttempts - 1.0));
+	}
+
+	//ceo tok placanja iste banke u queue modu: tacno onoliko placanja koliko stanje pokriva
+	@Test
+	void concurrentPaymentsFromOneAccountNeverOverdraw() {
+		if (clientRepository.findSnapshotByPan(panAcquirer) == null)
+			clientRepository.save(client("Prodavac", new Account(0, "STRESS-MERCHANT", 0, 0, 0), panAcquirer));
+		String pan = "1112 5800 0000 0777";
+		Client customer = clientRepository.save(client("Kupac", new Account(0, "STRESS-CUSTOMER", BALANCE, 0, 0), pan));
+		long firstPaymentId = 7_000_000_000L;
+		for (int i = 0; i < PAYMENTS; i++) {
+			transactionRepository.save(Transaction.builder()
+					.paymentId(firstPaymentId + i)
+					.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+					.merchantTimestamp(LocalDateTime.now())
+					.amount(AMOUNT)
+					.build());
+		}
+		List<Transaction> results = new ArrayList<>();
+
+		runConcurrently(PAYMENTS, i -> {
+			Transaction transaction = transactionService.pay(new CardDto(Long.toString(firstPaymentId + i), pan, "123",
+					"Kupac", "12/30", "stress", AMOUNT, null, null, null));
+			synchronized (results) {
+				results.add(transaction);
+			}
+		});
+
+		long paid = results.stream().filter(t -> t.getTransactionStatus() == TransactionStatus.IN_PROGRESS).count();
+		Account account = accountRepository.findById(customer.getAccount().getId()).orElseThrow();
+		long reservations = jdbcTemplate.queryForObject("select count(*) from reservation where client_id = ?", Long.class, customer.getId());
+		assertEquals(BALANCE / AMOUNT, paid);
+		assertEquals(paid, reservations);
+		assertEquals(BALANCE, account.getReserved());
+		assertEquals(PAYMENTS - paid, results.stream().filter(t -> t.getTransactionStatus() == TransactionStatus.FAILED).count());
+	}
+
+	private static void runConcurrently(int tasks, IntConsumer task) {
+		ExecutorService callers = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<CompletableFuture<Void>> futures = new ArrayList<>(tasks);
+			for (int i = 0; i < tasks; i++) {
+				int index = i;
+				futures.add(CompletableFuture.runAsync(() -> task.accept(index), callers));
+			}
+			futures.forEach(CompletableFuture::join);
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+		} finally {
+			callers.shutdown();
+		}
+	}
+
+	private Client client(String name, Account account, String pan) {
+		Client client = new Client();
+		client.setName(name);
+		client.setAccount(accountRepository.save(account));
+		client.setCard(new Card(0, pan, "123", name, "12/30"));
+		return clientRepository.save(client);
+	}
+}
@@ -0,0 +1,141 @@
+package com.agency.bank.service;
+
+import com.agency.bank.journal.PaymentJournal;
+import com.agency.bank.model.Account;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.ReservationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//racun 1: stanje 1000 u bazi, bez upisanih rezervacija; racun 2: stanje 500, upisane rezervacije 200
+class BalanceLedgerServiceTests {
+
+	private final AccountRepository accountRepository = mock(AccountRepository.class);
+	private final ReservationRepository reservationRepository = mock(ReservationRepository.class);
+	private BalanceLedgerService ledger;
+
+	@BeforeEach
+	void createLedger() {
+		Account account = new Account();
+		account.setId(1);
+		account.setAmount(1000);
+		when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+		when(accountRepository.findAllBalances()).thenReturn(List.of(new Object[]{1L, 1000L}, new Object[]{2L, 500L}));
+		when(reservationRepository.sumAmountsByAccount()).thenReturn(List.<Object[]>of(new Object[]{2L, 200L}));
+		PaymentJournal journal = new PaymentJournal(new SimpleMeterRegistry(), false, false, "target/journal",
+				DataSize.ofMegabytes(1), Duration.ofDays(1));
+		ledger = new BalanceLedgerService(accountRepository, reservationRepository, journal);
+	}
+
+	@Test
+	void reservationIsRefusedBeyondAvailableFundsAndReleaseReturnsThem() {
+		ledger.onStartup();
+
+		assertTrue(ledger.tryReserve(2, 300));
+		assertFalse(ledger.tryReserve(2, 1));
+		ledger.release(2, 300);
+		assertEquals(300, ledger.available(2));
+	}
+
+	@Test
+	void settlementMovesReservedFundsToTheMerchant() {
+		ledger.onStartup();
+		assertTrue(ledger.tryReserve(1, 400));
+
+		ledger.settleDebit(1, 400);
+		ledger.credit(2, 400);
+
+		assertEquals(600, ledger.available(1));
+		assertArrayEquals(new long[]{600, 0}, ledger.balances().get(1L));
+		assertEquals(700, ledger.available(2));
+	}
+
+	//placanje koje je stiglo pre ucitavanja: rezervacija jos nije u bazi, ali ostaje u ledger-u
+	@Test
+	void startupKeepsReservationsThatAreNotWrittenYet() {
+		assertTrue(ledger.tryReserve(1, 600));
+
+		ledger.onStartup();
+
+		assertEquals(400, ledger.available(1));
+		assertFalse(ledger.tryReserve(1, 600));
+	}
+
+	@Test
+	void startupLoadsAllAccountsWithoutPerAccountQueries() {
+		ledger.onStartup();
+
+		assertEquals(1000, ledger.available(1));
+		assertEquals(300, ledger.available(2));
+		verify(accountRepository, never()).findById(anyLong());
+		verify(reservationRepository, never()).sumAmountByAccount(anyLong());
+	}
+
+	//obracun je upisan pre nego sto je racun ucitan: racun se ucitava iz baze vec zaduzen, pa se ne zaduzuje ponovo
+	@Test
+	void settlementOfAnAccountThatIsNotLoadedIsNotAppliedTwice() {
+		ledger.settleDebit(1, 400);
+
+		assertEquals(1000, ledger.available(1));
+	}
+
+	@Test
+	void rebuildReplacesLoadedBalancesWithTheDatabase() {
+		ledger.onStartup();
+		when(accountRepository.findAllBalances()).thenReturn(List.of(new Object[]{1L, 800L}, new Object[]{2L, 500L}));
+
+		ledger.rebuild();
+
+		assertEquals(800, ledger.available(1));
+		assertEquals(300, ledger.available(2));
+	}
+
+	//rezervacija je u ledger-u, a u bazi jos nije: rebuild ceka da se upis zavrsi i tek onda cita bazu
+	@Test
+	void rebuildWaitsForPaymentsInFlight() throws Exception {
+		ledger.onStartup();
+		CountDownLatch reserved = new CountDownLatch(1);
+		CountDownLatch written = new CountDownLatch(1);
+		CompletableFuture<Void> payment = CompletableFuture.runAsync(() -> ledger.change(() -> {
+			assertTrue(ledger.tryReserve(1, 600));
+			reserved.countDown();
+			try {
+				written.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			when(reservationRepository.sumAmountsByAccount()).thenReturn(List.of(new Object[]{1L, 600L}, new Object[]{2L, 200L}));
+		}));
+		assertTrue(reserved.await(5, TimeUnit.SECONDS));
+
+		CompletableFuture<Void> rebuild = CompletableFuture.runAsync(ledger::rebuild);
+		assertThrows(TimeoutException.class, () -> rebuild.get(200, TimeUnit.MILLISECONDS));
+		written.countDown();
+		payment.get(5, TimeUnit.SECONDS);
+		rebuild.get(5, TimeUnit.SECONDS);
+
+		assertEquals(400, ledger.available(1));
+		assertFalse(ledger.tryReserve(1, 600));
+	}
+}
@@ -0,0 +1,107 @@
+package com.agency.bank.service;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Account;
+import com.agency.bank.model.Card;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.ClientRepository;
+import com.agency.bank.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//posebna baza i gasenje konteksta posle testa, da worker ne bi obracunavao rezervacije drugih testova
+@SpringBootTest(properties = {"settlement.mode=continuous", "settlement.continuous.interval=50ms", "settlement.continuous.credit-interval=200ms",
+		"spring.datasource.url=jdbc:h2:mem:settlement;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_ON_EXIT=FALSE"})
+@DirtiesContext
+class ContinuousSettlementTests {
+
+	private static final int PAYMENTS = 3;
+	private static final long BALANCE = 1000;
+	private static final long AMOUNT = 10;
+
+	@Autowired
+	private TransactionService transactionService;
+
+	@Autowired
+	private BalanceLedgerService balanceLedgerService;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${bank.panAcquirer}")
+	private String panAcquirer;
+
+	@Test
+	void reservationsAreSettledShortlyAfterPayment() throws InterruptedException {
+		Client merchant = client("Prodavac", new Account(0, "SETTLE-MERCHANT", 0, 0, 0), panAcquirer);
+		String pan = "1112 5800 0000 0888";
+		Client customer = client("Kupac", new Account(0, "SETTLE-CUSTOMER", BALANCE, 0, 0), pan);
+		long firstPaymentId = 9_000_000_000L;
+		for (int i = 0; i < PAYMENTS; i++) {
+			transactionRepository.save(Transaction.builder()
+					.paymentId(firstPaymentId + i)
+					.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+					.merchantTimestamp(LocalDateTime.now())
+					.amount(AMOUNT)
+					.build());
+			Transaction paid = transactionService.pay(new CardDto(Long.toString(firstPaymentId + i), pan, "123",
+					"Kupac", "12/30", "settlement", AMOUNT, null, null, null));
+			assertEquals(TransactionStatus.IN_PROGRESS, paid.getTransactionStatus());
+		}
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (jdbcTemplate.queryForObject("select count(*) from reservation", Long.class) > 0) {
+			assertTrue(System.currentTimeMillis() < deadline, "reservations were not settled");
+			Thread.sleep(20);
+		}
+
+		Account customerAccount = accountRepository.findById(customer.getAccount().getId()).orElseThrow();
+		assertEquals(BALANCE - PAYMENTS * AMOUNT, customerAccount.getAmount());
+		assertEquals(0, customerAccount.getReserved());
+		//odobrenja prodavcu se prenose posle credit-interval, jednim upisom
+		while (accountRepository.findById(merchant.getAccount().getId()).orElseThrow().getAmount() < PAYMENTS * AMOUNT) {
+			assertTrue(System.currentTimeMillis() < deadline, "merchant was not credited");
+			Thread.sleep(20);
+		}
+		assertEquals(PAYMENTS * AMOUNT, accountRepository.findById(merchant.getAccount().getId()).orElseThrow().getAmount());
+		assertEquals(0L, jdbcTemplate.queryForObject("select count(*) from settlement_credit", Long.class));
+		assertEquals(PAYMENTS * AMOUNT, balanceLedgerService.available(merchant.getAccount().getId()));
+		assertEquals(BALANCE - PAYMENTS * AMOUNT, balanceLedgerService.available(customerAccount.getId()));
+		assertNotNull(meterRegistry.find("settlement.lag").gauge());
+		assertTrue(meterRegistry.get("settlement.batch.size").summary().count() > 0);
+	}
+
+	private Client client(String name, Account account, String pan) {
+		Client client = new Client();
+		client.setName(name);
+		client.setAccount(accountRepository.save(account));
+		client.setCard(new Card(0, pan, "123", name, "12/30"));
+		return clientRepository.save(client);
+	}
+}
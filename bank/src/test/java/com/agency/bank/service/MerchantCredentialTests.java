@@ -0,0 +1,92 @@
+package com.agency.bank.service;
+
+import com.agency.bank.model.Client;
+import com.agency.bank.repository.ClientRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class MerchantCredentialTests {
+
+	@Autowired
+	private ClientService clientService;
+
+	@Autowired
+	private MerchantCredentialService merchantCredentialService;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	//lozinka u cistom tekstu se prepisuje u hash pri prvoj uspesnoj proveri
+	@Test
+	void plaintextPasswordIsRehashedOnVerify() {
+		long id = merchant("rehash-shop", "secret").getId();
+
+		assertNull(clientService.findMerchantId("rehash-shop", "wrong"));
+		assertEquals(id, clientService.findMerchantId("rehash-shop", "secret"));
+		assertTrue(storedPassword(id).startsWith("pbkdf2-sha256$310000$"));
+		assertNull(clientService.findMerchantId("rehash-shop", "wrong"));
+		assertEquals(id, clientService.findMerchantId("rehash-shop", "secret"));
+	}
+
+	//provera iste lozinke ide iz kesa; promena lozinke kroz servis ga prazni
+	@Test
+	void verifiedCredentialIsCachedUntilRotation() {
+		long id = merchant("rotate-shop", "first").getId();
+		assertEquals(id, clientService.findMerchantId("rotate-shop", "first"));
+
+		jdbcTemplate.update("update client set merchant_password = 'changed behind the cache' where id = ?", id);
+		assertEquals(id, clientService.findMerchantId("rotate-shop", "first"));
+
+		assertTrue(clientService.rotateMerchantPassword("rotate-shop", "second"));
+		assertNull(clientService.findMerchantId("rotate-shop", "first"));
+		assertEquals(id, clientService.findMerchantId("rotate-shop", "second"));
+		assertNull(clientService.findMerchantId("unknown-shop", "second"));
+	}
+
+	@Test
+	void plaintextPasswordsAreHashedAtStartup() {
+		long id = merchant("startup-shop", "secret").getId();
+
+		merchantCredentialService.hashPlaintextPasswords();
+
+		assertTrue(storedPassword(id).startsWith("pbkdf2-sha256$"));
+		assertEquals(id, clientService.findMerchantId("startup-shop", "secret"));
+	}
+
+	//pokretanje ne ceka na PBKDF2: lozinke se prepisuju na drugom thread-u
+	@Test
+	void plaintextPasswordsAreHashedInTheBackground() throws InterruptedException {
+		long id = merchant("background-shop", "secret").getId();
+
+		merchantCredentialService.hashPlaintextPasswordsInBackground();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (!storedPassword(id).startsWith("pbkdf2-sha256$")) {
+			assertTrue(System.currentTimeMillis() < deadline, "password was not hashed");
+			Thread.sleep(20);
+		}
+		assertEquals(id, clientService.findMerchantId("background-shop", "secret"));
+	}
+
+	private Client merchant(String merchantId, String password) {
+		Client merchant = new Client();
+		merchant.setName(merchantId);
+		merchant.setMerchantId(merchantId);
+		merchant.setMerchantPassword(password);
+		return clientRepository.save(merchant);
+	}
+
+	private String storedPassword(long id) {
+		return jdbcTemplate.queryForObject("select merchant_password from client where id = ?", String.class, id);
+	}
+}
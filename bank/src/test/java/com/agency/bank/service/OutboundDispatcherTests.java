@@ -0,0 +1,142 @@
+package com.agency.bank.service;
+
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.OutboundStatus;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.OutboundMessage;
+import com.agency.bank.pcc.PccLink;
+import com.agency.bank.pcc.PccLinkException;
+import com.agency.bank.repository.OutboundMessageRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutboundDispatcherTests {
+
+	private HttpServer psp;
+	private final AtomicInteger failuresLeft = new AtomicInteger();
+	private final List<String> idempotencyKeys = new CopyOnWriteArrayList<>();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private OutboundDispatcher dispatcher;
+
+	@BeforeEach
+	void startStub() throws Exception {
+		psp = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		psp.createContext("/bank-transaction", exchange -> {
+			idempotencyKeys.add(exchange.getRequestHeaders().getFirst(OutboundDispatcher.IDEMPOTENCY_KEY_HEADER));
+			exchange.getRequestBody().readAllBytes();
+			exchange.sendResponseHeaders(failuresLeft.getAndDecrement() > 0 ? 503 : 200, -1);
+			exchange.close();
+		});
+		psp.start();
+
+		OutboundMessageRepository repository = mock(OutboundMessageRepository.class);
+		String url = "http://localhost:" + psp.getAddress().getPort() + "/bank-transaction";
+		dispatcher = new OutboundDispatcher(repository, new RestTemplate(), mock(PccLink.class), new ObjectMapper(), meterRegistry, url, url,
+				3, Duration.ofSeconds(1), Duration.ofSeconds(5));
+	}
+
+	@AfterEach
+	void stopStub() {
+		psp.stop(0);
+	}
+
+	@Test
+	void retriesWithSameIdempotencyKeyUntilDelivered() {
+		failuresLeft.set(1);
+		OutboundMessage message = message();
+
+		dispatcher.attempt(message);
+		assertEquals(OutboundStatus.PENDING, message.getStatus());
+		assertEquals(1, message.getAttempts());
+		assertTrue(message.getNextAttemptAt().isAfter(LocalDateTime.now()));
+
+		dispatcher.attempt(message);
+		assertEquals(OutboundStatus.SENT, message.getStatus());
+		assertEquals(List.of(message.getIdempotencyKey(), message.getIdempotencyKey()), idempotencyKeys);
+		assertEquals(1, meterRegistry.get("outbound.requests").tags("destination", "PSP", "outcome", "error").timer().count());
+		assertEquals(1, meterRegistry.get("outbound.requests").tags("destination", "PSP", "outcome", "success").timer().count());
+	}
+
+	@Test
+	void givesUpAfterMaxAttempts() {
+		failuresLeft.set(Integer.MAX_VALUE);
+		OutboundMessage message = message();
+
+		for (int i = 0; i < 3; i++)
+			dispatcher.attempt(message);
+
+		assertEquals(OutboundStatus.FAILED, message.getStatus());
+	}
+
+	@Test
+	void backoffDoublesUpToLimit() {
+		assertEquals(Duration.ofSeconds(1), dispatcher.backoff(1));
+		assertEquals(Duration.ofSeconds(4), dispatcher.backoff(3));
+		assertEquals(Duration.ofSeconds(5), dispatcher.backoff(10));
+	}
+
+	//zahtev preko PCC veze: pozivalac ne ceka, stanje poruke menja potvrda (ili odbijanje) kad stigne
+	@Test
+	void pccRequestOverTheLinkCompletesWhenAcknowledged() {
+		PccLink pccLink = mock(PccLink.class);
+		when(pccLink.isEnabled()).thenReturn(true);
+		CompletableFuture<Void> accepted = new CompletableFuture<>();
+		CompletableFuture<Void> rejected = new CompletableFuture<>();
+		when(pccLink.send(any())).thenReturn(accepted, rejected);
+		OutboundDispatcher binary = new OutboundDispatcher(mock(OutboundMessageRepository.class), new RestTemplate(), pccLink, new ObjectMapper(),
+				meterRegistry, "http://localhost:1", "http://localhost:1", 3, Duration.ofSeconds(1), Duration.ofSeconds(5));
+		OutboundMessage first = pccMessage(1);
+		OutboundMessage second = pccMessage(2);
+
+		CompletableFuture<Void> firstAttempt = binary.attemptAsync(first);
+		CompletableFuture<Void> secondAttempt = binary.attemptAsync(second);
+		assertFalse(firstAttempt.isDone());
+		assertEquals(OutboundStatus.PENDING, first.getStatus());
+
+		accepted.complete(null);
+		rejected.completeExceptionally(new PccLinkException("PCC rejected request 2"));
+		firstAttempt.join();
+		secondAttempt.join();
+		assertEquals(OutboundStatus.SENT, first.getStatus());
+		assertEquals(OutboundStatus.PENDING, second.getStatus());
+		assertEquals(1, second.getAttempts());
+	}
+
+	private OutboundMessage pccMessage(long paymentId) {
+		return OutboundMessage.builder()
+				.destination(OutboundDestination.PCC)
+				.idempotencyKey(OutboundDispatcher.pccKey(paymentId))
+				.payload("{\"paymentId\":" + paymentId + ",\"acquirerOrderId\":" + paymentId + "}")
+				.status(OutboundStatus.PENDING)
+				.build();
+	}
+
+	private OutboundMessage message() {
+		return OutboundMessage.builder()
+				.destination(OutboundDestination.PSP)
+				.idempotencyKey(OutboundDispatcher.pspKey(1234567890, TransactionStatus.IN_PROGRESS))
+				.payload("{\"paymentId\":1234567890}")
+				.status(OutboundStatus.PENDING)
+				.build();
+	}
+}
@@ -0,0 +1,225 @@
+package com.agency.bank.service;
+
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.OutboundStatus;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.OutboundMessage;
+import com.agency.bank.repository.OutboundMessageRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doReturn;
+
+//relay bez svog thread-a (bank.outbox.enabled=false), drain() se poziva iz testa. PSP je HTTP stub koji za svaki
+//zahtev pamti idempotency kljuc i red poruke procitan sa FOR UPDATE SKIP LOCKED: red koji relay drzi zakljucan
+//tokom slanja se ne bi video
+@SpringBootTest(properties = {"bank.outbox.enabled=false", "bank.outbox.concurrency=1", "bank.outbound.initial-backoff=1s", "bank.outbound.max-attempts=2",
+		"spring.datasource.url=jdbc:h2:mem:outbox-relay;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_ON_EXIT=FALSE"})
+class OutboxRelayTests {
+
+	private static final AtomicInteger FAILURES_LEFT = new AtomicInteger();
+	private static final List<String> DELIVERED = new CopyOnWriteArrayList<>();
+	private static final Map<String, List<String>> STATUS_WHILE_SENDING = new ConcurrentHashMap<>();
+	private static final HttpServer PSP = open();
+	private static volatile JdbcTemplate database;
+
+	@Autowired
+	private OutboxRelay outboxRelay;
+
+	@SpyBean
+	private OutboundDispatcher outboundDispatcher;
+
+	@Autowired
+	private OutboundMessageRepository outboundMessageRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@DynamicPropertySource
+	static void pspUrl(DynamicPropertyRegistry registry) {
+		registry.add("bank.pspUrl", () -> "http://localhost:" + PSP.getAddress().getPort() + "/bank-transaction");
+	}
+
+	@AfterAll
+	static void closePsp() {
+		PSP.stop(0);
+	}
+
+	@BeforeEach
+	void clear() {
+		database = jdbcTemplate;
+		outboundMessageRepository.deleteAll();
+		FAILURES_LEFT.set(0);
+		DELIVERED.clear();
+		STATUS_WHILE_SENDING.clear();
+	}
+
+	//poruka je uzeta i zakup upisan pre slanja, a tokom slanja red nije zakljucan
+	@Test
+	void messageIsClaimedInItsOwnTransactionBeforeSending() {
+		OutboundMessage message = pending(1, TransactionStatus.IN_PROGRESS);
+
+		assertEquals(1, outboxRelay.drain());
+
+		assertEquals(List.of(message.getIdempotencyKey()), DELIVERED);
+		assertEquals(List.of("SENDING"), STATUS_WHILE_SENDING.get(message.getIdempotencyKey()));
+		assertEquals(OutboundStatus.SENT, reload(message).getStatus());
+	}
+
+	@Test
+	void failedSendIsRetriedWithTheSameKey() throws InterruptedException {
+		FAILURES_LEFT.set(1);
+		OutboundMessage message = pending(2, TransactionStatus.IN_PROGRESS);
+
+		outboxRelay.drain();
+		OutboundMessage afterFailure = reload(message);
+		assertEquals(OutboundStatus.PENDING, afterFailure.getStatus());
+		assertEquals(1, afterFailure.getAttempts());
+		assertEquals(0, outboxRelay.drain()); //ceka backoff
+
+		Thread.sleep(1100);
+		assertEquals(1, outboxRelay.drain());
+		assertEquals(OutboundStatus.SENT, reload(message).getStatus());
+		assertEquals(List.of(message.getIdempotencyKey(), message.getIdempotencyKey()), DELIVERED);
+	}
+
+	//poruke se uzimaju i salju od najstarije, a PSP od vise statusa istog placanja dobija samo poslednji
+	@Test
+	void latestStatusPerPaymentIsDeliveredInOrder() {
+		OutboundMessage inProgress = pending(3, TransactionStatus.IN_PROGRESS);
+		OutboundMessage other = pending(4, TransactionStatus.IN_PROGRESS);
+		OutboundMessage success = pending(3, TransactionStatus.SUCCESS);
+
+		assertEquals(3, outboxRelay.drain());
+
+		assertEquals(List.of(other.getIdempotencyKey(), success.getIdempotencyKey()), DELIVERED);
+		assertEquals(OutboundStatus.COALESCED, reload(inProgress).getStatus());
+		assertEquals(OutboundStatus.SENT, reload(success).getStatus());
+		assertEquals(OutboundStatus.SENT, reload(other).getStatus());
+	}
+
+	//relay koji je uzeo poruke i pao: posle isteka zakupa ih salje drugi, do tada niko
+	@Test
+	void messagesOfACrashedRelayAreSentAgainAfterTheLease() {
+		OutboundMessage expired = claimed(5, LocalDateTime.now().minusSeconds(1));
+		OutboundMessage leased = claimed(6, LocalDateTime.now().plusMinutes(1));
+
+		assertEquals(1, outboxRelay.drain());
+
+		assertEquals(List.of(expired.getIdempotencyKey()), DELIVERED);
+		assertEquals(OutboundStatus.SENT, reload(expired).getStatus());
+		assertEquals(OutboundStatus.SENDING, reload(leased).getStatus());
+	}
+
+	//stariji status je u backoff-u kad stigne noviji: PSP dobija noviji, a stariji se vise ne salje
+	@Test
+	void olderStatusWaitingForRetryIsNotDeliveredAfterANewerOne() throws InterruptedException {
+		FAILURES_LEFT.set(1);
+		OutboundMessage inProgress = pending(7, TransactionStatus.IN_PROGRESS);
+		outboxRelay.drain();
+		OutboundMessage success = pending(7, TransactionStatus.SUCCESS);
+
+		outboxRelay.drain();
+		Thread.sleep(1100);
+		outboxRelay.drain();
+
+		assertEquals(List.of(inProgress.getIdempotencyKey(), success.getIdempotencyKey()), DELIVERED);
+		assertEquals(OutboundStatus.COALESCED, reload(inProgress).getStatus());
+		assertEquals(OutboundStatus.SENT, reload(success).getStatus());
+	}
+
+	//stariji status salje drugi relay: noviji ceka da se to slanje zavrsi
+	@Test
+	void newerStatusWaitsWhileAnOlderOneIsBeingSent() {
+		OutboundMessage inFlight = claimed(8, LocalDateTime.now().plusMinutes(1));
+		OutboundMessage success = pending(8, TransactionStatus.SUCCESS);
+
+		outboxRelay.drain();
+
+		assertTrue(DELIVERED.isEmpty());
+		assertEquals(OutboundStatus.PENDING, reload(success).getStatus());
+
+		inFlight.setStatus(OutboundStatus.SENT);
+		outboundMessageRepository.save(inFlight);
+		assertEquals(1, outboxRelay.drain());
+		assertEquals(List.of(success.getIdempotencyKey()), DELIVERED);
+	}
+
+	//poruka koja uvek baca neocekivanu gresku trosi pokusaje kao i greska PSP-a i posle max-attempts je FAILED
+	@Test
+	void unexpectedErrorCountsAsAFailedAttempt() throws InterruptedException {
+		OutboundMessage poison = pending(9, TransactionStatus.IN_PROGRESS);
+		doReturn(CompletableFuture.failedFuture(new IllegalStateException("poison")))
+				.when(outboundDispatcher).attemptAsync(argThat(message -> message != null && message.getId() == poison.getId()));
+
+		outboxRelay.drain();
+		OutboundMessage afterFirst = reload(poison);
+		assertEquals(OutboundStatus.PENDING, afterFirst.getStatus());
+		assertEquals(1, afterFirst.getAttempts());
+
+		Thread.sleep(1100);
+		outboxRelay.drain();
+		assertEquals(OutboundStatus.FAILED, reload(poison).getStatus());
+		assertEquals(2, reload(poison).getAttempts());
+		assertTrue(DELIVERED.isEmpty());
+	}
+
+	private OutboundMessage pending(long paymentId, TransactionStatus status) {
+		return outboundMessageRepository.save(outboundDispatcher.message(OutboundDestination.PSP,
+				OutboundDispatcher.pspKey(paymentId, status), paymentId, Map.of("paymentId", paymentId, "status", status)));
+	}
+
+	private OutboundMessage claimed(long paymentId, LocalDateTime leaseUntil) {
+		OutboundMessage message = outboundDispatcher.message(OutboundDestination.PSP,
+				OutboundDispatcher.pspKey(paymentId, TransactionStatus.IN_PROGRESS), paymentId, Map.of("paymentId", paymentId));
+		message.setStatus(OutboundStatus.SENDING);
+		message.setNextAttemptAt(leaseUntil);
+		return outboundMessageRepository.save(message);
+	}
+
+	private OutboundMessage reload(OutboundMessage message) {
+		return outboundMessageRepository.findById(message.getId()).orElseThrow();
+	}
+
+	private static HttpServer open() {
+		try {
+			HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+			server.createContext("/bank-transaction", exchange -> {
+				String key = exchange.getRequestHeaders().getFirst(OutboundDispatcher.IDEMPOTENCY_KEY_HEADER);
+				exchange.getRequestBody().readAllBytes();
+				DELIVERED.add(key);
+				STATUS_WHILE_SENDING.put(key, database.queryForList(
+						"select status from outbound_message where idempotency_key = ? for update skip locked", String.class, key));
+				exchange.sendResponseHeaders(FAILURES_LEFT.getAndDecrement() > 0 ? 503 : 200, -1);
+				exchange.close();
+			});
+			server.start();
+			return server;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
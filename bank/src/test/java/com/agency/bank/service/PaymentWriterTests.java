@@ -0,0 +1,132 @@
+package com.agency.bank.service;
+
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.journal.JournalRecord;
+import com.agency.bank.journal.PaymentJournal;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.OutboundMessageRepository;
+import com.agency.bank.repository.TransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//upisi koji stignu u istom prozoru idu u jednu transakciju; placanje koje ne moze da se upise
+//(ovde dupli idempotency kljuc) ne obara ostala iz grupe
+@SpringBootTest(properties = "bank.group-commit.window=50ms")
+class PaymentWriterTests {
+
+	private static final int PAYMENTS = 20;
+
+	@Autowired
+	private PaymentWriter paymentWriter;
+
+	@Autowired
+	private OutboundDispatcher outboundDispatcher;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private OutboundMessageRepository outboundMessageRepository;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Test
+	void concurrentPaymentsShareOneCommitAndFailureStaysIsolated() {
+		outboundDispatcher.enqueue(OutboundDestination.PSP, "duplicate", 1, "first");
+		AtomicBoolean released = new AtomicBoolean();
+		ExecutorService callers = Executors.newFixedThreadPool(PAYMENTS + 1);
+		try {
+			List<CompletableFuture<Void>> payments = new ArrayList<>();
+			for (int i = 0; i < PAYMENTS; i++) {
+				long paymentId = 1000 + i;
+				payments.add(CompletableFuture.runAsync(() -> paymentWriter.write(new PaymentWrite()
+						.insert(() -> Transaction.builder()
+								.paymentId(paymentId)
+								.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+								.amount(100)
+								.build())
+						.insert(() -> outboundDispatcher.message(OutboundDestination.PSP, "psp-" + paymentId, paymentId, "ok"))), callers));
+			}
+			CompletableFuture<Void> duplicate = CompletableFuture.runAsync(() -> paymentWriter.write(new PaymentWrite()
+					.insert(() -> outboundDispatcher.message(OutboundDestination.PSP, "duplicate", 1, "second"))
+					.onFailure(() -> released.set(true))), callers);
+
+			payments.forEach(CompletableFuture::join);
+			assertThrows(RuntimeException.class, duplicate::join);
+		} finally {
+			callers.shutdown();
+		}
+
+		assertTrue(released.get());
+		for (int i = 0; i < PAYMENTS; i++)
+			assertEquals(TransactionStatus.PAYMENT_REQUESTED, transactionRepository.findFirstByPaymentIdOrderById(1000 + i).getTransactionStatus());
+		assertEquals(PAYMENTS + 1, outboundMessageRepository.count());
+		assertTrue(meterRegistry.get("payment.write.batch.size").summary().max() > 1);
+	}
+
+	//dnevnik pada posle commit-a (npr. fsync): placanja iz grupe i pojedinacni upis se ne ponavljaju, pozivalac dobija uspeh
+	@Test
+	void journalFailureAfterCommitDoesNotWriteThePaymentAgain() {
+		PaymentJournal failingJournal = new PaymentJournal(new SimpleMeterRegistry(), false, false, "target/journal",
+				DataSize.ofMegabytes(1), Duration.ofDays(1)) {
+			@Override
+			public void append(List<JournalRecord> batch) {
+				throw new UncheckedIOException(new IOException("force failed"));
+			}
+		};
+		PaymentWriter writer = new PaymentWriter(entityManager, transactionRepository, accountRepository, transactionTemplate,
+				failingJournal, new SimpleMeterRegistry(), false, Duration.ZERO, 64, 5);
+
+		List<PaymentWrite> batch = List.of(requested(3000), requested(3001));
+		writer.writeAll(batch);
+		writer.write(requested(3002));
+
+		batch.forEach(write -> assertNull(write.failure()));
+		List<Transaction> transactions = transactionRepository.findAll();
+		for (long paymentId = 3000; paymentId <= 3002; paymentId++) {
+			long id = paymentId;
+			assertEquals(1, transactions.stream().filter(transaction -> transaction.getPaymentId() == id).count());
+		}
+	}
+
+	private static PaymentWrite requested(long paymentId) {
+		return new PaymentWrite().insert(() -> Transaction.builder()
+				.paymentId(paymentId)
+				.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+				.amount(100)
+				.build());
+	}
+}
@@ -0,0 +1,119 @@
+package com.agency.bank.service;
+
+import com.agency.bank.dto.TransactionPCCResponseDto;
+import com.agency.bank.enums.OutboundDestination;
+import com.agency.bank.enums.PccCallbackOutcome;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.OutboundMessageRepository;
+import com.agency.bank.repository.PccCallbackRepository;
+import com.agency.bank.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+class PccCallbackTests {
+
+	private static final long PAYMENT_ID = 8_000_000_000L;
+
+	@Autowired
+	private TransactionService transactionService;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private OutboundMessageRepository outboundMessageRepository;
+
+	@Autowired
+	private PccCallbackRepository pccCallbackRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Test
+	void duplicateAndLateCallbacksDoNotChangeThePayment() {
+		assertEquals(PccCallbackOutcome.UNKNOWN_PAYMENT, transactionService.transferMoneyToBank(callback(PAYMENT_ID - 1, 1, TransactionStatus.SUCCESS)));
+
+		transactionRepository.save(requested(PAYMENT_ID));
+		assertEquals(PccCallbackOutcome.APPLIED, transactionService.transferMoneyToBank(callback(PAYMENT_ID, 11, TransactionStatus.SUCCESS)));
+		assertEquals(PccCallbackOutcome.DUPLICATE, transactionService.transferMoneyToBank(callback(PAYMENT_ID, 11, TransactionStatus.SUCCESS)));
+		assertEquals(PccCallbackOutcome.STALE, transactionService.transferMoneyToBank(callback(PAYMENT_ID, 12, TransactionStatus.IN_PROGRESS)));
+
+		assertEquals(TransactionStatus.SUCCESS, transactionRepository.findFirstByPaymentIdOrderById(PAYMENT_ID).getTransactionStatus());
+		assertTrue(outboundMessageRepository.existsByIdempotencyKey(OutboundDispatcher.pspKey(PAYMENT_ID, TransactionStatus.SUCCESS)));
+		assertEquals(1, outboundMessageRepository.findAll().stream()
+				.filter(message -> message.getPaymentId() == PAYMENT_ID && message.getDestination() == OutboundDestination.PSP)
+				.count());
+	}
+
+	@Test
+	void concurrentRetriesAreAppliedOnce() {
+		long paymentId = PAYMENT_ID + 1;
+		transactionRepository.save(requested(paymentId));
+		ExecutorService pcc = Executors.newFixedThreadPool(8);
+		try {
+			List<CompletableFuture<PccCallbackOutcome>> outcomes = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				outcomes.add(CompletableFuture.supplyAsync(() -> transactionService.transferMoneyToBank(callback(paymentId, 21, TransactionStatus.FAILED)), pcc));
+			assertEquals(1, outcomes.stream().map(CompletableFuture::join).filter(PccCallbackOutcome.APPLIED::equals).count());
+		} finally {
+			pcc.shutdown();
+		}
+		assertEquals(TransactionStatus.FAILED, transactionRepository.findFirstByPaymentIdOrderById(paymentId).getTransactionStatus());
+	}
+
+	//posle restarta kes je prazan, a bloom filter se puni iz pcc_callback
+	@Test
+	void restartedDeduplicatorFindsRecordedCallbacks() {
+		long paymentId = PAYMENT_ID + 2;
+		transactionRepository.save(requested(paymentId));
+		assertEquals(PccCallbackOutcome.APPLIED, transactionService.transferMoneyToBank(callback(paymentId, 31, TransactionStatus.SUCCESS)));
+
+		PccCallbackDeduplicator restarted = new PccCallbackDeduplicator(pccCallbackRepository, jdbcTemplate, transactionTemplate,
+				new SimpleMeterRegistry(), 1000, 1000, 0.01, Duration.ofDays(30));
+		restarted.load();
+		assertTrue(restarted.isDuplicate(paymentId, 31));
+		assertFalse(restarted.isDuplicate(paymentId, 32));
+	}
+
+	private static Transaction requested(long paymentId) {
+		return Transaction.builder()
+				.paymentId(paymentId)
+				.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+				.merchantTimestamp(LocalDateTime.now())
+				.amount(1000)
+				.build();
+	}
+
+	private static TransactionPCCResponseDto callback(long paymentId, int issuerOrderId, TransactionStatus status) {
+		return TransactionPCCResponseDto.builder()
+				.paymentId(paymentId)
+				.issuerOrderId(issuerOrderId)
+				.issuerOrderTimestamp(LocalDateTime.now())
+				.acquirerOrderId(paymentId + 1)
+				.acquirerTimestamp(LocalDateTime.now())
+				.transactionStatus(status)
+				.amount(1000)
+				.build();
+	}
+}
@@ -0,0 +1,172 @@
+package com.agency.bank.service;
+
+import com.agency.bank.BankApplication;
+import com.agency.bank.model.Account;
+import com.agency.bank.model.Card;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Reservation;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.ClientRepository;
+import com.agency.bank.repository.ReservationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//tri instance banke nad istom H2 bazom, svaka sa svojim node-id. Obracun se na svim instancama pokrece u isto vreme,
+//kao kad greeting.cron okine na svakoj. Zakupi traju sat vremena pa ih obnavlja samo test (rebalance), a istek zakupa
+//se glumi pomeranjem expires_at u proslost. Podesavanja idu kao argumenti komandne linije, jer properties() daje samo
+//podrazumevane vrednosti koje gube od application.properties (port, baza i node-id iz test konfiguracije)
+class SettlementClusterTests {
+
+	private static final int NODES = 3;
+	private static final int SHARDS = 64;
+	private static final int ACCOUNTS = 64; //bar jedan racun u svakom delu, pa svaka instanca ima posla
+	private static final int PER_ACCOUNT = 5;
+	private static final long BALANCE = 1000;
+	private static final long AMOUNT = 10;
+	private static final String MERCHANT_ACCOUNT = "CLUSTER-MERCHANT";
+
+	private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+	@AfterEach
+	void stopNodes() {
+		nodes.forEach(ConfigurableApplicationContext::close);
+	}
+
+	@Test
+	void everyReservationIsSettledExactlyOnceAcrossNodes() {
+		for (int i = 0; i < NODES; i++)
+			nodes.add(new SpringApplicationBuilder(BankApplication.class).run(
+					"--server.port=0",
+					"--spring.datasource.url=jdbc:h2:mem:settlement-cluster;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1",
+					"--spring.jpa.hibernate.ddl-auto=update",
+					"--greeting.cron=-",
+					"--settlement.node-id=node-" + i,
+					"--settlement.shards=" + SHARDS,
+					"--settlement.lease.ttl=1h"));
+		rebalance();
+		assertLeasesPartitionShards();
+
+		JdbcTemplate jdbcTemplate = bean(0, JdbcTemplate.class);
+		bean(0, AccountRepository.class).save(new Account(0, MERCHANT_ACCOUNT, 0, 0, 0));
+		List<Client> customers = new ArrayList<>(ACCOUNTS);
+		for (int i = 0; i < ACCOUNTS; i++)
+			customers.add(customer(i));
+
+		reserve(customers);
+		settleOnAllNodes();
+		assertSettledOnce(customers, 1);
+		for (int i = 0; i < NODES; i++)
+			assertTrue(settledChunks(i) > 0, "node-" + i + " settled nothing");
+
+		//node-2 se ne javlja: ostale instance preuzimaju njegove delove, a on i dalje misli da ih ima
+		jdbcTemplate.update("update settlement_node set expires_at = ? where node_id = 'node-2'", LocalDateTime.now().minusMinutes(1));
+		jdbcTemplate.update("update settlement_lease set expires_at = ? where node = 'node-2'", LocalDateTime.now().minusMinutes(1));
+		long staleChunks = settledChunks(2);
+		bean(0, SettlementLeases.class).rebalance();
+		bean(1, SettlementLeases.class).rebalance();
+		assertEquals(SHARDS, bean(0, SettlementLeases.class).owned().size() + bean(1, SettlementLeases.class).owned().size());
+
+		reserve(customers);
+		settleOnAllNodes();
+		assertSettledOnce(customers, 2);
+		assertEquals(staleChunks, settledChunks(2), "node-2 settled shards it no longer leases");
+	}
+
+	//svaka instanca se javlja i uzima svoj deo; drugi krug otpusta visak koji je prva instanca uzela pre ostalih
+	private void rebalance() {
+		for (int round = 0; round < 2; round++)
+			for (int i = 0; i < NODES; i++)
+				bean(i, SettlementLeases.class).rebalance();
+	}
+
+	private void assertLeasesPartitionShards() {
+		Set<Integer> shards = new HashSet<>();
+		for (int i = 0; i < NODES; i++) {
+			Set<Integer> owned = bean(i, SettlementLeases.class).owned().keySet();
+			assertTrue(owned.size() <= (SHARDS + NODES - 1) / NODES, "node-" + i + " leased " + owned.size() + " shards");
+			for (int shard : owned)
+				assertTrue(shards.add(shard), "shard " + shard + " leased twice");
+		}
+		assertEquals(SHARDS, shards.size());
+	}
+
+	//po dva poziva na svakoj instanci u isto vreme; drugi poziv na istoj instanci ne pokrece novi obracun dok prvi radi
+	private void settleOnAllNodes() {
+		ExecutorService executor = Executors.newFixedThreadPool(NODES * 2);
+		try {
+			List<CompletableFuture<Void>> runs = new ArrayList<>();
+			for (int i = 0; i < NODES * 2; i++)
+				runs.add(CompletableFuture.runAsync(bean(i % NODES, SettlementService.class)::settle, executor));
+			runs.forEach(CompletableFuture::join);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void assertSettledOnce(List<Client> customers, int rounds) {
+		JdbcTemplate jdbcTemplate = bean(0, JdbcTemplate.class);
+		AccountRepository accountRepository = bean(0, AccountRepository.class);
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from reservation", Long.class));
+		for (Client customer : customers) {
+			Account account = accountRepository.findById(customer.getAccount().getId()).orElseThrow();
+			assertEquals(BALANCE - rounds * PER_ACCOUNT * AMOUNT, account.getAmount());
+			assertEquals(0, account.getReserved());
+		}
+		assertEquals(rounds * ACCOUNTS * PER_ACCOUNT * AMOUNT,
+				jdbcTemplate.queryForObject("select amount from account where account_number = ?", Long.class, MERCHANT_ACCOUNT));
+		assertEquals(rounds * ACCOUNTS * PER_ACCOUNT,
+				jdbcTemplate.queryForObject("select coalesce(sum(settled_count), 0) from settlement_run", Long.class));
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from settlement_run where finished_at is null", Long.class));
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from settlement_credit", Long.class));
+	}
+
+	private Client customer(int i) {
+		Account account = bean(0, AccountRepository.class).save(new Account(0, "CLUSTER-CUSTOMER-" + i, BALANCE, 0, 0));
+		Client client = new Client();
+		client.setName("Kupac " + i);
+		client.setAccount(account);
+		client.setCard(new Card(0, String.format("1112 5900 0000 %04d", i), "123", "Kupac " + i, "12/30"));
+		return bean(0, ClientRepository.class).save(client);
+	}
+
+	//rezervacije svih delova upisuje jedna instanca, kao kad placanje stigne na bilo koji cvor
+	private void reserve(List<Client> customers) {
+		List<Reservation> reservations = new ArrayList<>(customers.size() * PER_ACCOUNT);
+		for (Client customer : customers)
+			for (int i = 0; i < PER_ACCOUNT; i++)
+				reservations.add(Reservation.builder()
+						.amount(AMOUNT)
+						.description("CLUSTER")
+						.acquirerAccountNumber(MERCHANT_ACCOUNT)
+						.createdAt(LocalDateTime.now())
+						.client(customer)
+						.build());
+		bean(1, ReservationRepository.class).saveAll(reservations);
+		bean(1, JdbcTemplate.class).update("update account set reserved = reserved + ? where account_number like 'CLUSTER-CUSTOMER-%'",
+				PER_ACCOUNT * AMOUNT);
+	}
+
+	private long settledChunks(int node) {
+		return bean(node, MeterRegistry.class).get("settlement.batch.size").summary().count();
+	}
+
+	private <T> T bean(int node, Class<T> type) {
+		return nodes.get(node).getBean(type);
+	}
+}
@@ -0,0 +1,194 @@
+package com.agency.bank.service;
+
+import com.agency.bank.dto.CardDto;
+import com.agency.bank.enums.TransactionStatus;
+import com.agency.bank.model.Account;
+import com.agency.bank.model.Card;
+import com.agency.bank.model.Client;
+import com.agency.bank.model.Reservation;
+import com.agency.bank.model.SettlementRun;
+import com.agency.bank.model.Transaction;
+import com.agency.bank.repository.AccountRepository;
+import com.agency.bank.repository.ClientRepository;
+import com.agency.bank.repository.ReservationRepository;
+import com.agency.bank.repository.SettlementRunRepository;
+import com.agency.bank.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//cron obracun pozvan iz testa, nad posebnom bazom. Svaki test ima svoje racune, a posle obracuna u bazi ne ostaju
+//rezervacije, odobrenja ni nezavrseni obracuni
+@SpringBootTest(properties = {"greeting.cron=-",
+		"spring.datasource.url=jdbc:h2:mem:settlement-engine;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_ON_EXIT=FALSE"})
+class SettlementServiceTests {
+
+	private static final long BALANCE = 1000;
+	private static final long AMOUNT = 10;
+
+	@Autowired
+	private SettlementService settlementService;
+
+	@Autowired
+	private TransactionService transactionService;
+
+	@Autowired
+	private BalanceLedgerService balanceLedgerService;
+
+	@Autowired
+	private TransactionRepository transactionRepository;
+
+	@Autowired
+	private AccountRepository accountRepository;
+
+	@Autowired
+	private ClientRepository clientRepository;
+
+	@Autowired
+	private ReservationRepository reservationRepository;
+
+	@Autowired
+	private SettlementRunRepository settlementRunRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Value("${bank.panAcquirer}")
+	private String panAcquirer;
+
+	//placanje samo rezervise sredstva; kupac je zaduzen, a prodavac odobren tek obracunom, i to jednom
+	@Test
+	void paymentsAreSettledOnceByTheDeferredRun() {
+		Client merchant = customer("DEFERRED-MERCHANT", 0, panAcquirer);
+		String pan = "1112 5800 0000 0777";
+		Client customer = customer("DEFERRED-CUSTOMER", BALANCE, pan);
+		long firstPaymentId = 9_100_000_000L;
+		for (int i = 0; i < 5; i++) {
+			transactionRepository.save(Transaction.builder()
+					.paymentId(firstPaymentId + i)
+					.transactionStatus(TransactionStatus.PAYMENT_REQUESTED)
+					.merchantTimestamp(LocalDateTime.now())
+					.amount(AMOUNT)
+					.build());
+			Transaction paid = transactionService.pay(new CardDto(Long.toString(firstPaymentId + i), pan, "123",
+					"Kupac", "12/30", "deferred", AMOUNT, null, null, null));
+			assertEquals(TransactionStatus.IN_PROGRESS, paid.getTransactionStatus());
+		}
+
+		assertBalance(customer.getAccount(), BALANCE, 5 * AMOUNT);
+		assertBalance(merchant.getAccount(), 0, 0);
+		assertEquals(5, jdbcTemplate.queryForObject("select count(*) from reservation", Long.class));
+		assertEquals(BALANCE - 5 * AMOUNT, balanceLedgerService.available(customer.getAccount().getId()));
+
+		settlementService.settle();
+		settlementService.settle();
+
+		assertBalance(customer.getAccount(), BALANCE - 5 * AMOUNT, 0);
+		assertBalance(merchant.getAccount(), 5 * AMOUNT, 0);
+		assertEquals(BALANCE - 5 * AMOUNT, balanceLedgerService.available(customer.getAccount().getId()));
+		assertEquals(5 * AMOUNT, balanceLedgerService.available(merchant.getAccount().getId()));
+		assertSettlementClosed();
+	}
+
+	//vise poziva u isto vreme i ponovljen obracun: svaka rezervacija zaduzuje kupca i odobrava prodavcu jednom
+	@Test
+	void reservationsAreNotAppliedTwice() {
+		Account merchant = accountRepository.save(new Account(0, "TWICE-MERCHANT", 0, 0, 0));
+		List<Client> customers = new ArrayList<>();
+		for (int i = 0; i < 4; i++)
+			customers.add(customer("TWICE-CUSTOMER-" + i, BALANCE));
+		customers.forEach(customer -> reserve(customer, merchant, 3));
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<CompletableFuture<Void>> runs = new ArrayList<>();
+			for (int i = 0; i < 4; i++)
+				runs.add(CompletableFuture.runAsync(settlementService::settle, executor));
+			runs.forEach(CompletableFuture::join);
+		} finally {
+			executor.shutdownNow();
+		}
+		settlementService.settle();
+
+		for (Client customer : customers)
+			assertBalance(customer.getAccount(), BALANCE - 3 * AMOUNT, 0);
+		assertBalance(merchant, 4 * 3 * AMOUNT, 0);
+		assertSettlementClosed();
+	}
+
+	//obracun cvora koji je pao posle dva upisana dela: zaduzenja i odobrenja tih delova su upisana, ostatak
+	//rezervacija nije. Sledeci obracun prenosi vec upisana odobrenja i obracunava samo ostatak
+	@Test
+	void partiallyAppliedRunIsResumed() {
+		Account merchant = accountRepository.save(new Account(0, "RESUME-MERCHANT", 0, 0, 0));
+		Client settled = customer("RESUME-SETTLED", BALANCE - 2 * AMOUNT);
+		Client pending = customer("RESUME-PENDING", BALANCE);
+		reserve(pending, merchant, 2);
+		SettlementRun crashed = settlementRunRepository.save(SettlementRun.builder()
+				.highWaterMark(reservationRepository.findMaxId())
+				.settledCount(2)
+				.startedAt(LocalDateTime.now().minusMinutes(1))
+				.node("crashed")
+				.build());
+		jdbcTemplate.update("insert into settlement_credit (run_id, account_number, amount) values (?, ?, ?)",
+				crashed.getId(), merchant.getAccountNumber(), AMOUNT);
+		jdbcTemplate.update("insert into settlement_credit (run_id, account_number, amount) values (?, ?, ?)",
+				crashed.getId(), merchant.getAccountNumber(), AMOUNT);
+
+		settlementService.settle();
+		settlementService.settle();
+
+		assertBalance(settled.getAccount(), BALANCE - 2 * AMOUNT, 0);
+		assertBalance(pending.getAccount(), BALANCE - 2 * AMOUNT, 0);
+		assertBalance(merchant, 4 * AMOUNT, 0);
+		assertEquals(2, settlementRunRepository.findById(crashed.getId()).orElseThrow().getSettledCount());
+		assertSettlementClosed();
+	}
+
+	private Client customer(String accountNumber, long balance) {
+		return customer(accountNumber, balance, "PAN-" + accountNumber);
+	}
+
+	private Client customer(String accountNumber, long balance, String pan) {
+		Client client = new Client();
+		client.setName(accountNumber);
+		client.setAccount(accountRepository.save(new Account(0, accountNumber, balance, 0, 0)));
+		client.setCard(new Card(0, pan, "123", accountNumber, "12/30"));
+		return clientRepository.save(client);
+	}
+
+	private void reserve(Client customer, Account merchant, int count) {
+		for (int i = 0; i < count; i++)
+			reservationRepository.save(Reservation.builder()
+					.amount(AMOUNT)
+					.description("settlement")
+					.acquirerAccountNumber(merchant.getAccountNumber())
+					.createdAt(LocalDateTime.now())
+					.client(customer)
+					.build());
+		jdbcTemplate.update("update account set reserved = reserved + ? where id = ?", count * AMOUNT, customer.getAccount().getId());
+	}
+
+	private void assertBalance(Account account, long amount, long reserved) {
+		Account current = accountRepository.findById(account.getId()).orElseThrow();
+		assertEquals(amount, current.getAmount(), account.getAccountNumber());
+		assertEquals(reserved, current.getReserved(), account.getAccountNumber());
+	}
+
+	private void assertSettlementClosed() {
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from reservation", Long.class));
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from settlement_credit", Long.class));
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from settlement_run where finished_at is null", Long.class));
+	}
+}